@@ -0,0 +1,60 @@
+package com.apt.wii.config;
+
+import com.apt.wii.service.file.DownloadUrlSigner;
+import com.apt.wii.service.file.FileTransferEngine;
+import com.apt.wii.web.filter.SignedDownloadFilter;
+import com.apt.wii.web.rest.converter.ZeroCopyResourceHttpMessageConverter;
+import com.apt.wii.web.rest.converter.ZeroCopyResourceRegionHttpMessageConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Replace the default resource converters so stored files are written by the {@link FileTransferEngine}, and serve
+ * signed download URLs outside of the security filter chain.
+ */
+@Configuration
+public class FileTransferConfiguration implements WebMvcConfigurer {
+
+    private final FileTransferEngine fileTransferEngine;
+
+    public FileTransferConfiguration(FileTransferEngine fileTransferEngine) {
+        this.fileTransferEngine = fileTransferEngine;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(
+            converter -> {
+                if (converter.getClass() == ResourceHttpMessageConverter.class) {
+                    return new ZeroCopyResourceHttpMessageConverter(fileTransferEngine);
+                }
+                if (converter.getClass() == ResourceRegionHttpMessageConverter.class) {
+                    return new ZeroCopyResourceRegionHttpMessageConverter(fileTransferEngine);
+                }
+                return converter;
+            }
+        );
+    }
+
+    @Bean
+    public FilterRegistrationBean<SignedDownloadFilter> signedDownloadFilter(
+        DownloadUrlSigner downloadUrlSigner,
+        MeterRegistry meterRegistry
+    ) {
+        FilterRegistrationBean<SignedDownloadFilter> registration = new FilterRegistrationBean<>(
+            new SignedDownloadFilter(downloadUrlSigner, fileTransferEngine, meterRegistry)
+        );
+        registration.addUrlPatterns(DownloadUrlSigner.PATH_PREFIX + "*");
+        // before the security filter chain, which never sees these requests
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
@@ -0,0 +1,37 @@
+package com.apt.wii.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pool of the long storage jobs (integrity scrub, orphan collection, tiering, layout migration). They pause
+ * between batches and can run for hours, so their {@code @Scheduled} methods only hand them over to this pool and the
+ * scheduler threads stay free for the short periodic flushes.
+ */
+@Configuration
+public class StorageMaintenanceConfiguration {
+
+    public static final String STORAGE_MAINTENANCE_EXECUTOR = "storageMaintenanceExecutor";
+
+    private final Logger log = LoggerFactory.getLogger(StorageMaintenanceConfiguration.class);
+
+    /**
+     * One thread per job by default, so no job waits for another to finish. A job triggered while it is still running
+     * returns at once.
+     */
+    @Bean(name = STORAGE_MAINTENANCE_EXECUTOR)
+    public ThreadPoolTaskExecutor storageMaintenanceExecutor(@Value("${wii.storage.maintenance.threads:4}") int threads) {
+        log.debug("Creating Storage Maintenance Executor");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("storage-maintenance-");
+        // jobs resume from their saved cursors, so they are not waited for on shutdown
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
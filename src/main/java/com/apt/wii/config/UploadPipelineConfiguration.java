@@ -0,0 +1,78 @@
+package com.apt.wii.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pools for storing and processing uploads, kept apart from the {@code @Async} executor so slow disks or
+ * processing stages cannot starve other asynchronous work.
+ */
+@Configuration
+public class UploadPipelineConfiguration {
+
+    public static final String UPLOAD_PIPELINE_EXECUTOR = "uploadPipelineExecutor";
+
+    public static final String PREVIEW_RENDER_EXECUTOR = "previewRenderExecutor";
+
+    public static final String UPLOAD_IO_EXECUTOR = "uploadIoExecutor";
+
+    private final Logger log = LoggerFactory.getLogger(UploadPipelineConfiguration.class);
+
+    @Bean(name = UPLOAD_PIPELINE_EXECUTOR)
+    public ThreadPoolTaskExecutor uploadPipelineExecutor(
+        @Value("${wii.upload.pipeline.threads:2}") int threads,
+        @Value("${wii.upload.pipeline.queue_capacity:100}") int queueCapacity
+    ) {
+        log.debug("Creating Upload Pipeline Executor");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // a full queue rejects new work instead of growing; rejected uploads stay pending and are picked up later
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-pipeline-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Document rendering is CPU bound, so it gets its own pool sized below the core count rather than running on the
+     * pipeline workers, which mostly wait on I/O.
+     */
+    @Bean(name = PREVIEW_RENDER_EXECUTOR)
+    public ThreadPoolTaskExecutor previewRenderExecutor(
+        @Value("${wii.preview.threads:0}") int threads,
+        @Value("${wii.preview.queue_capacity:20}") int queueCapacity
+    ) {
+        log.debug("Creating Preview Render Executor");
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("preview-render-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Writes the files of batch uploads to storage. The pool size caps how many files are written at once across all
+     * requests; files beyond that wait in the queue.
+     */
+    @Bean(name = UPLOAD_IO_EXECUTOR)
+    public ThreadPoolTaskExecutor uploadIoExecutor(@Value("${wii.upload.batch.threads:4}") int threads) {
+        log.debug("Creating Upload I/O Executor");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("upload-io-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,129 @@
+package com.apt.wii.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+
+/**
+ * A FileBlob: the bytes of an upload stored once under their SHA-256 digest and shared by every
+ * {@link FileDetails} with the same content.
+ */
+@Entity
+@Table(name = "file_blob")
+public class FileBlob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @Column(name = "digest", length = 64, nullable = false, unique = true)
+    private String digest;
+
+    @Column(name = "path", nullable = false)
+    private String path;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    // jhipster-needle-entity-add-field - JHipster will add fields here
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public FileBlob id(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getDigest() {
+        return this.digest;
+    }
+
+    public FileBlob digest(String digest) {
+        this.digest = digest;
+        return this;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public FileBlob path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Long getSize() {
+        return this.size;
+    }
+
+    public FileBlob size(Long size) {
+        this.size = size;
+        return this;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getRefCount() {
+        return this.refCount;
+    }
+
+    public FileBlob refCount(Long refCount) {
+        this.refCount = refCount;
+        return this;
+    }
+
+    public void setRefCount(Long refCount) {
+        this.refCount = refCount;
+    }
+
+    // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileBlob)) {
+            return false;
+        }
+        return id != null && id.equals(((FileBlob) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "FileBlob{" +
+            "id=" + getId() +
+            ", digest='" + getDigest() + "'" +
+            ", path='" + getPath() + "'" +
+            ", size=" + getSize() +
+            ", refCount=" + getRefCount() +
+            "}";
+    }
+}
@@ -1,16 +1,21 @@
 package com.apt.wii.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 /**
  * A FileDetails.
  */
 @Entity
 @Table(name = "file_details")
+@EntityListeners(AuditingEntityListener.class)
 public class FileDetails implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -32,6 +37,14 @@ public class FileDetails implements Serializable {
     @Column(name = "meta_data")
     private String metaData;
 
+    /**
+     * When the row was inserted, or {@code null} for rows written before this was recorded.
+     */
+    @CreatedDate
+    @Column(name = "created_date", updatable = false)
+    @JsonIgnore
+    private Instant createdDate;
+
     @OneToMany(mappedBy = "fileDetails")
     @JsonIgnoreProperties(value = { "fileDetails" }, allowSetters = true)
     private Set<FileMetaData> metadata = new HashSet<>();
@@ -102,6 +115,14 @@ public class FileDetails implements Serializable {
         this.metaData = metaData;
     }
 
+    public Instant getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
     public Set<FileMetaData> getMetadata() {
         return this.metadata;
     }
@@ -8,7 +8,13 @@ import javax.persistence.*;
  * A FileMetaData.
  */
 @Entity
-@Table(name = "file_meta_data")
+@Table(
+    name = "file_meta_data",
+    indexes = {
+        @Index(name = "idx_file_meta_data_details_key", columnList = "file_details_id, key"),
+        @Index(name = "idx_file_meta_data_key_value", columnList = "key, value")
+    }
+)
 public class FileMetaData implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -1,5 +1,6 @@
 package com.apt.wii.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import java.io.Serializable;
@@ -11,7 +12,15 @@ import javax.persistence.*;
  * Task entity.\n@author The JHipster team.
  */
 @Entity
-@Table(name = "question")
+@Table(
+    name = "question",
+    indexes = {
+        @Index(name = "idx_question_subject", columnList = "subject_id, id"),
+        @Index(name = "idx_question_semester", columnList = "semester_id, id"),
+        @Index(name = "idx_question_branch", columnList = "branch_id, id"),
+        @Index(name = "idx_question_domain", columnList = "domain_id, id")
+    }
+)
 public class Question implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -43,6 +52,21 @@ public class Question implements Serializable {
     @JsonIgnoreProperties(value = { "questions", "semester" }, allowSetters = true)
     private Subject subject;
 
+    /**
+     * Ancestors of {@link #subject}, copied from it so the questions under any catalog node are one indexed query away.
+     */
+    @JsonIgnore
+    @Column(name = "semester_id")
+    private Long semesterId;
+
+    @JsonIgnore
+    @Column(name = "branch_id")
+    private Long branchId;
+
+    @JsonIgnore
+    @Column(name = "domain_id")
+    private Long domainId;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
     public Long getId() {
         return id;
@@ -171,6 +195,30 @@ public class Question implements Serializable {
         this.subject = subject;
     }
 
+    public Long getSemesterId() {
+        return this.semesterId;
+    }
+
+    public void setSemesterId(Long semesterId) {
+        this.semesterId = semesterId;
+    }
+
+    public Long getBranchId() {
+        return this.branchId;
+    }
+
+    public void setBranchId(Long branchId) {
+        this.branchId = branchId;
+    }
+
+    public Long getDomainId() {
+        return this.domainId;
+    }
+
+    public void setDomainId(Long domainId) {
+        this.domainId = domainId;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
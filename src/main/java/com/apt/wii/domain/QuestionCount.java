@@ -0,0 +1,142 @@
+package com.apt.wii.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+import javax.persistence.*;
+
+/**
+ * A QuestionCount: the number of questions under one domain, branch, semester or subject.
+ */
+@Entity
+@Table(name = "question_count")
+@IdClass(QuestionCount.Node.class)
+public class QuestionCount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "node_type", length = 16)
+    private String nodeType;
+
+    @Id
+    @Column(name = "node_id")
+    private Long nodeId;
+
+    @Column(name = "questions", nullable = false)
+    private Long questions;
+
+    public String getNodeType() {
+        return this.nodeType;
+    }
+
+    public QuestionCount nodeType(String nodeType) {
+        this.nodeType = nodeType;
+        return this;
+    }
+
+    public void setNodeType(String nodeType) {
+        this.nodeType = nodeType;
+    }
+
+    public Long getNodeId() {
+        return this.nodeId;
+    }
+
+    public QuestionCount nodeId(Long nodeId) {
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    public void setNodeId(Long nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getQuestions() {
+        return this.questions;
+    }
+
+    public QuestionCount questions(Long questions) {
+        this.questions = questions;
+        return this;
+    }
+
+    public void setQuestions(Long questions) {
+        this.questions = questions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QuestionCount)) {
+            return false;
+        }
+        QuestionCount other = (QuestionCount) o;
+        return nodeType != null && nodeId != null && nodeType.equals(other.nodeType) && nodeId.equals(other.nodeId);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "QuestionCount{" +
+            "nodeType='" + getNodeType() + "'" +
+            ", nodeId=" + getNodeId() +
+            ", questions=" + getQuestions() +
+            "}";
+    }
+
+    /**
+     * The key of a QuestionCount: the type and id of the catalog node.
+     */
+    public static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String nodeType;
+
+        private Long nodeId;
+
+        public Node() {}
+
+        public Node(String nodeType, Long nodeId) {
+            this.nodeType = nodeType;
+            this.nodeId = nodeId;
+        }
+
+        public String getNodeType() {
+            return nodeType;
+        }
+
+        public Long getNodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            return Objects.equals(nodeType, other.nodeType) && Objects.equals(nodeId, other.nodeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeType, nodeId);
+        }
+
+        @Override
+        public String toString() {
+            return nodeType + ":" + nodeId;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.apt.wii.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+
+/**
+ * A QuestionCountDelta: questions that entered or left one catalog node in a committed write, not yet added to its
+ * {@link QuestionCount}.
+ */
+@Entity
+@Table(name = "question_count_delta")
+public class QuestionCountDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @Column(name = "node_type", length = 16, nullable = false)
+    private String nodeType;
+
+    @Column(name = "node_id", nullable = false)
+    private Long nodeId;
+
+    @Column(name = "questions", nullable = false)
+    private Long questions;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public QuestionCountDelta id(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getNodeType() {
+        return this.nodeType;
+    }
+
+    public QuestionCountDelta nodeType(String nodeType) {
+        this.nodeType = nodeType;
+        return this;
+    }
+
+    public void setNodeType(String nodeType) {
+        this.nodeType = nodeType;
+    }
+
+    public Long getNodeId() {
+        return this.nodeId;
+    }
+
+    public QuestionCountDelta nodeId(Long nodeId) {
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    public void setNodeId(Long nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getQuestions() {
+        return this.questions;
+    }
+
+    public QuestionCountDelta questions(Long questions) {
+        this.questions = questions;
+        return this;
+    }
+
+    public void setQuestions(Long questions) {
+        this.questions = questions;
+    }
+
+    public QuestionCount.Node getNode() {
+        return new QuestionCount.Node(nodeType, nodeId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QuestionCountDelta)) {
+            return false;
+        }
+        return id != null && id.equals(((QuestionCountDelta) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "QuestionCountDelta{" +
+            "id=" + getId() +
+            ", nodeType='" + getNodeType() + "'" +
+            ", nodeId=" + getNodeId() +
+            ", questions=" + getQuestions() +
+            "}";
+    }
+}
@@ -0,0 +1,89 @@
+package com.apt.wii.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+
+/**
+ * A StorageUsage: the bytes and number of files stored for one uploader, kept up to date as files are added and deleted.
+ */
+@Entity
+@Table(name = "storage_usage")
+public class StorageUsage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "login", length = 50)
+    private String login;
+
+    @Column(name = "bytes", nullable = false)
+    private Long bytes;
+
+    @Column(name = "files", nullable = false)
+    private Long files;
+
+    public String getLogin() {
+        return this.login;
+    }
+
+    public StorageUsage login(String login) {
+        this.login = login;
+        return this;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public Long getBytes() {
+        return this.bytes;
+    }
+
+    public StorageUsage bytes(Long bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+
+    public void setBytes(Long bytes) {
+        this.bytes = bytes;
+    }
+
+    public Long getFiles() {
+        return this.files;
+    }
+
+    public StorageUsage files(Long files) {
+        this.files = files;
+        return this;
+    }
+
+    public void setFiles(Long files) {
+        this.files = files;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StorageUsage)) {
+            return false;
+        }
+        return login != null && login.equals(((StorageUsage) o).login);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StorageUsage{" +
+            "login='" + getLogin() + "'" +
+            ", bytes=" + getBytes() +
+            ", files=" + getFiles() +
+            "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.apt.wii.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
 import java.util.HashSet;
@@ -10,7 +11,14 @@ import javax.persistence.*;
  * A Subject.
  */
 @Entity
-@Table(name = "subject")
+@Table(
+    name = "subject",
+    indexes = {
+        @Index(name = "idx_subject_semester", columnList = "semester_id"),
+        @Index(name = "idx_subject_branch", columnList = "branch_id"),
+        @Index(name = "idx_subject_domain", columnList = "domain_id")
+    }
+)
 public class Subject implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -34,6 +42,17 @@ public class Subject implements Serializable {
     @JsonIgnoreProperties(value = { "subjects", "branch" }, allowSetters = true)
     private Semester semester;
 
+    /**
+     * Branch and domain of {@link #semester}, kept in sync by the catalog services.
+     */
+    @JsonIgnore
+    @Column(name = "branch_id")
+    private Long branchId;
+
+    @JsonIgnore
+    @Column(name = "domain_id")
+    private Long domainId;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
     public Long getId() {
         return id;
@@ -118,6 +137,22 @@ public class Subject implements Serializable {
         this.semester = semester;
     }
 
+    public Long getBranchId() {
+        return this.branchId;
+    }
+
+    public void setBranchId(Long branchId) {
+        this.branchId = branchId;
+    }
+
+    public Long getDomainId() {
+        return this.domainId;
+    }
+
+    public void setDomainId(Long domainId) {
+        this.domainId = domainId;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
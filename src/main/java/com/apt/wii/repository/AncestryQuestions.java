@@ -0,0 +1,8 @@
+package com.apt.wii.repository;
+
+/**
+ * The number of questions that share one stored ancestry, as grouped by {@link QuestionRepository}.
+ */
+public interface AncestryQuestions extends CatalogAncestry {
+    Long getQuestions();
+}
@@ -4,7 +4,9 @@ import com.apt.wii.domain.Branch;
 import com.apt.wii.domain.Domain;
 import com.apt.wii.domain.Question;
 import com.apt.wii.domain.Subject;
+import com.apt.wii.service.dto.BranchDTO;
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.PagingAndSortingRepository;
@@ -16,5 +18,15 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface BranchRepository extends PagingAndSortingRepository<Branch, Long> {
-    List<Branch> findByDomain(Domain domain);
+    @Query(
+        "SELECT new com.apt.wii.service.dto.BranchDTO(b.id, b.name, b.description, b.domain.id) FROM Branch b" +
+        " WHERE b.domain.id = ?1"
+    )
+    List<BranchDTO> findDtosByDomainId(Long domainId);
+
+    @Query("SELECT b.id AS id, b.name AS name, b.description AS description, b.domain.id AS parentId FROM Branch b ORDER BY b.id")
+    List<CatalogRow> findCatalogRows();
+
+    @Query("SELECT b.domain.id AS domainId FROM Branch b WHERE b.id = ?1")
+    Optional<CatalogAncestry> findAncestry(Long id);
 }
@@ -0,0 +1,15 @@
+package com.apt.wii.repository;
+
+/**
+ * Ancestors of a catalog node or question, each {@code null} when the level is missing or not selected by the query. Only
+ * questions have a subject.
+ */
+public interface CatalogAncestry {
+    Long getSubjectId();
+
+    Long getSemesterId();
+
+    Long getBranchId();
+
+    Long getDomainId();
+}
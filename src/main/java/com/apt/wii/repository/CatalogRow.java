@@ -0,0 +1,17 @@
+package com.apt.wii.repository;
+
+/**
+ * A domain, branch, semester or subject row read without loading the entity, with the id of its parent.
+ */
+public interface CatalogRow {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+
+    /**
+     * @return the id of the parent node, or {@code null} if it has none; domains do not select it.
+     */
+    Long getParentId();
+}
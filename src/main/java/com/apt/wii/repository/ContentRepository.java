@@ -3,6 +3,7 @@ package com.apt.wii.repository;
 import com.apt.wii.domain.Content;
 import com.apt.wii.domain.Question;
 import com.apt.wii.domain.Subject;
+import com.apt.wii.service.dto.ContentDTO;
 import java.util.List;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
@@ -15,5 +16,32 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface ContentRepository extends PagingAndSortingRepository<Content, Long> {
-    List<Content> findByQuestion(Question question);
+    @Query(
+        "SELECT new com.apt.wii.service.dto.ContentDTO(c.id, c.type, c.text, c.filePath, c.seqNum, c.question.id) FROM Content c" +
+        " WHERE c.question.id = ?1"
+    )
+    List<ContentDTO> findDtosByQuestionId(Long questionId);
+
+    @Query(
+        "SELECT c.id AS id, q.id AS questionId, c.filePath AS filePath FROM Content c JOIN c.question q" +
+        " WHERE q.id = ?1 AND c.filePath IS NOT NULL AND c.id > ?2 ORDER BY c.id"
+    )
+    List<ContentFile> findFilesByQuestionAfter(Long questionId, Long id, Pageable pageable);
+
+    @Query(
+        "SELECT c.id AS id, q.id AS questionId, c.filePath AS filePath FROM Content c JOIN c.question q" +
+        " WHERE q.subject.id = ?1 AND c.filePath IS NOT NULL AND c.id > ?2 ORDER BY c.id"
+    )
+    List<ContentFile> findFilesBySubjectAfter(Long subjectId, Long id, Pageable pageable);
+
+    /**
+     * File reference of a content row, read without loading the content or its question.
+     */
+    interface ContentFile {
+        Long getId();
+
+        Long getQuestionId();
+
+        String getFilePath();
+    }
 }
@@ -1,6 +1,7 @@
 package com.apt.wii.repository;
 
 import com.apt.wii.domain.Domain;
+import java.util.List;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
@@ -10,4 +11,7 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface DomainRepository extends PagingAndSortingRepository<Domain, Long> {}
+public interface DomainRepository extends PagingAndSortingRepository<Domain, Long> {
+    @Query("SELECT d.id AS id, d.name AS name, d.description AS description FROM Domain d ORDER BY d.id")
+    List<CatalogRow> findCatalogRows();
+}
@@ -0,0 +1,25 @@
+package com.apt.wii.repository;
+
+import com.apt.wii.domain.FileBlob;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the FileBlob entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, Long> {
+    Optional<FileBlob> findOneByDigest(String digest);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM FileBlob b WHERE b.digest = ?1")
+    Optional<FileBlob> findOneByDigestForUpdate(String digest);
+
+    @Query("SELECT b.path FROM FileBlob b WHERE b.path IN ?1")
+    List<String> findPathsIn(Collection<String> paths);
+}
@@ -1,6 +1,11 @@
 package com.apt.wii.repository;
 
 import com.apt.wii.domain.FileDetails;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +14,24 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface FileDetailsRepository extends JpaRepository<FileDetails, Long> {}
+public interface FileDetailsRepository extends JpaRepository<FileDetails, Long> {
+    List<FileDetails> findByDestination(String destination);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM FileDetails d WHERE d.id = ?1")
+    Optional<FileDetails> findOneForUpdate(Long id);
+
+    @Query("SELECT d.sourceName FROM FileDetails d WHERE d.id = ?1")
+    Optional<String> findSourceName(Long id);
+
+    /**
+     * Ids of the fileDetails without a metadata row of {@code key}, other than those of {@code excludedDestination},
+     * inserted before {@code createdBefore} or before insertion times were recorded.
+     */
+    @Query(
+        "SELECT d.id FROM FileDetails d WHERE d.id > ?1 AND (d.destination IS NULL OR d.destination <> ?2)" +
+        " AND (d.createdDate IS NULL OR d.createdDate < ?3)" +
+        " AND NOT EXISTS (SELECT m.id FROM FileMetaData m WHERE m.fileDetails = d AND m.key = ?4) ORDER BY d.id"
+    )
+    List<Long> findIdsWithoutKeyAfter(Long id, String excludedDestination, Instant createdBefore, String key, Pageable pageable);
+}
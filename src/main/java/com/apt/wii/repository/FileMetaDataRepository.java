@@ -4,7 +4,12 @@ import com.apt.wii.domain.Branch;
 import com.apt.wii.domain.Domain;
 import com.apt.wii.domain.FileDetails;
 import com.apt.wii.domain.FileMetaData;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
 
@@ -15,4 +20,93 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface FileMetaDataRepository extends JpaRepository<FileMetaData, Long> {
     List<FileMetaData> findByFileDetails(FileDetails fileDetails);
+
+    Optional<FileMetaData> findOneByFileDetailsIdAndKey(Long fileDetailsId, String key);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM FileMetaData m WHERE m.fileDetails.id = ?1 AND m.key = ?2")
+    Optional<FileMetaData> findOneByFileDetailsIdAndKeyForUpdate(Long fileDetailsId, String key);
+
+    Page<FileMetaData> findByKey(String key, Pageable pageable);
+
+    @Query(
+        "SELECT m.fileDetails.id FROM FileMetaData m" +
+        " WHERE m.key = ?1 AND m.value IN ?2 AND m.fileDetails.id > ?3 ORDER BY m.fileDetails.id"
+    )
+    List<Long> findFileDetailsIdsByValueAfter(String key, Collection<String> values, Long fileDetailsId, Pageable pageable);
+
+    @Query("SELECT m.key AS key, m.value AS value FROM FileMetaData m WHERE m.fileDetails.id = ?1")
+    List<KeyValue> findValues(Long fileDetailsId);
+
+    @Query("SELECT m.value FROM FileMetaData m WHERE m.key IN ?1 AND m.value IN ?2")
+    List<String> findValuesIn(Collection<String> keys, Collection<String> values);
+
+    @Query(
+        "SELECT m.fileDetails.id AS fileDetailsId, m.value AS value FROM FileMetaData m" +
+        " WHERE m.key = ?1 AND m.fileDetails.id > ?2 ORDER BY m.fileDetails.id"
+    )
+    List<FileDetailsValue> findValuesAfter(String key, Long fileDetailsId, Pageable pageable);
+
+    @Query("SELECT m.fileDetails.id AS fileDetailsId, m.value AS value FROM FileMetaData m WHERE m.key = ?1 AND m.fileDetails.id IN ?2")
+    List<FileDetailsValue> findValuesFor(String key, Collection<Long> fileDetailsIds);
+
+    @Modifying
+    @Query("UPDATE FileMetaData m SET m.value = ?2 WHERE m.key = ?1 AND m.fileDetails.id IN ?3")
+    int updateValues(String key, String value, Collection<Long> fileDetailsIds);
+
+    @Modifying
+    @Query("UPDATE FileMetaData m SET m.value = ?3 WHERE m.key = ?1 AND m.fileDetails.id = ?2 AND m.value = ?4")
+    int updateValueIf(String key, Long fileDetailsId, String value, String expected);
+
+    @Query(
+        "SELECT m.id AS id, m.fileDetails.id AS fileDetailsId, m.value AS value FROM FileMetaData m" +
+        " WHERE m.key = ?1 AND m.fileDetails.destination = ?2 AND m.id > ?3 ORDER BY m.id"
+    )
+    List<IdValue> findValuesByDestinationAfter(String key, String destination, Long id, Pageable pageable);
+
+    @Query(
+        "SELECT u.value AS login, SUM(CAST(s.value AS long)) AS bytes, COUNT(s) AS files" +
+        " FROM FileMetaData u, FileMetaData s WHERE u.key = ?1 AND s.key = ?2 AND s.fileDetails = u.fileDetails GROUP BY u.value"
+    )
+    List<ValueTotal> sumValuesGroupedBy(String groupKey, String sumKey);
+
+    /**
+     * Key and value of a metadata row, read without loading the entity.
+     */
+    interface KeyValue {
+        String getKey();
+
+        String getValue();
+    }
+
+    /**
+     * Value of a metadata row with its id and the id of its fileDetails.
+     */
+    interface IdValue {
+        Long getId();
+
+        Long getFileDetailsId();
+
+        String getValue();
+    }
+
+    /**
+     * Value of a metadata row with the id of its fileDetails.
+     */
+    interface FileDetailsValue {
+        Long getFileDetailsId();
+
+        String getValue();
+    }
+
+    /**
+     * Total of the numeric values of one key, and the number of rows, for the files sharing the value of another key.
+     */
+    interface ValueTotal {
+        String getLogin();
+
+        Long getBytes();
+
+        Long getFiles();
+    }
 }
@@ -0,0 +1,10 @@
+package com.apt.wii.repository;
+
+/**
+ * The number of questions stored under one catalog node, as counted by {@link QuestionRepository}.
+ */
+public interface NodeQuestions {
+    Long getId();
+
+    Long getQuestions();
+}
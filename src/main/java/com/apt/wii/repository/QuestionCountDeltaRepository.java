@@ -0,0 +1,21 @@
+package com.apt.wii.repository;
+
+import com.apt.wii.domain.QuestionCountDelta;
+import java.util.List;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the QuestionCountDelta entity.
+ */
+@Repository
+public interface QuestionCountDeltaRepository extends JpaRepository<QuestionCountDelta, Long> {
+    /**
+     * The oldest deltas, locked so that only one flush adds them to the counts.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM QuestionCountDelta d ORDER BY d.id")
+    List<QuestionCountDelta> findOldestForUpdate(Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.apt.wii.repository;
+
+import com.apt.wii.domain.QuestionCount;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the QuestionCount entity.
+ */
+@Repository
+public interface QuestionCountRepository extends JpaRepository<QuestionCount, QuestionCount.Node> {
+    @Modifying
+    @Query("UPDATE QuestionCount c SET c.questions = c.questions + ?3 WHERE c.nodeType = ?1 AND c.nodeId = ?2")
+    int addQuestions(String nodeType, Long nodeId, long questions);
+}
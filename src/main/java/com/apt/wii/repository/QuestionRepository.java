@@ -5,7 +5,9 @@ import com.apt.wii.domain.Subject;
 import com.apt.wii.domain.TagMetaData;
 import com.apt.wii.service.dto.SubjectDTO;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import javax.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
@@ -25,4 +27,68 @@ public interface QuestionRepository extends PagingAndSortingRepository<Question,
         "SELECT DISTINCT(que) FROM Question que LEFT JOIN que.subject sub LEFT JOIN que.tags t WHERE sub.id = ?1 AND t.key IN ?2 AND t.value IN ?3"
     )
     Page<Question> getQuestionsBySubjectAndTags(Long subjectId, Set<String> keys, List<String> values, Pageable pageable);
+
+    Page<Question> findBySemesterId(Long semesterId, Pageable pageable);
+
+    Page<Question> findByBranchId(Long branchId, Pageable pageable);
+
+    Page<Question> findByDomainId(Long domainId, Pageable pageable);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Question q SET q.semesterId = ?2, q.branchId = ?3, q.domainId = ?4 WHERE q.subject.id = ?1")
+    int updateAncestryBySubjectId(Long subjectId, Long semesterId, Long branchId, Long domainId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Question q SET q.branchId = ?2, q.domainId = ?3 WHERE q.semesterId = ?1")
+    int updateAncestryBySemesterId(Long semesterId, Long branchId, Long domainId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Question q SET q.domainId = ?2 WHERE q.branchId = ?1")
+    int updateDomainIdByBranchId(Long branchId, Long domainId);
+
+    /**
+     * The subjects with questions whose stored ancestry is not the one stored on the subject.
+     */
+    @Query(
+        "SELECT DISTINCT s.id FROM Question q JOIN q.subject s JOIN s.semester se WHERE s.domainId IS NOT NULL AND (" +
+        "q.semesterId IS NULL OR q.semesterId <> se.id OR q.branchId IS NULL OR q.branchId <> s.branchId" +
+        " OR q.domainId IS NULL OR q.domainId <> s.domainId)"
+    )
+    List<Long> findSubjectIdsWithStaleAncestry();
+
+    /**
+     * The questions of a subject whose stored ancestry differs from the given one, grouped by that stored ancestry.
+     */
+    @Query(
+        "SELECT q.semesterId AS semesterId, q.branchId AS branchId, q.domainId AS domainId, COUNT(q) AS questions" +
+        " FROM Question q WHERE q.subject.id = ?1 AND (q.semesterId IS NULL OR q.semesterId <> ?2" +
+        " OR q.branchId IS NULL OR q.branchId <> ?3 OR q.domainId IS NULL OR q.domainId <> ?4)" +
+        " GROUP BY q.semesterId, q.branchId, q.domainId"
+    )
+    List<AncestryQuestions> findStaleAncestryBySubjectId(Long subjectId, Long semesterId, Long branchId, Long domainId);
+
+    /**
+     * Lock a question being saved or deleted, so that concurrent writes of it see each other's ancestry.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT q FROM Question q WHERE q.id = ?1")
+    Optional<Question> findOneForUpdate(Long id);
+
+    @Query(
+        "SELECT q.subject.id AS subjectId, q.semesterId AS semesterId, q.branchId AS branchId, q.domainId AS domainId " +
+        "FROM Question q WHERE q.id = ?1"
+    )
+    Optional<CatalogAncestry> findAncestry(Long id);
+
+    @Query("SELECT q.subject.id AS id, COUNT(q) AS questions FROM Question q WHERE q.subject IS NOT NULL GROUP BY q.subject.id")
+    List<NodeQuestions> countBySubject();
+
+    @Query("SELECT q.semesterId AS id, COUNT(q) AS questions FROM Question q WHERE q.semesterId IS NOT NULL GROUP BY q.semesterId")
+    List<NodeQuestions> countBySemester();
+
+    @Query("SELECT q.branchId AS id, COUNT(q) AS questions FROM Question q WHERE q.branchId IS NOT NULL GROUP BY q.branchId")
+    List<NodeQuestions> countByBranch();
+
+    @Query("SELECT q.domainId AS id, COUNT(q) AS questions FROM Question q WHERE q.domainId IS NOT NULL GROUP BY q.domainId")
+    List<NodeQuestions> countByDomain();
 }
@@ -3,7 +3,9 @@ package com.apt.wii.repository;
 import com.apt.wii.domain.Branch;
 import com.apt.wii.domain.Semester;
 import com.apt.wii.service.dto.BranchDTO;
+import com.apt.wii.service.dto.SemesterDTO;
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.PagingAndSortingRepository;
@@ -15,5 +17,15 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface SemesterRepository extends PagingAndSortingRepository<Semester, Long> {
-    List<Semester> findByBranch(Branch b);
+    @Query(
+        "SELECT new com.apt.wii.service.dto.SemesterDTO(s.id, s.name, s.description, s.branch.id) FROM Semester s" +
+        " WHERE s.branch.id = ?1"
+    )
+    List<SemesterDTO> findDtosByBranchId(Long branchId);
+
+    @Query("SELECT s.id AS id, s.name AS name, s.description AS description, s.branch.id AS parentId FROM Semester s ORDER BY s.id")
+    List<CatalogRow> findCatalogRows();
+
+    @Query("SELECT b.id AS branchId, b.domain.id AS domainId FROM Semester s LEFT JOIN s.branch b WHERE s.id = ?1")
+    Optional<CatalogAncestry> findAncestry(Long id);
 }
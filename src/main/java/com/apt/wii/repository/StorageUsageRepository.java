@@ -0,0 +1,15 @@
+package com.apt.wii.repository;
+
+import com.apt.wii.domain.StorageUsage;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the StorageUsage entity.
+ */
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.bytes = u.bytes + ?2, u.files = u.files + ?3 WHERE u.login = ?1")
+    int addUsage(String login, long bytes, long files);
+}
@@ -6,6 +6,7 @@ import com.apt.wii.service.dto.SemesterDTO;
 import com.apt.wii.service.dto.SubjectDTO;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.LockModeType;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.PagingAndSortingRepository;
@@ -17,5 +18,49 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface SubjectRepository extends PagingAndSortingRepository<Subject, Long> {
-    List<Subject> findBySemester(Semester semesterDTO);
+    @Query(
+        "SELECT new com.apt.wii.service.dto.SubjectDTO(s.id, s.name, s.description, s.semester.id) FROM Subject s" +
+        " WHERE s.semester.id = ?1"
+    )
+    List<SubjectDTO> findDtosBySemesterId(Long semesterId);
+
+    @Query("SELECT s.id AS id, s.name AS name, s.description AS description, s.semester.id AS parentId FROM Subject s ORDER BY s.id")
+    List<CatalogRow> findCatalogRows();
+
+    /**
+     * The semester of the subject, with the branch and domain stored on the subject row.
+     */
+    @Query("SELECT s.semester.id AS semesterId, s.branchId AS branchId, s.domainId AS domainId FROM Subject s WHERE s.id = ?1")
+    Optional<CatalogAncestry> findAncestry(Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Subject s SET s.branchId = ?2, s.domainId = ?3 WHERE s.semester.id = ?1")
+    int updateAncestryBySemesterId(Long semesterId, Long branchId, Long domainId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Subject s SET s.domainId = ?2 WHERE s.branchId = ?1")
+    int updateDomainIdByBranchId(Long branchId, Long domainId);
+
+    /**
+     * Lock a subject being moved, so that no question is saved under it with the old ancestry meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Subject s WHERE s.id = ?1")
+    Optional<Subject> findOneForUpdate(Long id);
+
+    /**
+     * Lock the subject of a question being saved against a move of that subject, reading its ancestry.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT s FROM Subject s WHERE s.id = ?1")
+    Optional<Subject> findOneForShare(Long id);
+
+    /**
+     * The subjects in a complete hierarchy whose stored branch or domain is not the one of their semester.
+     */
+    @Query(
+        "SELECT s.id FROM Subject s JOIN s.semester se JOIN se.branch b JOIN b.domain d" +
+        " WHERE s.branchId IS NULL OR s.branchId <> b.id OR s.domainId IS NULL OR s.domainId <> d.id"
+    )
+    List<Long> findIdsWithStaleAncestry();
 }
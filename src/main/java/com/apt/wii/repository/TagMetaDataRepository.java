@@ -3,6 +3,7 @@ package com.apt.wii.repository;
 import com.apt.wii.domain.Content;
 import com.apt.wii.domain.Question;
 import com.apt.wii.domain.TagMetaData;
+import com.apt.wii.service.dto.TagMetaDataDTO;
 import java.util.List;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
@@ -15,5 +16,9 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings("unused")
 @Repository
 public interface TagMetaDataRepository extends PagingAndSortingRepository<TagMetaData, Long> {
-    List<TagMetaData> findByQuestion(Question question);
+    @Query(
+        "SELECT new com.apt.wii.service.dto.TagMetaDataDTO(t.id, t.key, t.value, t.question.id) FROM TagMetaData t" +
+        " WHERE t.question.id = ?1"
+    )
+    List<TagMetaDataDTO> findDtosByQuestionId(Long questionId);
 }
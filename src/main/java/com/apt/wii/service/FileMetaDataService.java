@@ -3,6 +3,8 @@ package com.apt.wii.service;
 import com.apt.wii.service.dto.FileMetaDataDTO;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 /**
  * Service Interface for managing {@link com.apt.wii.domain.FileMetaData}.
@@ -24,6 +26,44 @@ public interface FileMetaDataService {
      */
     Optional<FileMetaDataDTO> partialUpdate(FileMetaDataDTO fileMetaDataDTO);
 
+    /**
+     * Set the "key" fileMetaData of the "fileDetailsId" fileDetails, creating it if needed.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @param key the key of the fileMetaData.
+     * @param value the new value.
+     * @return the persisted entity.
+     */
+    FileMetaDataDTO saveValue(Long fileDetailsId, String key, String value);
+
+    /**
+     * Set the "key" fileMetaData of the "fileDetailsId" fileDetails, only if it still holds {@code expected}.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @param key the key of the fileMetaData.
+     * @param value the new value.
+     * @param expected the value the fileMetaData must hold.
+     * @return {@code true} if the value was replaced.
+     */
+    boolean updateValueIf(Long fileDetailsId, String key, String value, String expected);
+
+    /**
+     * Delete the "key" fileMetaData of the "fileDetailsId" fileDetails, if there is one.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @param key the key of the fileMetaData.
+     */
+    void deleteValue(Long fileDetailsId, String key);
+
+    /**
+     * Get the fileMetaData with the given key, of any fileDetails.
+     *
+     * @param key the key of the fileMetaData.
+     * @param pageable the pagination information.
+     * @return the list of entities.
+     */
+    Page<FileMetaDataDTO> findByKey(String key, Pageable pageable);
+
     /**
      * Get all the fileMetaData.
      *
@@ -63,6 +63,30 @@ public interface QuestionService {
      */
     Page<Question> getQuestionBySubject(Long subjectId, Map<String, Object> tags, String title, int page, int size);
 
+    /**
+     * Get a page of the questions under the "semesterId" semester, in id order.
+     *
+     * @param semesterId the id of the semester.
+     * @return the page, or {@code null} if there is no such semester.
+     */
+    Page<Question> findBySemester(Long semesterId, int page, int size);
+
+    /**
+     * Get a page of the questions under the "branchId" branch, in id order.
+     *
+     * @param branchId the id of the branch.
+     * @return the page, or {@code null} if there is no such branch.
+     */
+    Page<Question> findByBranch(Long branchId, int page, int size);
+
+    /**
+     * Get a page of the questions under the "domainId" domain, in id order.
+     *
+     * @param domainId the id of the domain.
+     * @return the page, or {@code null} if there is no such domain.
+     */
+    Page<Question> findByDomain(Long domainId, int page, int size);
+
     /**
      * Delete the "id" question.
      *
@@ -0,0 +1,122 @@
+package com.apt.wii.service.catalog;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Bounded caches of the reads of one catalog entity: by id, the full list, and the children of a parent.
+ * <p>
+ * Each of them is registered in Micrometer under its own name, so hits, misses, evictions and load times can be told
+ * apart. Unknown ids and parents are not cached. Evictions requested inside a transaction are applied once it commits,
+ * so a read running in between cannot put the old rows back.
+ */
+public final class CatalogCache<T> {
+
+    private static final String ALL = "all";
+
+    private final Cache<Long, T> byId;
+
+    private final Cache<String, List<T>> all;
+
+    private final Cache<Long, List<T>> byParent;
+
+    /**
+     * @param name the cache name of the reads by id, also the prefix of the other two.
+     * @param parent the name of the parent entity, or {@code null} if the entity has none.
+     */
+    public CatalogCache(String name, String parent, long maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this.byId = monitor(Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build(), name, meterRegistry);
+        this.all = monitor(Caffeine.newBuilder().maximumSize(1).expireAfterWrite(ttl).recordStats().build(), name + ".all", meterRegistry);
+        this.byParent =
+            parent == null
+                ? null
+                : monitor(
+                    Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build(),
+                    name + ".by_" + parent,
+                    meterRegistry
+                );
+    }
+
+    public Optional<T> findOne(Long id, Function<Long, Optional<T>> loader) {
+        return Optional.ofNullable(byId.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    public List<T> findAll(Supplier<List<T>> loader) {
+        return all.get(ALL, key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * @return the children of the parent, or {@code null} as returned by {@code loader} if there is no such parent.
+     */
+    public List<T> findChildren(Long parentId, Function<Long, List<T>> loader) {
+        return byParent.get(
+            parentId,
+            key -> {
+                List<T> children = loader.apply(key);
+                return children != null ? List.copyOf(children) : null;
+            }
+        );
+    }
+
+    /**
+     * Forget the entity, the full list, and the children of the given parents.
+     *
+     * @param id the id of the entity, or {@code null} if it is not known.
+     * @param parentIds the ids of the parents whose children changed; {@code null} values are ignored.
+     */
+    public void evict(Long id, Long... parentIds) {
+        afterCommit(
+            () -> {
+                if (id != null) {
+                    byId.invalidate(id);
+                }
+                all.invalidateAll();
+                if (byParent != null) {
+                    for (Long parentId : parentIds) {
+                        if (parentId != null) {
+                            byParent.invalidate(parentId);
+                        }
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Forget the children of a parent that was deleted.
+     */
+    public void evictChildren(Long parentId) {
+        if (byParent != null && parentId != null) {
+            afterCommit(() -> byParent.invalidate(parentId));
+        }
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            }
+        );
+    }
+
+    private static <K, V> Cache<K, V> monitor(Cache<K, V> cache, String name, MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        return cache;
+    }
+}
@@ -0,0 +1,53 @@
+package com.apt.wii.service.catalog;
+
+import com.apt.wii.service.dto.BranchDTO;
+import com.apt.wii.service.dto.DomainDTO;
+import com.apt.wii.service.dto.SemesterDTO;
+import com.apt.wii.service.dto.SubjectDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link CatalogCache}s of the four catalog entities, shared by the caching services so that deleting a parent can
+ * also forget the cached children list of the level below.
+ */
+@Component
+public class CatalogCaches {
+
+    private final CatalogCache<DomainDTO> domains;
+
+    private final CatalogCache<BranchDTO> branches;
+
+    private final CatalogCache<SemesterDTO> semesters;
+
+    private final CatalogCache<SubjectDTO> subjects;
+
+    public CatalogCaches(
+        MeterRegistry meterRegistry,
+        @Value("${wii.catalog_cache.max_entries:1000}") long maxEntries,
+        @Value("${wii.catalog_cache.ttl:10m}") Duration ttl
+    ) {
+        this.domains = new CatalogCache<>("catalog.domains", null, maxEntries, ttl, meterRegistry);
+        this.branches = new CatalogCache<>("catalog.branches", "domain", maxEntries, ttl, meterRegistry);
+        this.semesters = new CatalogCache<>("catalog.semesters", "branch", maxEntries, ttl, meterRegistry);
+        this.subjects = new CatalogCache<>("catalog.subjects", "semester", maxEntries, ttl, meterRegistry);
+    }
+
+    public CatalogCache<DomainDTO> domains() {
+        return domains;
+    }
+
+    public CatalogCache<BranchDTO> branches() {
+        return branches;
+    }
+
+    public CatalogCache<SemesterDTO> semesters() {
+        return semesters;
+    }
+
+    public CatalogCache<SubjectDTO> subjects() {
+        return subjects;
+    }
+}
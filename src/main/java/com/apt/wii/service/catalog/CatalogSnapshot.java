@@ -0,0 +1,67 @@
+package com.apt.wii.service.catalog;
+
+import com.apt.wii.service.dto.CatalogNodeDTO;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The whole Domain → Branch → Semester → Subject tree as it was at one catalog version, with every node indexed by type
+ * and id so a subtree is a map lookup.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+
+    private final String contentTag;
+
+    private final Instant builtAt;
+
+    private final List<CatalogNodeDTO> domains;
+
+    private final Map<String, Map<Long, CatalogNodeDTO>> nodes;
+
+    CatalogSnapshot(
+        long version,
+        String contentTag,
+        Instant builtAt,
+        List<CatalogNodeDTO> domains,
+        Map<String, Map<Long, CatalogNodeDTO>> nodes
+    ) {
+        this.version = version;
+        this.contentTag = contentTag;
+        this.builtAt = builtAt;
+        this.domains = Collections.unmodifiableList(domains);
+        this.nodes = nodes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a hash of the whole tree, which two snapshots share exactly when they hold the same catalog, whichever
+     * instance built them.
+     */
+    public String getContentTag() {
+        return contentTag;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public List<CatalogNodeDTO> getDomains() {
+        return domains;
+    }
+
+    /**
+     * @param type one of the {@link CatalogNodeDTO} types.
+     * @return the node with its subtree, or empty if there is no such node.
+     */
+    public Optional<CatalogNodeDTO> find(String type, Long id) {
+        return Optional.ofNullable(nodes.getOrDefault(type, Map.of()).get(id));
+    }
+}
@@ -0,0 +1,229 @@
+package com.apt.wii.service.catalog;
+
+import com.apt.wii.domain.QuestionCount;
+import com.apt.wii.repository.BranchRepository;
+import com.apt.wii.repository.CatalogRow;
+import com.apt.wii.repository.DomainRepository;
+import com.apt.wii.repository.QuestionCountRepository;
+import com.apt.wii.repository.SemesterRepository;
+import com.apt.wii.repository.SubjectRepository;
+import com.apt.wii.service.dto.CatalogNodeDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Serves the Domain → Branch → Semester → Subject tree from an immutable in-memory {@link CatalogSnapshot}.
+ * <p>
+ * Every write to one of those entities calls {@link #invalidate()}, which bumps the catalog version once its transaction
+ * has committed. The next read sees a snapshot older than the version and rebuilds it with one query per level,
+ * whatever the size of the catalog. Readers never block each other; only the rebuild itself is serialized.
+ * <p>
+ * Nodes carry the question counts stored by {@link QuestionCountService}, which invalidates the snapshot whenever it
+ * writes them.
+ * <p>
+ * Writes made by other instances are not seen by this one, so a snapshot older than {@code catalog_cache.ttl} is
+ * rebuilt as well, under a new version.
+ * <p>
+ * Versions are local to this instance and only decide when to rebuild; clients are handed the snapshot's content tag,
+ * which does not depend on the instance or the run that built it.
+ */
+@Service
+public class CatalogTreeService {
+
+    private static final String CONTENT_TAG_ALGORITHM = "SHA-256";
+
+    private final Logger log = LoggerFactory.getLogger(CatalogTreeService.class);
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    private volatile CatalogSnapshot snapshot;
+
+    private final DomainRepository domainRepository;
+
+    private final BranchRepository branchRepository;
+
+    private final SemesterRepository semesterRepository;
+
+    private final SubjectRepository subjectRepository;
+
+    private final QuestionCountRepository questionCountRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer builds;
+
+    private final Duration maxAge;
+
+    public CatalogTreeService(
+        DomainRepository domainRepository,
+        BranchRepository branchRepository,
+        SemesterRepository semesterRepository,
+        SubjectRepository subjectRepository,
+        QuestionCountRepository questionCountRepository,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Value("${wii.catalog_cache.ttl:10m}") Duration maxAge
+    ) {
+        this.domainRepository = domainRepository;
+        this.branchRepository = branchRepository;
+        this.semesterRepository = semesterRepository;
+        this.subjectRepository = subjectRepository;
+        this.questionCountRepository = questionCountRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.builds =
+            Timer.builder("wii.catalog.snapshot.builds").description("Rebuilds of the catalog tree snapshot").register(meterRegistry);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @return the snapshot of the current catalog version, built first if the catalog changed since the last one or the
+     * last one is older than the max age.
+     */
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version.get() && !isExpired(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && isExpired(current)) {
+                // a new version, so that clients revalidating against the expired snapshot fetch the rebuilt one
+                version.compareAndSet(current.getVersion(), current.getVersion() + 1);
+            }
+            // read before the queries: a write committed while they run leaves the snapshot behind the version
+            long target = version.get();
+            if (current == null || current.getVersion() != target) {
+                current = builds.record(() -> build(target));
+                snapshot = current;
+                log.debug("Rebuilt catalog snapshot {}", target);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Mark the catalog as changed, when the current transaction commits or at once outside of a transaction.
+     */
+    public void invalidate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            }
+        );
+    }
+
+    private boolean isExpired(CatalogSnapshot current) {
+        return current.getBuiltAt().plus(maxAge).isBefore(Instant.now());
+    }
+
+    private CatalogSnapshot build(long target) {
+        return transactionTemplate.execute(status -> buildTree(target));
+    }
+
+    private CatalogSnapshot buildTree(long target) {
+        TreeBuilder tree = new TreeBuilder(questionCountRepository.findAll());
+        // bottom-up, so each node is created with its final list of children
+        Map<Long, List<CatalogNodeDTO>> subjects = tree.group(CatalogNodeDTO.SUBJECT, subjectRepository.findCatalogRows(), Map.of());
+        Map<Long, List<CatalogNodeDTO>> semesters = tree.group(CatalogNodeDTO.SEMESTER, semesterRepository.findCatalogRows(), subjects);
+        Map<Long, List<CatalogNodeDTO>> branches = tree.group(CatalogNodeDTO.BRANCH, branchRepository.findCatalogRows(), semesters);
+        List<CatalogNodeDTO> domains = domainRepository
+            .findCatalogRows()
+            .stream()
+            .map(row -> tree.node(CatalogNodeDTO.DOMAIN, row, branches))
+            .collect(Collectors.toList());
+        return new CatalogSnapshot(target, contentTag(domains), Instant.now(), domains, tree.index());
+    }
+
+    private static String contentTag(List<CatalogNodeDTO> domains) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(CONTENT_TAG_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(CONTENT_TAG_ALGORITHM + " is not available", e);
+        }
+        domains.forEach(domain -> hash(digest, domain));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    /**
+     * Feed a node and its subtree to {@code digest}, depth first. Every field ends with a NUL so that adjacent
+     * fields cannot run into each other, and every node with a byte that tells where its children end.
+     */
+    private static void hash(MessageDigest digest, CatalogNodeDTO node) {
+        for (Object field : new Object[] { node.getType(), node.getId(), node.getName(), node.getDescription(), node.getQuestionCount() }) {
+            digest.update(String.valueOf(field).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        node.getChildren().forEach(child -> hash(digest, child));
+        digest.update((byte) 1);
+    }
+
+    private static final class TreeBuilder {
+
+        private final Map<String, Map<Long, CatalogNodeDTO>> nodes = new HashMap<>();
+
+        private final Map<QuestionCount.Node, Long> questionCounts = new HashMap<>();
+
+        TreeBuilder(List<QuestionCount> questionCounts) {
+            for (QuestionCount count : questionCounts) {
+                this.questionCounts.put(new QuestionCount.Node(count.getNodeType(), count.getNodeId()), count.getQuestions());
+            }
+        }
+
+        /**
+         * Build the nodes of one level and group them by the id of their parent.
+         */
+        Map<Long, List<CatalogNodeDTO>> group(String type, List<CatalogRow> rows, Map<Long, List<CatalogNodeDTO>> children) {
+            Map<Long, List<CatalogNodeDTO>> byParent = new HashMap<>();
+            for (CatalogRow row : rows) {
+                CatalogNodeDTO node = node(type, row, children);
+                if (row.getParentId() != null) {
+                    byParent.computeIfAbsent(row.getParentId(), parentId -> new ArrayList<>()).add(node);
+                }
+            }
+            return byParent;
+        }
+
+        CatalogNodeDTO node(String type, CatalogRow row, Map<Long, List<CatalogNodeDTO>> children) {
+            List<CatalogNodeDTO> nodeChildren = children.getOrDefault(row.getId(), List.of());
+            long questionCount = questionCounts.getOrDefault(new QuestionCount.Node(type, row.getId()), 0L);
+            CatalogNodeDTO node = new CatalogNodeDTO(type, row.getId(), row.getName(), row.getDescription(), questionCount, nodeChildren);
+            nodes.computeIfAbsent(type, key -> new HashMap<>()).put(row.getId(), node);
+            return node;
+        }
+
+        Map<String, Map<Long, CatalogNodeDTO>> index() {
+            Map<String, Map<Long, CatalogNodeDTO>> index = new HashMap<>();
+            nodes.forEach((type, byId) -> index.put(type, Map.copyOf(byId)));
+            return Map.copyOf(index);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.apt.wii.service.catalog;
+
+import com.apt.wii.domain.Branch;
+import com.apt.wii.domain.Question;
+import com.apt.wii.domain.Semester;
+import com.apt.wii.domain.Subject;
+import com.apt.wii.repository.AncestryQuestions;
+import com.apt.wii.repository.BranchRepository;
+import com.apt.wii.repository.CatalogAncestry;
+import com.apt.wii.repository.QuestionRepository;
+import com.apt.wii.repository.SemesterRepository;
+import com.apt.wii.repository.SubjectRepository;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the ancestor ids copied onto subjects (branch, domain) and questions (semester, branch, domain) in sync with the
+ * catalog, so that the questions under any node are read with one query on an indexed column.
+ * <p>
+ * The catalog services call in here on every write, inside their transaction. Moving a node rewrites the copies below it
+ * with one bulk update per table; renames leave them alone. Questions take a share lock on their subject and subject
+ * moves an exclusive one, so a question is never saved with the ancestry of a subject that is moving. Rows written
+ * before the columns existed, or left stale anyway, are rewritten by {@link #repair()}, which runs shortly after
+ * startup and then daily.
+ * <p>
+ * The questions each move carries to other ancestors are reported to the {@link QuestionCountService}.
+ */
+@Service
+public class HierarchyIndexService {
+
+    private final Logger log = LoggerFactory.getLogger(HierarchyIndexService.class);
+
+    private final BranchRepository branchRepository;
+
+    private final SemesterRepository semesterRepository;
+
+    private final SubjectRepository subjectRepository;
+
+    private final QuestionRepository questionRepository;
+
+    private final QuestionCountService questionCountService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public HierarchyIndexService(
+        BranchRepository branchRepository,
+        SemesterRepository semesterRepository,
+        SubjectRepository subjectRepository,
+        QuestionRepository questionRepository,
+        QuestionCountService questionCountService,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.branchRepository = branchRepository;
+        this.semesterRepository = semesterRepository;
+        this.subjectRepository = subjectRepository;
+        this.questionRepository = questionRepository;
+        this.questionCountService = questionCountService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Copy the ancestors of the subject of a question onto it, before it is saved. The subject stays share-locked until
+     * the transaction ends, so it cannot be moved between this read and the save.
+     */
+    public void index(Question question) {
+        Long subjectId = question.getSubject() != null ? question.getSubject().getId() : null;
+        Subject subject = subjectId != null ? subjectRepository.findOneForShare(subjectId).orElse(null) : null;
+        question.setSemesterId(subject != null && subject.getSemester() != null ? subject.getSemester().getId() : null);
+        question.setBranchId(subject != null ? subject.getBranchId() : null);
+        question.setDomainId(subject != null ? subject.getDomainId() : null);
+    }
+
+    /**
+     * Copy the ancestors of the semester of a subject onto it, and onto its questions if the subject moved.
+     *
+     * @param subject the subject being saved.
+     * @param previous the ancestry stored before the write, read with the subject locked by
+     * {@link SubjectRepository#findOneForUpdate}, or {@code null} for a new subject.
+     */
+    public void index(Subject subject, CatalogAncestry previous) {
+        Long semesterId = subject.getSemester() != null ? subject.getSemester().getId() : null;
+        CatalogAncestry semester = semesterId != null ? semesterRepository.findAncestry(semesterId).orElse(null) : null;
+        Long branchId = semester != null ? semester.getBranchId() : null;
+        Long domainId = semester != null ? semester.getDomainId() : null;
+        subject.setBranchId(branchId);
+        subject.setDomainId(domainId);
+        if (
+            previous != null &&
+            !(
+                Objects.equals(previous.getSemesterId(), semesterId) &&
+                Objects.equals(previous.getBranchId(), branchId) &&
+                Objects.equals(previous.getDomainId(), domainId)
+            )
+        ) {
+            int questions = questionRepository.updateAncestryBySubjectId(subject.getId(), semesterId, branchId, domainId);
+            log.debug("Subject {} moved to semester {}, reindexed {} questions", subject.getId(), semesterId, questions);
+            questionCountService.moved(
+                questions,
+                QuestionCountService.path(null, previous.getSemesterId(), previous.getBranchId(), previous.getDomainId()),
+                QuestionCountService.path(null, semesterId, branchId, domainId)
+            );
+        }
+    }
+
+    /**
+     * Rewrite the ancestors stored below a semester if it moved to another branch.
+     *
+     * @param semester the saved semester.
+     * @param previous the ancestry stored before the write, or {@code null} for a new semester.
+     */
+    public void moved(Semester semester, CatalogAncestry previous) {
+        if (previous == null) {
+            return;
+        }
+        Long branchId = semester.getBranch() != null ? semester.getBranch().getId() : null;
+        Long domainId = branchId != null ? branchRepository.findAncestry(branchId).map(CatalogAncestry::getDomainId).orElse(null) : null;
+        if (Objects.equals(previous.getBranchId(), branchId) && Objects.equals(previous.getDomainId(), domainId)) {
+            return;
+        }
+        int subjects = subjectRepository.updateAncestryBySemesterId(semester.getId(), branchId, domainId);
+        int questions = questionRepository.updateAncestryBySemesterId(semester.getId(), branchId, domainId);
+        log.debug("Semester {} moved to branch {}, reindexed {} subjects, {} questions", semester.getId(), branchId, subjects, questions);
+        questionCountService.moved(
+            questions,
+            QuestionCountService.path(null, null, previous.getBranchId(), previous.getDomainId()),
+            QuestionCountService.path(null, null, branchId, domainId)
+        );
+    }
+
+    /**
+     * Rewrite the domain stored below a branch if it moved to another domain.
+     *
+     * @param branch the saved branch.
+     * @param previous the ancestry stored before the write, or {@code null} for a new branch.
+     */
+    public void moved(Branch branch, CatalogAncestry previous) {
+        if (previous == null) {
+            return;
+        }
+        Long domainId = branch.getDomain() != null ? branch.getDomain().getId() : null;
+        if (Objects.equals(previous.getDomainId(), domainId)) {
+            return;
+        }
+        int subjects = subjectRepository.updateDomainIdByBranchId(branch.getId(), domainId);
+        int questions = questionRepository.updateDomainIdByBranchId(branch.getId(), domainId);
+        log.debug("Branch {} moved to domain {}, reindexed {} subjects and {} questions", branch.getId(), domainId, subjects, questions);
+        questionCountService.moved(
+            questions,
+            QuestionCountService.path(null, null, null, previous.getDomainId()),
+            QuestionCountService.path(null, null, null, domainId)
+        );
+    }
+
+    @Scheduled(
+        initialDelayString = "${wii.catalog.ancestry_fill.initial_delay:PT1M}",
+        fixedDelayString = "${wii.catalog.ancestry_fill.interval:PT24H}"
+    )
+    public void scheduledRepair() {
+        repair();
+    }
+
+    /**
+     * Rewrite the ancestors of the subjects and questions whose copies are missing or no longer match the catalog,
+     * one subject per transaction.
+     *
+     * @return the number of questions updated.
+     */
+    public long repair() {
+        Set<Long> subjectIds = new TreeSet<>(subjectRepository.findIdsWithStaleAncestry());
+        subjectIds.addAll(questionRepository.findSubjectIdsWithStaleAncestry());
+        long repaired = 0;
+        for (Long subjectId : subjectIds) {
+            Long questions = transactionTemplate.execute(status -> repair(subjectId));
+            repaired += questions != null ? questions : 0;
+        }
+        if (!subjectIds.isEmpty()) {
+            log.info("Repaired the catalog ancestry of {} subjects and {} questions", subjectIds.size(), repaired);
+        }
+        return repaired;
+    }
+
+    /**
+     * Repair one subject and its questions in the current transaction, with the subject locked so that no question is
+     * saved or moved under it meanwhile.
+     */
+    private long repair(Long subjectId) {
+        Subject subject = subjectRepository.findOneForUpdate(subjectId).orElse(null);
+        Long semesterId = subject != null && subject.getSemester() != null ? subject.getSemester().getId() : null;
+        CatalogAncestry semester = semesterId != null ? semesterRepository.findAncestry(semesterId).orElse(null) : null;
+        if (semester == null || semester.getDomainId() == null) {
+            // outside a complete hierarchy, nothing to find it by
+            return 0;
+        }
+        Long branchId = semester.getBranchId();
+        Long domainId = semester.getDomainId();
+        subject.setBranchId(branchId);
+        subject.setDomainId(domainId);
+        long questions = 0;
+        for (AncestryQuestions stale : questionRepository.findStaleAncestryBySubjectId(subjectId, semesterId, branchId, domainId)) {
+            questionCountService.moved(
+                stale.getQuestions(),
+                QuestionCountService.path(null, stale.getSemesterId(), stale.getBranchId(), stale.getDomainId()),
+                QuestionCountService.path(null, semesterId, branchId, domainId)
+            );
+            questions += stale.getQuestions();
+        }
+        if (questions > 0) {
+            questionRepository.updateAncestryBySubjectId(subjectId, semesterId, branchId, domainId);
+        }
+        return questions;
+    }
+}
@@ -0,0 +1,287 @@
+package com.apt.wii.service.catalog;
+
+import com.apt.wii.domain.QuestionCount;
+import com.apt.wii.domain.QuestionCountDelta;
+import com.apt.wii.repository.CatalogAncestry;
+import com.apt.wii.repository.NodeQuestions;
+import com.apt.wii.repository.QuestionCountDeltaRepository;
+import com.apt.wii.repository.QuestionCountRepository;
+import com.apt.wii.repository.QuestionRepository;
+import com.apt.wii.service.dto.CatalogNodeDTO;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the number of questions under every domain, branch, semester and subject in the {@code question_count} table.
+ * <p>
+ * Writes to questions and catalog moves report how many questions entered or left which nodes. Those deltas are
+ * inserted into {@code question_count_delta} by the write's own transaction, and added to the counts every
+ * {@code flush_interval} by whichever instance gets to them first, so saving a question never waits on the row of its
+ * domain. Each flush that changed a count bumps the catalog version, which is how the counts reach the catalog tree.
+ * The counts of questions created before the table existed are seeded once at startup by {@link #backfill()}, and
+ * {@link #reconcile()} recounts everything from the questions themselves, to correct counts changed by hand.
+ */
+@Service
+public class QuestionCountService {
+
+    private static final List<String> TYPES = List.of(
+        CatalogNodeDTO.SUBJECT,
+        CatalogNodeDTO.SEMESTER,
+        CatalogNodeDTO.BRANCH,
+        CatalogNodeDTO.DOMAIN
+    );
+
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(QuestionCountService.class);
+
+    @Value("${wii.catalog.question_counts.reconcile_enabled:false}")
+    private boolean reconcileEnabled;
+
+    private final QuestionCountRepository questionCountRepository;
+
+    private final QuestionCountDeltaRepository questionCountDeltaRepository;
+
+    private final QuestionRepository questionRepository;
+
+    private final CatalogTreeService catalogTreeService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate snapshotTransactionTemplate;
+
+    public QuestionCountService(
+        QuestionCountRepository questionCountRepository,
+        QuestionCountDeltaRepository questionCountDeltaRepository,
+        QuestionRepository questionRepository,
+        CatalogTreeService catalogTreeService,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.questionCountRepository = questionCountRepository;
+        this.questionCountDeltaRepository = questionCountDeltaRepository;
+        this.questionRepository = questionRepository;
+        this.catalogTreeService = catalogTreeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Count the questions under every node from the questions themselves, if no count has been recorded yet.
+     * <p>
+     * Runs before the application serves requests. The questions and the deltas not yet flushed are read from one
+     * repeatable-read snapshot, and the pending deltas are taken off the seeded counts since the next flush adds them.
+     */
+    @PostConstruct
+    public void backfill() {
+        try {
+            Integer seeded = snapshotTransactionTemplate.execute(
+                status -> {
+                    if (questionCountRepository.count() > 0) {
+                        return 0;
+                    }
+                    Map<QuestionCount.Node, Long> counts = countQuestions();
+                    for (QuestionCountDelta pending : questionCountDeltaRepository.findAll()) {
+                        counts.merge(pending.getNode(), -pending.getQuestions(), Long::sum);
+                    }
+                    List<QuestionCount> backfilled = new ArrayList<>();
+                    counts.forEach(
+                        (node, questions) -> {
+                            if (questions != 0) {
+                                backfilled.add(
+                                    new QuestionCount().nodeType(node.getNodeType()).nodeId(node.getNodeId()).questions(questions)
+                                );
+                            }
+                        }
+                    );
+                    questionCountRepository.saveAll(backfilled);
+                    return backfilled.size();
+                }
+            );
+            if (seeded != null && seeded > 0) {
+                log.info("Backfilled the question count of {} catalog nodes", seeded);
+            }
+        } catch (RuntimeException e) {
+            // another instance may have backfilled at the same time
+            log.warn("Could not backfill question counts : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the nodes a question or catalog node sits under, keyed by node type; levels that are {@code null} are left out.
+     */
+    public static Map<String, Long> path(Long subjectId, Long semesterId, Long branchId, Long domainId) {
+        Map<String, Long> path = new HashMap<>();
+        putIfPresent(path, CatalogNodeDTO.SUBJECT, subjectId);
+        putIfPresent(path, CatalogNodeDTO.SEMESTER, semesterId);
+        putIfPresent(path, CatalogNodeDTO.BRANCH, branchId);
+        putIfPresent(path, CatalogNodeDTO.DOMAIN, domainId);
+        return path;
+    }
+
+    /**
+     * @return the path of the given ancestry, empty for {@code null}.
+     */
+    public static Map<String, Long> path(CatalogAncestry ancestry) {
+        return ancestry == null
+            ? Map.of()
+            : path(ancestry.getSubjectId(), ancestry.getSemesterId(), ancestry.getBranchId(), ancestry.getDomainId());
+    }
+
+    /**
+     * Account for {@code questions} questions moving from one path to another, with the current transaction or in one
+     * of its own. Questions created have an empty {@code from} path, questions deleted an empty {@code to} path; the
+     * levels both paths share are left alone.
+     */
+    public void moved(long questions, Map<String, Long> from, Map<String, Long> to) {
+        if (questions == 0) {
+            return;
+        }
+        List<QuestionCountDelta> deltas = new ArrayList<>();
+        for (String type : TYPES) {
+            Long fromId = from.get(type);
+            Long toId = to.get(type);
+            if (Objects.equals(fromId, toId)) {
+                continue;
+            }
+            if (fromId != null) {
+                deltas.add(new QuestionCountDelta().nodeType(type).nodeId(fromId).questions(-questions));
+            }
+            if (toId != null) {
+                deltas.add(new QuestionCountDelta().nodeType(type).nodeId(toId).questions(questions));
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // joins the transaction of the write if there is one, so the deltas are committed or rolled back with it
+        transactionTemplate.executeWithoutResult(status -> questionCountDeltaRepository.saveAll(deltas));
+    }
+
+    @Scheduled(fixedDelayString = "${wii.catalog.question_counts.flush_interval:PT30S}")
+    public synchronized void flush() {
+        int flushed = 0;
+        try {
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> flushBatch());
+                flushed += batch;
+            } while (batch == FLUSH_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.warn("Could not add question count deltas, will retry : {}", e.getMessage());
+        }
+        if (flushed > 0) {
+            catalogTreeService.invalidate();
+        }
+    }
+
+    /**
+     * Add the oldest deltas to the counts and delete them, in the current transaction.
+     *
+     * @return the number of deltas added.
+     */
+    private int flushBatch() {
+        List<QuestionCountDelta> deltas = questionCountDeltaRepository.findOldestForUpdate(PageRequest.of(0, FLUSH_BATCH_SIZE));
+        Map<QuestionCount.Node, Long> sums = new HashMap<>();
+        deltas.forEach(delta -> sums.merge(delta.getNode(), delta.getQuestions(), Long::sum));
+        sums.forEach(
+            (node, questions) -> {
+                if (questions != 0 && questionCountRepository.addQuestions(node.getNodeType(), node.getNodeId(), questions) == 0) {
+                    questionCountRepository.save(
+                        new QuestionCount().nodeType(node.getNodeType()).nodeId(node.getNodeId()).questions(questions)
+                    );
+                }
+            }
+        );
+        questionCountDeltaRepository.deleteInBatch(deltas);
+        return deltas.size();
+    }
+
+    @Scheduled(
+        initialDelayString = "${wii.catalog.question_counts.reconcile_initial_delay:PT5M}",
+        fixedDelayString = "${wii.catalog.question_counts.reconcile_interval:PT24H}"
+    )
+    public void scheduledReconcile() {
+        if (reconcileEnabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Recount the questions under every node and record the difference with the stored counts as deltas.
+     * <p>
+     * The questions, the counts and the deltas not yet flushed are read from one repeatable-read snapshot. A write
+     * commits its questions and its deltas together, and a flush moves deltas into the counts in one transaction, so
+     * in that snapshot every question is in either the stored counts or the pending deltas, never both; writes committed
+     * afterwards are left to their own deltas. Two recounts running at once would each record the same correction, so
+     * {@code reconcile_enabled} is off by default and should be turned on for one instance only.
+     *
+     * @return the number of nodes whose count was corrected.
+     */
+    public synchronized int reconcile() {
+        Integer corrected = snapshotTransactionTemplate.execute(
+            status -> {
+                Map<QuestionCount.Node, Long> corrections = countQuestions();
+                // a node that is gone or has no questions left is not counted, so it is corrected down to zero
+                for (QuestionCount stored : questionCountRepository.findAll()) {
+                    corrections.merge(new QuestionCount.Node(stored.getNodeType(), stored.getNodeId()), -stored.getQuestions(), Long::sum);
+                }
+                for (QuestionCountDelta pending : questionCountDeltaRepository.findAll()) {
+                    corrections.merge(pending.getNode(), -pending.getQuestions(), Long::sum);
+                }
+                List<QuestionCountDelta> deltas = new ArrayList<>();
+                corrections.forEach(
+                    (node, questions) -> {
+                        if (questions != 0) {
+                            deltas.add(new QuestionCountDelta().nodeType(node.getNodeType()).nodeId(node.getNodeId()).questions(questions));
+                        }
+                    }
+                );
+                questionCountDeltaRepository.saveAll(deltas);
+                return deltas.size();
+            }
+        );
+        if (corrected != null && corrected > 0) {
+            log.info("Corrected the question count of {} catalog nodes", corrected);
+            flush();
+        }
+        return corrected != null ? corrected : 0;
+    }
+
+    /**
+     * @return the number of questions under every node, by the ancestry stored on the questions.
+     */
+    private Map<QuestionCount.Node, Long> countQuestions() {
+        Map<QuestionCount.Node, Long> counts = new HashMap<>();
+        putCounts(counts, CatalogNodeDTO.SUBJECT, questionRepository.countBySubject());
+        putCounts(counts, CatalogNodeDTO.SEMESTER, questionRepository.countBySemester());
+        putCounts(counts, CatalogNodeDTO.BRANCH, questionRepository.countByBranch());
+        putCounts(counts, CatalogNodeDTO.DOMAIN, questionRepository.countByDomain());
+        return counts;
+    }
+
+    private static void putCounts(Map<QuestionCount.Node, Long> counted, String type, List<NodeQuestions> rows) {
+        for (NodeQuestions row : rows) {
+            counted.put(new QuestionCount.Node(type, row.getId()), row.getQuestions());
+        }
+    }
+
+    private static void putIfPresent(Map<String, Long> path, String type, Long id) {
+        if (id != null) {
+            path.put(type, id);
+        }
+    }
+}
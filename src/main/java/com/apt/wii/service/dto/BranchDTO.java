@@ -16,6 +16,21 @@ public class BranchDTO implements Serializable {
 
     private DomainDTO domain;
 
+    public BranchDTO() {}
+
+    /**
+     * Constructor used by the repository projections; the domain only carries its id, as in {@code BranchMapper.toDto}.
+     */
+    public BranchDTO(Long id, String name, String description, Long domainId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        if (domainId != null) {
+            this.domain = new DomainDTO();
+            this.domain.setId(domainId);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,83 @@
+package com.apt.wii.service.dto;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of the catalog tree: a domain, branch, semester or subject with its children.
+ * <p>
+ * Nodes are shared by every response built from the same catalog snapshot, so they cannot be modified.
+ */
+public final class CatalogNodeDTO implements Serializable {
+
+    public static final String DOMAIN = "domain";
+    public static final String BRANCH = "branch";
+    public static final String SEMESTER = "semester";
+    public static final String SUBJECT = "subject";
+
+    private static final long serialVersionUID = 1L;
+
+    private final String type;
+
+    private final Long id;
+
+    private final String name;
+
+    private final String description;
+
+    private final long questionCount;
+
+    private final List<CatalogNodeDTO> children;
+
+    public CatalogNodeDTO(String type, Long id, String name, String description, long questionCount, List<CatalogNodeDTO> children) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.questionCount = questionCount;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return {@code domain}, {@code branch}, {@code semester} or {@code subject}.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the number of questions under the node, as of the last flush of the question counts.
+     */
+    public long getQuestionCount() {
+        return questionCount;
+    }
+
+    public List<CatalogNodeDTO> getChildren() {
+        return children;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CatalogNodeDTO{" +
+            "type='" + getType() + "'" +
+            ", id=" + getId() +
+            ", name='" + getName() + "'" +
+            ", questionCount=" + getQuestionCount() +
+            ", children=" + getChildren().size() +
+            "}";
+    }
+}
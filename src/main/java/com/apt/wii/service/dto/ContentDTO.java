@@ -21,6 +21,23 @@ public class ContentDTO implements Serializable {
 
     private QuestionDTO question;
 
+    public ContentDTO() {}
+
+    /**
+     * Read by {@link com.apt.wii.repository.ContentRepository#findDtosByQuestionId(Long)} without loading the question.
+     */
+    public ContentDTO(Long id, ContentType type, String text, String filePath, Integer seqNum, Long questionId) {
+        this.id = id;
+        this.type = type;
+        this.text = text;
+        this.filePath = filePath;
+        this.seqNum = seqNum;
+        if (questionId != null) {
+            this.question = new QuestionDTO();
+            this.question.setId(questionId);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -0,0 +1,53 @@
+package com.apt.wii.service.dto;
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the outcome of one file of a multi-file upload: the stored fileDetails, or why the file was not stored.
+ */
+public class FileUploadResultDTO implements Serializable {
+
+    private String fileName;
+
+    private FileDetailsDTO fileDetails;
+
+    private String error;
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public FileDetailsDTO getFileDetails() {
+        return fileDetails;
+    }
+
+    public void setFileDetails(FileDetailsDTO fileDetails) {
+        this.fileDetails = fileDetails;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean isStored() {
+        return fileDetails != null;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "FileUploadResultDTO{" +
+            "fileName='" + getFileName() + "'" +
+            ", fileDetails=" + getFileDetails() +
+            ", error='" + getError() + "'" +
+            "}";
+    }
+}
@@ -16,6 +16,21 @@ public class SemesterDTO implements Serializable {
 
     private BranchDTO branch;
 
+    public SemesterDTO() {}
+
+    /**
+     * Filled straight from a JPQL constructor expression, with the branch reduced to its id.
+     */
+    public SemesterDTO(Long id, String name, String description, Long branchId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        if (branchId != null) {
+            this.branch = new BranchDTO();
+            this.branch.setId(branchId);
+        }
+    }
+
     public Long getId() {
         return id;
     }
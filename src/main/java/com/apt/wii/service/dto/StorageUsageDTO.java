@@ -0,0 +1,71 @@
+package com.apt.wii.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the {@link com.apt.wii.domain.StorageUsage} entity.
+ */
+public class StorageUsageDTO implements Serializable {
+
+    private String login;
+
+    private Long bytes;
+
+    private Long files;
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public Long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(Long bytes) {
+        this.bytes = bytes;
+    }
+
+    public Long getFiles() {
+        return files;
+    }
+
+    public void setFiles(Long files) {
+        this.files = files;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StorageUsageDTO)) {
+            return false;
+        }
+
+        StorageUsageDTO storageUsageDTO = (StorageUsageDTO) o;
+        if (this.login == null) {
+            return false;
+        }
+        return Objects.equals(this.login, storageUsageDTO.login);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.login);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StorageUsageDTO{" +
+            "login='" + getLogin() + "'" +
+            ", bytes=" + getBytes() +
+            ", files=" + getFiles() +
+            "}";
+    }
+}
@@ -16,6 +16,18 @@ public class SubjectDTO implements Serializable {
 
     private SemesterDTO semester;
 
+    public SubjectDTO() {}
+
+    public SubjectDTO(Long id, String name, String description, Long semesterId) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        if (semesterId != null) {
+            this.semester = new SemesterDTO();
+            this.semester.setId(semesterId);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -18,6 +18,18 @@ public class TagMetaDataDTO implements Serializable {
 
     private QuestionDTO question;
 
+    public TagMetaDataDTO() {}
+
+    public TagMetaDataDTO(Long id, String key, String value, Long questionId) {
+        this.id = id;
+        this.key = key;
+        this.value = value;
+        if (questionId != null) {
+            this.question = new QuestionDTO();
+            this.question.setId(questionId);
+        }
+    }
+
     public Long getId() {
         return id;
     }
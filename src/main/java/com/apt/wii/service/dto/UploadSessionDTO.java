@@ -0,0 +1,98 @@
+package com.apt.wii.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A DTO for a resumable upload session, backed by a {@link com.apt.wii.domain.FileDetails} and its metadata.
+ */
+public class UploadSessionDTO implements Serializable {
+
+    private Long id;
+
+    private String fileName;
+
+    private Long expectedSize;
+
+    private Long receivedBytes;
+
+    private Instant expiresAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getExpectedSize() {
+        return expectedSize;
+    }
+
+    public void setExpectedSize(Long expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
+    public Long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public void setReceivedBytes(Long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isComplete() {
+        return expectedSize != null && expectedSize.equals(receivedBytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UploadSessionDTO)) {
+            return false;
+        }
+
+        UploadSessionDTO uploadSessionDTO = (UploadSessionDTO) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, uploadSessionDTO.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "UploadSessionDTO{" +
+            "id=" + getId() +
+            ", fileName='" + getFileName() + "'" +
+            ", expectedSize=" + getExpectedSize() +
+            ", receivedBytes=" + getReceivedBytes() +
+            ", expiresAt='" + getExpiresAt() + "'" +
+            "}";
+    }
+}
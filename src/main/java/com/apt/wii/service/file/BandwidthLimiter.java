@@ -0,0 +1,37 @@
+package com.apt.wii.service.file;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces a single reader to an average number of bytes per second, sleeping whenever it gets ahead of schedule.
+ */
+final class BandwidthLimiter {
+
+    private final long bytesPerSecond;
+
+    private final long startNanos = System.nanoTime();
+
+    private long bytes;
+
+    /**
+     * @param bytesPerSecond the average rate to keep to, or {@code 0} for no limit.
+     */
+    BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Account for {@code count} bytes read, and wait until reading them fits the rate.
+     */
+    void acquire(long count) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        bytes += count;
+        long dueNanos = (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+        long aheadMillis = TimeUnit.NANOSECONDS.toMillis(dueNanos - (System.nanoTime() - startNanos));
+        if (aheadMillis > 0) {
+            Thread.sleep(aheadMillis);
+        }
+    }
+}
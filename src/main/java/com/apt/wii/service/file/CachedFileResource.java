@@ -0,0 +1,106 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A stored file served from a read-only buffer held by the {@link HotFileCache}.
+ */
+public class CachedFileResource extends AbstractResource {
+
+    private final ByteBuffer content;
+
+    private final String filename;
+
+    private final long lastModified;
+
+    public CachedFileResource(ByteBuffer content, String filename, long lastModified) {
+        this.content = content;
+        this.filename = filename;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Write {@code count} bytes starting at {@code position} to {@code target}.
+     */
+    public void writeTo(WritableByteChannel target, long position, long count) throws IOException {
+        ByteBuffer view = content.duplicate();
+        view.position((int) position);
+        view.limit((int) Math.min(position + count, view.capacity()));
+        while (view.hasRemaining()) {
+            target.write(view);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(content.duplicate());
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return content.capacity();
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "cached file [" + filename + "]";
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
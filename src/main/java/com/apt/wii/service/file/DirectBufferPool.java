@@ -0,0 +1,46 @@
+package com.apt.wii.service.file;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed-size pool of direct {@link ByteBuffer}s.
+ * <p>
+ * Off-heap memory used by the pool is bounded by {@code capacity * bufferSize}. When every pooled buffer is in use,
+ * {@link #acquire()} hands out a short-lived heap buffer instead of allocating more direct memory.
+ */
+public class DirectBufferPool {
+
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    private final int bufferSize;
+
+    public DirectBufferPool(int capacity, int bufferSize) {
+        this.buffers = new ArrayBlockingQueue<>(capacity);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < capacity; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(bufferSize);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            buffers.offer(buffer);
+        }
+    }
+
+    public int available() {
+        return buffers.size();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,192 @@
+package com.apt.wii.service.file;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Mints and verifies short-lived download URLs signed with HMAC-SHA256.
+ * <p>
+ * A URL carries everything needed to serve the file: its stored path, content encoding and expiry, signed together with
+ * the file name in the URL path. Verifying one needs neither the database nor an authenticated user.
+ * <p>
+ * Keys are configured as {@code id:secret} pairs. The first key signs new URLs and every key is accepted, so keys are
+ * rotated by adding a new one in front, and URLs are revoked by removing the key that signed them.
+ */
+@Service
+public class DownloadUrlSigner {
+
+    public static final String PATH_PREFIX = "/files/signed/";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final String KEY_PARAM = "k";
+    private static final String EXPIRES_PARAM = "e";
+    private static final String PATH_PARAM = "p";
+    private static final String ENCODING_PARAM = "c";
+    private static final String TYPE_PARAM = "t";
+    private static final String SIGNATURE_PARAM = "s";
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    private final Logger log = LoggerFactory.getLogger(DownloadUrlSigner.class);
+
+    private final Map<String, SecretKeySpec> keys = new LinkedHashMap<>();
+
+    private final String signingKeyId;
+
+    private final Duration ttl;
+
+    public DownloadUrlSigner(
+        @Value("${wii.download.signed_urls.keys:}") String[] keys,
+        @Value("${wii.download.signed_urls.ttl:10m}") Duration ttl
+    ) {
+        for (String key : keys) {
+            int separator = key.indexOf(':');
+            if (separator <= 0 || separator == key.length() - 1) {
+                throw new IllegalArgumentException("Download signing keys must be given as id:secret");
+            }
+            this.keys.put(key.substring(0, separator).trim(), secretKey(key.substring(separator + 1).trim()));
+        }
+        this.signingKeyId = this.keys.isEmpty() ? null : this.keys.keySet().iterator().next();
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return {@code true} if signing keys are configured.
+     */
+    public boolean isEnabled() {
+        return signingKeyId != null;
+    }
+
+    /**
+     * @return the expiry of a URL signed now.
+     */
+    public Instant expiry() {
+        return Instant.now().plus(ttl).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    /**
+     * Build the URL of a signed download, relative to the application root.
+     *
+     * @throws IllegalStateException if no signing key is configured.
+     */
+    public String sign(SignedDownload download) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("No download signing key is configured");
+        }
+        String expires = String.valueOf(download.getExpiresAt().getEpochSecond());
+        String path = Base64.getUrlEncoder().withoutPadding().encodeToString(download.getPath().getBytes(StandardCharsets.UTF_8));
+        String encoding = download.getContentEncoding() != null ? download.getContentEncoding() : "";
+        String type = download.getContentType() != null ? download.getContentType() : "";
+        byte[] signature = hmac(keys.get(signingKeyId), payload(signingKeyId, expires, path, encoding, download.getFilename(), type));
+        StringBuilder url = new StringBuilder(PATH_PREFIX)
+            .append(encodeFilename(download.getFilename()))
+            .append('?')
+            .append(KEY_PARAM)
+            .append('=')
+            .append(UriUtils.encodeQueryParam(signingKeyId, StandardCharsets.UTF_8))
+            .append('&')
+            .append(EXPIRES_PARAM)
+            .append('=')
+            .append(expires)
+            .append('&')
+            .append(PATH_PARAM)
+            .append('=')
+            .append(path);
+        if (!encoding.isEmpty()) {
+            url.append('&').append(ENCODING_PARAM).append('=').append(UriUtils.encodeQueryParam(encoding, StandardCharsets.UTF_8));
+        }
+        if (!type.isEmpty()) {
+            url.append('&').append(TYPE_PARAM).append('=').append(UriUtils.encodeQueryParam(type, StandardCharsets.UTF_8));
+        }
+        return url
+            .append('&')
+            .append(SIGNATURE_PARAM)
+            .append('=')
+            .append(Base64.getUrlEncoder().withoutPadding().encodeToString(signature))
+            .toString();
+    }
+
+    /**
+     * Check the signature and expiry of a signed download request.
+     *
+     * @return the download the request is entitled to, or empty if the URL is malformed, expired, or signed with an
+     * unknown key or a wrong signature.
+     */
+    public Optional<SignedDownload> verify(HttpServletRequest request) {
+        String keyId = request.getParameter(KEY_PARAM);
+        String expires = request.getParameter(EXPIRES_PARAM);
+        String path = request.getParameter(PATH_PARAM);
+        String signature = request.getParameter(SIGNATURE_PARAM);
+        String encoding = request.getParameter(ENCODING_PARAM) != null ? request.getParameter(ENCODING_PARAM) : "";
+        String type = request.getParameter(TYPE_PARAM) != null ? request.getParameter(TYPE_PARAM) : "";
+        String requestPath = URL_PATH_HELPER.getPathWithinApplication(request);
+        SecretKeySpec key = keyId != null ? keys.get(keyId) : null;
+        if (key == null || expires == null || path == null || signature == null || !requestPath.startsWith(PATH_PREFIX)) {
+            return Optional.empty();
+        }
+        String filename = requestPath.substring(PATH_PREFIX.length());
+        try {
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(expires));
+            byte[] expected = hmac(key, payload(keyId, expires, path, encoding, filename, type));
+            if (!MessageDigest.isEqual(expected, Base64.getUrlDecoder().decode(signature))) {
+                return Optional.empty();
+            }
+            if (expiresAt.isBefore(Instant.now())) {
+                log.debug("Signed download of {} expired at {}", filename, expiresAt);
+                return Optional.empty();
+            }
+            String storedPath = new String(Base64.getUrlDecoder().decode(path), StandardCharsets.UTF_8);
+            return Optional.of(
+                new SignedDownload(storedPath, filename, encoding.isEmpty() ? null : encoding, type.isEmpty() ? null : type, expiresAt)
+            );
+        } catch (IllegalArgumentException e) {
+            // malformed number or Base64
+            return Optional.empty();
+        }
+    }
+
+    private static String payload(String keyId, String expires, String path, String encoding, String filename, String type) {
+        return keyId + '\n' + expires + '\n' + path + '\n' + encoding + '\n' + filename + '\n' + type;
+    }
+
+    /**
+     * Encode a file name as a path segment. {@code ;} is legal in a segment, but would be read back as the start of path
+     * parameters and cut from the name, so it is percent-encoded as well.
+     */
+    private static String encodeFilename(String filename) {
+        return UriUtils.encodePathSegment(filename, StandardCharsets.UTF_8).replace(";", "%3B");
+    }
+
+    private static SecretKeySpec secretKey(String secret) {
+        return new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    private static byte[] hmac(SecretKeySpec key, String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Cannot sign with " + HMAC_ALGORITHM, e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.apt.wii.service.file;
+
+import java.nio.file.Path;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * A stored file sent in its stored encoding, named after the original upload so its media type can be derived.
+ */
+public class EncodedFileResource extends FileSystemResource {
+
+    private final String filename;
+
+    public EncodedFileResource(Path file, String filename) {
+        super(file);
+        this.filename = filename;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+}
@@ -0,0 +1,118 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.domain.FileMetaData;
+import com.apt.wii.repository.FileDetailsRepository;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.repository.FileMetaDataRepository.FileDetailsValue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Records when stored files were last downloaded, for the tiering of cold files.
+ * <p>
+ * A download only adds the fileDetails id to an in-memory set. Every {@code access_flush_interval} the set is drained and
+ * written to the {@code lastAccessed} metadata rows {@code access_batch_size} ids at a time: one bulk update for the rows that
+ * exist and batched inserts for the others, all with the time of the flush. The recorded times are therefore only
+ * precise to the flush interval, which is plenty for a demotion threshold counted in days.
+ */
+@Service
+public class FileAccessTracker {
+
+    private final Logger log = LoggerFactory.getLogger(FileAccessTracker.class);
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${wii.storage.tiering.access_batch_size:500}")
+    private int batchSize;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileDetailsRepository fileDetailsRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public FileAccessTracker(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileDetailsRepository fileDetailsRepository,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileDetailsRepository = fileDetailsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void recordAccess(Long fileDetailsId) {
+        pending.add(fileDetailsId);
+    }
+
+    /**
+     * @return {@code true} if the file was read since the last flush.
+     */
+    public boolean isPending(Long fileDetailsId) {
+        return pending.contains(fileDetailsId);
+    }
+
+    @Scheduled(fixedDelayString = "${wii.storage.tiering.access_flush_interval:PT5M}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        String now = String.valueOf(System.currentTimeMillis());
+        List<Long> batch = new ArrayList<>(batchSize);
+        for (Iterator<Long> it = pending.iterator(); it.hasNext();) {
+            batch.add(it.next());
+            it.remove();
+            if (batch.size() == batchSize || !it.hasNext()) {
+                write(batch, now);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Long> fileDetailsIds, String accessedAt) {
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    Set<Long> existing = ids(fileMetaDataRepository.findValuesFor(FileMetaDataKeys.LAST_ACCESSED, fileDetailsIds));
+                    if (!existing.isEmpty()) {
+                        fileMetaDataRepository.updateValues(FileMetaDataKeys.LAST_ACCESSED, accessedAt, existing);
+                    }
+                    // only files that are still stored get a row
+                    Set<Long> stored = ids(fileMetaDataRepository.findValuesFor(FileMetaDataKeys.FILE_PATH, fileDetailsIds));
+                    stored.removeAll(existing);
+                    fileMetaDataRepository.saveAll(stored.stream().map(id -> lastAccessed(id, accessedAt)).collect(Collectors.toList()));
+                }
+            );
+        } catch (RuntimeException e) {
+            // access times only steer tiering, losing a batch is not worth retrying
+            log.warn("Could not record the access time of {} files : {}", fileDetailsIds.size(), e.getMessage());
+        }
+    }
+
+    private FileMetaData lastAccessed(Long fileDetailsId, String accessedAt) {
+        return new FileMetaData()
+            .key(FileMetaDataKeys.LAST_ACCESSED)
+            .value(accessedAt)
+            .fileDetails(fileDetailsRepository.getOne(fileDetailsId));
+    }
+
+    private static Set<Long> ids(List<FileDetailsValue> values) {
+        Set<Long> ids = new HashSet<>();
+        values.forEach(value -> ids.add(value.getFileDetailsId()));
+        return ids;
+    }
+}
@@ -0,0 +1,205 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.domain.FileDetails;
+import com.apt.wii.repository.ContentRepository;
+import com.apt.wii.repository.ContentRepository.ContentFile;
+import com.apt.wii.repository.FileDetailsRepository;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams the files attached to the content of a question, or of every question of a subject, as a ZIP archive.
+ * <p>
+ * A content row refers to an uploaded file through its {@code filePath}, which holds the fileDetails id, either alone or
+ * as the last segment of the download URL. Rows are read {@code batch_size} at a time in id order, and each file is
+ * copied straight from disk into the archive through a single buffer, so memory use does not depend on how many files
+ * there are. Formats that are already compressed are stored as they are; their CRC is computed in a first pass over the
+ * file, as ZIP requires it before stored data.
+ */
+@Service
+public class FileArchiveWriter {
+
+    private static final Pattern FILE_DETAILS_ID = Pattern.compile("(?:^|/)(\\d+)/?$");
+
+    private static final String DEFAULT_STORED_MEDIA_TYPES =
+        "image/jpeg,image/png,image/gif,image/webp,video/*,audio/*,application/zip,application/gzip";
+
+    private final Logger log = LoggerFactory.getLogger(FileArchiveWriter.class);
+
+    @Value("${wii.download.archive.batch_size:200}")
+    private int batchSize;
+
+    private final List<MediaType> storedMediaTypes;
+
+    private final ContentRepository contentRepository;
+
+    private final FileDetailsRepository fileDetailsRepository;
+
+    private final FileService fileService;
+
+    public FileArchiveWriter(
+        ContentRepository contentRepository,
+        FileDetailsRepository fileDetailsRepository,
+        FileService fileService,
+        @Value("${wii.download.archive.stored_mime_types:" + DEFAULT_STORED_MEDIA_TYPES + "}") String[] storedMediaTypes
+    ) {
+        this.contentRepository = contentRepository;
+        this.fileDetailsRepository = fileDetailsRepository;
+        this.fileService = fileService;
+        this.storedMediaTypes =
+            Arrays.stream(storedMediaTypes).map(String::trim).map(MediaType::parseMediaType).collect(Collectors.toList());
+    }
+
+    /**
+     * Write the files of the "questionId" question to {@code out} as a ZIP archive.
+     *
+     * @return the number of files written.
+     */
+    public int writeQuestion(Long questionId, OutputStream out) throws IOException {
+        return write((after, page) -> contentRepository.findFilesByQuestionAfter(questionId, after, page), false, out);
+    }
+
+    /**
+     * Write the files of every question of the "subjectId" subject to {@code out} as a ZIP archive, one folder per question.
+     *
+     * @return the number of files written.
+     */
+    public int writeSubject(Long subjectId, OutputStream out) throws IOException {
+        return write((after, page) -> contentRepository.findFilesBySubjectAfter(subjectId, after, page), true, out);
+    }
+
+    private int write(ContentFileSource source, boolean folders, OutputStream out) throws IOException {
+        byte[] buffer = new byte[StreamingFileWriter.BUFFER_SIZE];
+        int written = 0;
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, StreamingFileWriter.BUFFER_SIZE));
+        Long after = 0L;
+        List<ContentFile> batch;
+        do {
+            batch = source.find(after, PageRequest.of(0, batchSize));
+            Set<Long> ids = batch
+                .stream()
+                .map(row -> fileDetailsId(row.getFilePath()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+            Map<Long, FileDetails> fileDetails = fileDetailsRepository
+                .findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(FileDetails::getId, Function.identity()));
+            for (ContentFile row : batch) {
+                FileDetails details = fileDetails.get(fileDetailsId(row.getFilePath()));
+                Optional<FileLocation> location = details != null ? readableLocation(details.getId()) : Optional.empty();
+                if (location.isEmpty() || !Files.isReadable(Paths.get(location.get().getPath()))) {
+                    log.warn("Leaving content {} out of the archive, its file {} is not available", row.getId(), row.getFilePath());
+                    continue;
+                }
+                String name = row.getId() + "-" + entryName(details, location.get());
+                writeEntry(zip, folders ? row.getQuestionId() + "/" + name : name, location.get(), buffer);
+                written++;
+            }
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == batchSize);
+        zip.finish();
+        zip.flush();
+        return written;
+    }
+
+    private Optional<FileLocation> readableLocation(Long fileDetailsId) {
+        try {
+            return fileService.findReadableLocation(fileDetailsId);
+        } catch (IOException e) {
+            log.warn("Could not bring fileDetails {} back from cold storage : {}", fileDetailsId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zip, String name, FileLocation location, byte[] buffer) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (location.getLastModified() > 0) {
+            entry.setTime(location.getLastModified());
+        }
+        if (isStored(location)) {
+            // read from the file like the CRC, files stored before fileSize was recorded report -1
+            long size = Files.size(Paths.get(location.getPath()));
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc(location, buffer));
+        }
+        zip.putNextEntry(entry);
+        try (InputStream in = FileCompression.openDecoded(location)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private boolean isStored(FileLocation location) {
+        if (location.getContentEncoding() != null) {
+            return false;
+        }
+        MediaType mediaType = location.getMediaType();
+        return storedMediaTypes.stream().anyMatch(type -> type.includes(mediaType));
+    }
+
+    private static long crc(FileLocation location, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(Paths.get(location.getPath()))) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String entryName(FileDetails details, FileLocation location) {
+        String name = details.getSourceName() != null ? details.getSourceName() : location.getFilename();
+        // the name comes from the client, keep it from escaping its folder
+        return name.replace('/', '_').replace('\\', '_');
+    }
+
+    static Long fileDetailsId(String filePath) {
+        Matcher matcher = FILE_DETAILS_ID.matcher(filePath);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentFileSource {
+        List<ContentFile> find(Long after, Pageable pageable);
+    }
+}
@@ -0,0 +1,211 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.domain.FileBlob;
+import com.apt.wii.repository.FileBlobRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Content-addressed store for uploaded files.
+ * <p>
+ * Every distinct content is written once to {@code <wii.folder_path>/blobs/<d0d1>/<d2d3>/<digest><ext>} and tracked by a
+ * {@link FileBlob} row whose reference count is the number of {@link com.apt.wii.domain.FileDetails} using it.
+ * Reference counts are changed under a row lock, and under a per-digest monitor so that concurrent uploads of the
+ * same content in this instance do not race on the file system either. Another instance may still insert the same new
+ * digest first; the loser of that race then references the winner's blob, relying on the unique digest column. A blob
+ * losing its last reference is kept as a zero-count row until its file is gone, see {@link #release}.
+ */
+@Service
+public class FileBlobService {
+
+    public static final String BLOB_DIRECTORY = "blobs";
+
+    private static final String STAGING_DIRECTORY = ".staging";
+
+    private final Logger log = LoggerFactory.getLogger(FileBlobService.class);
+
+    private final StripedLocks locks = new StripedLocks();
+
+    private final FileBlobRepository fileBlobRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    public FileBlobService(FileBlobRepository fileBlobRepository, PlatformTransactionManager transactionManager) {
+        this.fileBlobRepository = fileBlobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Stream {@code in} into the store, hashing it on the way.
+     * <p>
+     * If a blob with the same digest already exists the staged copy is discarded and the existing blob gains a
+     * reference, so an identical upload costs no extra space.
+     *
+     * @param in the upload stream, closed by this method.
+     * @param extension the extension to give the blob file if it is new, including the dot, or an empty string.
+     * @param maxSize the maximum number of bytes accepted, or a negative value for no limit.
+     * @return the referenced blob.
+     * @throws IOException if the upload cannot be written.
+     */
+    public FileBlob store(InputStream in, String extension, long maxSize) throws IOException {
+        Path staging = blobRoot().resolve(STAGING_DIRECTORY);
+        Files.createDirectories(staging);
+        StoredFileInfo staged = StreamingFileWriter.write(in, staging.resolve(UUID.randomUUID().toString()), maxSize);
+        return store(staged, extension);
+    }
+
+    /**
+     * Move an already written and hashed file into the store, or drop it if its content is already there.
+     *
+     * @param staged the file to add; it no longer exists once this method returns.
+     * @param extension the extension to give the blob file if it is new, including the dot, or an empty string.
+     * @return the referenced blob.
+     * @throws IOException if the file cannot be moved into the store.
+     */
+    public FileBlob store(StoredFileInfo staged, String extension) throws IOException {
+        String digest = staged.getChecksum();
+        synchronized (locks.lockFor(digest)) {
+            Path moved = null;
+            try {
+                FileBlob blob = reference(digest, staged.getPath()).orElse(null);
+                if (blob != null) {
+                    log.debug("Deduplicated upload {} against {}", staged, blob);
+                    Files.deleteIfExists(staged.getPath());
+                    return blob;
+                }
+                Path target = blobPath(digest, extension);
+                Files.createDirectories(target.getParent());
+                Files.move(staged.getPath(), target, StandardCopyOption.ATOMIC_MOVE);
+                moved = target;
+                FileBlob created = new FileBlob().digest(digest).path(target.toString()).size(staged.getSize()).refCount(1L);
+                try {
+                    return transactionTemplate.execute(status -> fileBlobRepository.saveAndFlush(created));
+                } catch (DataIntegrityViolationException e) {
+                    // another instance stored the same content since the lookup
+                    FileBlob existing = reference(digest, target).orElseThrow(() -> e);
+                    if (!Paths.get(existing.getPath()).equals(target)) {
+                        Files.deleteIfExists(target);
+                    }
+                    log.debug("Deduplicated upload {} against {} stored concurrently", staged, existing);
+                    return existing;
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(staged.getPath());
+                if (moved != null && !isBlobPath(moved)) {
+                    Files.deleteIfExists(moved);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Drop one reference to the blob with {@code digest}, deleting it once nothing refers to it any more.
+     * <p>
+     * The last reference is dropped in two steps: the row is first kept with a zero count, then the file and the row
+     * are deleted in a second transaction, but only if the count is still zero. A {@link #store} on another instance
+     * in between references the blob again instead of writing a new file to the same path; one that finds a zero count
+     * with no file left, because the second step failed half way, puts its own copy back.
+     *
+     * @param digest the SHA-256 digest of the blob.
+     * @return {@code true} if the blob was deleted.
+     * @throws IOException if the blob file cannot be deleted.
+     */
+    public boolean release(String digest) throws IOException {
+        synchronized (locks.lockFor(digest)) {
+            Boolean unreferenced = transactionTemplate.execute(
+                status ->
+                    fileBlobRepository
+                        .findOneByDigestForUpdate(digest)
+                        .map(
+                            blob -> {
+                                if (blob.getRefCount() > 1) {
+                                    blob.setRefCount(blob.getRefCount() - 1);
+                                    return false;
+                                }
+                                blob.setRefCount(0L);
+                                return true;
+                            }
+                        )
+                        .orElse(false)
+            );
+            if (!Boolean.TRUE.equals(unreferenced)) {
+                return false;
+            }
+            return IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    Optional<FileBlob> blob = fileBlobRepository.findOneByDigestForUpdate(digest);
+                    if (blob.isEmpty() || blob.get().getRefCount() > 0) {
+                        return false;
+                    }
+                    log.debug("Deleting unreferenced blob {}", digest);
+                    Files.deleteIfExists(Paths.get(blob.get().getPath()));
+                    fileBlobRepository.delete(blob.get());
+                    return true;
+                }
+            );
+        }
+    }
+
+    /**
+     * Add a reference to the blob with {@code digest}, if there is one.
+     *
+     * @param file a copy of the content, moved into the blob's place if a released blob lost its file.
+     */
+    private Optional<FileBlob> reference(String digest, Path file) throws IOException {
+        return IoTransactions.execute(
+            transactionTemplate,
+            () -> {
+                Optional<FileBlob> found = fileBlobRepository.findOneByDigestForUpdate(digest);
+                if (found.isPresent()) {
+                    FileBlob existing = found.get();
+                    Path path = Paths.get(existing.getPath());
+                    if (existing.getRefCount() == 0 && !Files.exists(path)) {
+                        Files.createDirectories(path.getParent());
+                        Files.move(file, path, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    existing.setRefCount(existing.getRefCount() + 1);
+                }
+                return found;
+            }
+        );
+    }
+
+    /**
+     * @return whether a saved blob uses {@code path}; also {@code true} if that cannot be told, so the file is kept.
+     */
+    private boolean isBlobPath(Path path) {
+        try {
+            return !fileBlobRepository.findPathsIn(List.of(path.toString())).isEmpty();
+        } catch (RuntimeException e) {
+            log.warn("Could not tell whether {} is a stored blob : {}", path, e.getMessage());
+            return true;
+        }
+    }
+
+    public Path blobRoot() {
+        return Paths.get(folderPath, BLOB_DIRECTORY);
+    }
+
+    private Path blobPath(String digest, String extension) {
+        return blobRoot().resolve(digest.substring(0, 2)).resolve(digest.substring(2, 4)).resolve(digest + extension);
+    }
+}
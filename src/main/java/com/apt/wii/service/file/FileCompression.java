@@ -0,0 +1,125 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Gzip compression of stored files whose media type compresses well.
+ * <p>
+ * A file is only kept compressed if that saves at least {@code min_saving} percent, so formats that are already
+ * compressed internally (most PDFs, for instance) stay as uploaded. Uploads are compressed after they are stored, by
+ * the {@link com.apt.wii.service.file.pipeline.CompressionStage} of the upload pipeline.
+ */
+@Service
+public class FileCompression {
+
+    public static final String GZIP = "gzip";
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final String DEFAULT_MEDIA_TYPES =
+        "text/*,image/svg+xml,application/json,application/xml,application/javascript,application/pdf";
+
+    @Value("${wii.storage.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wii.storage.compression.min_size:1KB}")
+    private DataSize minSize;
+
+    @Value("${wii.storage.compression.min_saving:10}")
+    private int minSaving;
+
+    private final List<MediaType> mediaTypes;
+
+    public FileCompression(@Value("${wii.storage.compression.mime_types:" + DEFAULT_MEDIA_TYPES + "}") String[] mediaTypes) {
+        this.mediaTypes = Arrays.stream(mediaTypes).map(String::trim).map(MediaType::parseMediaType).collect(Collectors.toList());
+    }
+
+    /**
+     * @return {@code true} if a file of {@code mediaType} and {@code size} bytes should be compressed.
+     */
+    public boolean isCompressible(MediaType mediaType, long size) {
+        if (!enabled || size < minSize.toBytes()) {
+            return false;
+        }
+        return mediaTypes.stream().anyMatch(type -> type.includes(mediaType));
+    }
+
+    /**
+     * Write a gzip-compressed copy of {@code file} named {@code <file>.gz}, if that is worth it.
+     * <p>
+     * {@code file} itself is left in place, for the caller to delete once nothing refers to it any more.
+     *
+     * @param file the stored file.
+     * @return the compressed copy, or empty if it would not save enough.
+     * @throws IOException if the file cannot be read or the copy cannot be written.
+     */
+    public Optional<Path> compress(Path file) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        // left behind by an attempt that did not finish
+        Files.deleteIfExists(part);
+        try (
+            InputStream in = Files.newInputStream(file);
+            FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+        ) {
+            GZIPOutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), StreamingFileWriter.BUFFER_SIZE);
+            in.transferTo(out);
+            out.finish();
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        if (Files.size(part) * 100 > Files.size(file) * (100 - minSaving)) {
+            Files.delete(part);
+            return Optional.empty();
+        }
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        return Optional.of(target);
+    }
+
+    /**
+     * Open the original content of a stored file, decompressing it if it is stored compressed.
+     */
+    public static InputStream openDecoded(FileLocation location) throws IOException {
+        InputStream in = Files.newInputStream(Paths.get(location.getPath()));
+        return GZIP.equals(location.getContentEncoding()) ? new GZIPInputStream(in, StreamingFileWriter.BUFFER_SIZE) : in;
+    }
+
+    /**
+     * @return {@code true} if a request with the given {@code Accept-Encoding} header accepts content in {@code encoding}.
+     */
+    public static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(encoding) || "*".equals(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,299 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.config.StorageMaintenanceConfiguration;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.repository.FileMetaDataRepository.FileDetailsValue;
+import com.apt.wii.repository.FileMetaDataRepository.KeyValue;
+import com.apt.wii.service.FileMetaDataService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Re-hashes stored files and compares them with the SHA-256 recorded when they were uploaded.
+ * <p>
+ * Files are checked in fileDetails id order, {@code batch_size} at a time, and the id of the last checked file is saved
+ * in a {@link JobCursor} after each batch, so a pass interrupted by a restart carries on where it stopped. Reads are
+ * paced to {@code bandwidth} bytes per second to leave the disk to live traffic. Files stored compressed are checked
+ * against the checksum of their original content.
+ * <p>
+ * A missing or mismatching file gets an {@code integrityError} metadata row, which is listed by the admin report and
+ * removed again if a later pass finds the file intact (after a restore, for instance).
+ */
+@Service
+public class FileIntegrityScrubber {
+
+    public static final String CORRUPT = "corrupt";
+
+    public static final String MISSING = "missing";
+
+    private static final String JOB_NAME = "integrity-scrub";
+
+    private final Logger log = LoggerFactory.getLogger(FileIntegrityScrubber.class);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.scrub.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wii.scrub.batch_size:100}")
+    private int batchSize;
+
+    @Value("${wii.scrub.bandwidth:8MB}")
+    private DataSize bandwidth;
+
+    private volatile IntegrityScrubReport currentReport;
+
+    private volatile IntegrityScrubReport lastReport;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final FileStoreMigration fileStoreMigration;
+
+    private final Counter corruptFiles;
+
+    private final Counter missingFiles;
+
+    private final Counter scannedBytes;
+
+    private final Executor maintenanceExecutor;
+
+    public FileIntegrityScrubber(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileMetaDataService fileMetaDataService,
+        FileStoreMigration fileStoreMigration,
+        MeterRegistry meterRegistry,
+        @Qualifier(StorageMaintenanceConfiguration.STORAGE_MAINTENANCE_EXECUTOR) Executor maintenanceExecutor
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileMetaDataService = fileMetaDataService;
+        this.fileStoreMigration = fileStoreMigration;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.corruptFiles = errorCounter(meterRegistry, CORRUPT);
+        this.missingFiles = errorCounter(meterRegistry, MISSING);
+        this.scannedBytes =
+            Counter
+                .builder("wii.file.scrub.scanned")
+                .description("Bytes of stored files re-hashed by the integrity scrubber")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${wii.scrub.interval:PT1H}", initialDelayString = "${wii.scrub.interval:PT1H}")
+    public void scheduledScrub() {
+        if (enabled) {
+            // throttled reads take hours, so the pass runs off the scheduler threads
+            maintenanceExecutor.execute(this::scrub);
+        }
+    }
+
+    /**
+     * @return the report of the run in progress, or else of the last finished run.
+     */
+    public Optional<IntegrityScrubReport> getReport() {
+        IntegrityScrubReport current = currentReport;
+        return Optional.ofNullable(current != null ? current : lastReport);
+    }
+
+    /**
+     * Check stored files from the saved cursor to the last one, unless a run is already in progress.
+     *
+     * @return the report of this run, or {@code null} if another run or a layout migration was in progress.
+     */
+    public IntegrityScrubReport scrub() {
+        if (fileStoreMigration.isRunning()) {
+            // paths change under a migration, which would show up as missing files
+            log.info("Skipping integrity scrub while the file store is migrated");
+            return null;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.info("Integrity scrub already running");
+            return null;
+        }
+        JobCursor cursor = new JobCursor(folderPath, JOB_NAME);
+        IntegrityScrubReport report = null;
+        boolean complete = false;
+        try {
+            long after = cursor.read();
+            report = new IntegrityScrubReport(Instant.now(), after);
+            currentReport = report;
+            BandwidthLimiter limiter = new BandwidthLimiter(bandwidth.toBytes());
+            List<FileDetailsValue> batch;
+            do {
+                batch = fileMetaDataRepository.findValuesAfter(FileMetaDataKeys.CHECKSUM, after, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                scrubBatch(batch, report, limiter);
+                after = batch.get(batch.size() - 1).getFileDetailsId();
+                cursor.write(after);
+            } while (batch.size() == batchSize);
+            // the pass is over, the next run starts from the first file again
+            cursor.write(0);
+            complete = true;
+        } catch (InterruptedIOException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Integrity scrub interrupted");
+        } catch (IOException e) {
+            log.error("Integrity scrub stopped : {}", e.getMessage());
+        } finally {
+            if (report != null) {
+                report.finish(Instant.now(), complete);
+                lastReport = report;
+                log.info("Integrity scrub done : {}", report);
+            }
+            currentReport = null;
+            running.set(false);
+        }
+        return report;
+    }
+
+    private void scrubBatch(List<FileDetailsValue> batch, IntegrityScrubReport report, BandwidthLimiter limiter)
+        throws IOException, InterruptedException {
+        List<Long> ids = batch.stream().map(FileDetailsValue::getFileDetailsId).collect(Collectors.toList());
+        Map<Long, String> paths = valuesFor(FileMetaDataKeys.FILE_PATH, ids);
+        Map<Long, String> encodings = valuesFor(FileMetaDataKeys.CONTENT_ENCODING, ids);
+        Map<Long, String> knownErrors = valuesFor(FileMetaDataKeys.INTEGRITY_ERROR, ids);
+        Map<Long, String> coldPaths = valuesFor(FileMetaDataKeys.COLD_PATH, ids);
+        // content-addressed blobs can be shared by several fileDetails, read each one once
+        Map<String, Optional<String>> checked = new HashMap<>();
+        for (FileDetailsValue checksum : batch) {
+            Long fileDetailsId = checksum.getFileDetailsId();
+            // demoted files are checked in the cold tier, where they are always gzip-compressed
+            boolean cold = coldPaths.containsKey(fileDetailsId);
+            String path = cold ? coldPaths.get(fileDetailsId) : paths.get(fileDetailsId);
+            if (path == null) {
+                continue;
+            }
+            String contentEncoding = cold ? FileCompression.GZIP : encodings.get(fileDetailsId);
+            Optional<String> error = checked.get(path);
+            if (error == null) {
+                error = verify(Paths.get(path), contentEncoding, checksum.getValue(), report, limiter);
+                checked.put(path, error);
+            }
+            report.fileScanned(fileDetailsId);
+            if (error.isEmpty()) {
+                if (knownErrors.containsKey(fileDetailsId)) {
+                    log.info("Stored file {} of fileDetails {} is intact again", path, fileDetailsId);
+                    fileMetaDataService.deleteValue(fileDetailsId, FileMetaDataKeys.INTEGRITY_ERROR);
+                    report.recoveredFile();
+                }
+                continue;
+            }
+            if (!isStoredAs(fileDetailsId, path, contentEncoding)) {
+                // deleted, moved or compressed since the batch was read
+                continue;
+            }
+            if (CORRUPT.equals(error.get())) {
+                report.corruptFile();
+                corruptFiles.increment();
+            } else {
+                report.missingFile();
+                missingFiles.increment();
+            }
+            log.error("Stored file {} of fileDetails {} is {}", path, fileDetailsId, error.get());
+            if (!error.get().equals(knownErrors.get(fileDetailsId))) {
+                fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.INTEGRITY_ERROR, error.get());
+            }
+        }
+    }
+
+    /**
+     * @return the kind of damage found, or empty if {@code file} matches {@code checksum}.
+     */
+    private Optional<String> verify(
+        Path file,
+        String contentEncoding,
+        String checksum,
+        IntegrityScrubReport report,
+        BandwidthLimiter limiter
+    ) throws IOException, InterruptedException {
+        if (!Files.exists(file)) {
+            return Optional.of(MISSING);
+        }
+        MessageDigest digest = StreamingFileWriter.newDigest();
+        byte[] buffer = new byte[StreamingFileWriter.BUFFER_SIZE];
+        try (InputStream raw = Files.newInputStream(file); InputStream in = decode(raw, contentEncoding)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                report.bytesScanned(read);
+                scannedBytes.increment(read);
+                limiter.acquire(read);
+            }
+        } catch (ZipException | EOFException e) {
+            // a damaged or truncated gzip stream
+            return Optional.of(CORRUPT);
+        }
+        return StreamingFileWriter.toHex(digest.digest()).equals(checksum) ? Optional.empty() : Optional.of(CORRUPT);
+    }
+
+    /**
+     * @return {@code true} if the file of the fileDetails is still at {@code path}, stored with {@code contentEncoding}.
+     */
+    private boolean isStoredAs(Long fileDetailsId, String path, String contentEncoding) {
+        // one query, so the path and the encoding come from the same committed state
+        Map<String, String> values = fileMetaDataRepository
+            .findValues(fileDetailsId)
+            .stream()
+            .collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue, (first, second) -> first));
+        String coldPath = values.get(FileMetaDataKeys.COLD_PATH);
+        if (coldPath != null) {
+            return path.equals(coldPath);
+        }
+        return (
+            path.equals(values.get(FileMetaDataKeys.FILE_PATH)) &&
+            Objects.equals(contentEncoding, values.get(FileMetaDataKeys.CONTENT_ENCODING))
+        );
+    }
+
+    private Map<Long, String> valuesFor(String key, List<Long> fileDetailsIds) {
+        return fileMetaDataRepository
+            .findValuesFor(key, fileDetailsIds)
+            .stream()
+            .collect(Collectors.toMap(FileDetailsValue::getFileDetailsId, FileDetailsValue::getValue, (first, second) -> first));
+    }
+
+    private static InputStream decode(InputStream raw, String contentEncoding) throws IOException {
+        return FileCompression.GZIP.equals(contentEncoding) ? new GZIPInputStream(raw, StreamingFileWriter.BUFFER_SIZE) : raw;
+    }
+
+    private static Counter errorCounter(MeterRegistry meterRegistry, String type) {
+        return Counter
+            .builder("wii.file.scrub.errors")
+            .description("Stored files found damaged by the integrity scrubber")
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+}
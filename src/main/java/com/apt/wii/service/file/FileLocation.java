@@ -0,0 +1,276 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.service.file.pipeline.UploadProcessingStatus;
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+/**
+ * Where the bytes of a {@link com.apt.wii.domain.FileDetails} are stored, with the checksum recorded at upload and the
+ * modification time of the stored file when it was resolved.
+ */
+public class FileLocation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Media types a browser renders without running anything from the file. Files of any other type, HTML and SVG
+     * included, are served as {@code application/octet-stream} attachments so that they cannot script the API origin.
+     */
+    private static final List<MediaType> PASSIVE_MEDIA_TYPES = List.of(
+        MediaType.APPLICATION_PDF,
+        MediaType.IMAGE_PNG,
+        MediaType.IMAGE_JPEG,
+        MediaType.IMAGE_GIF,
+        MediaType.valueOf("image/webp"),
+        MediaType.TEXT_PLAIN
+    );
+
+    private final Long fileDetailsId;
+
+    private final String sourceName;
+
+    private final String path;
+
+    private final String checksum;
+
+    private final long size;
+
+    private final String contentEncoding;
+
+    private final String contentType;
+
+    private final long lastModified;
+
+    private final boolean contentAddressed;
+
+    private final TreeMap<Integer, String> derivatives;
+
+    private final String previewPath;
+
+    private final String coldPath;
+
+    private final String processingStatus;
+
+    public FileLocation(
+        Long fileDetailsId,
+        String sourceName,
+        String path,
+        String checksum,
+        long size,
+        String contentEncoding,
+        String contentType,
+        long lastModified,
+        boolean contentAddressed,
+        NavigableMap<Integer, String> derivatives,
+        String previewPath,
+        String coldPath,
+        String processingStatus
+    ) {
+        this.fileDetailsId = fileDetailsId;
+        this.sourceName = sourceName;
+        this.path = path;
+        this.checksum = checksum;
+        this.size = size;
+        this.contentEncoding = contentEncoding;
+        this.contentType = contentType;
+        this.lastModified = lastModified;
+        this.contentAddressed = contentAddressed;
+        this.derivatives = new TreeMap<>(derivatives);
+        this.previewPath = previewPath;
+        this.coldPath = coldPath;
+        this.processingStatus = processingStatus;
+    }
+
+    public Long getFileDetailsId() {
+        return fileDetailsId;
+    }
+
+    /**
+     * @return the name the file was uploaded under, or {@code null} if it was not recorded.
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the name of the stored file without the suffix added by its content encoding.
+     */
+    public String getFilename() {
+        String name = Paths.get(path).getFileName().toString();
+        return contentEncoding != null ? name.substring(0, name.lastIndexOf('.')) : name;
+    }
+
+    /**
+     * @return the name to offer the file under when it is downloaded: the uploaded name, or else the stored one.
+     */
+    public String getDownloadName() {
+        return sourceName != null && !sourceName.isBlank() ? sourceName : getFilename();
+    }
+
+    /**
+     * @return the SHA-256 of the content, or {@code null} for files uploaded before checksums were recorded.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return the size of the original content, or {@code -1} if it was not recorded.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the encoding the file is stored with, such as {@code gzip}, or {@code null} if it is stored as uploaded.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the media type detected from the content by the upload pipeline, or {@code null} if it has not run yet.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the media type of the file: the detected one, or else the one its name suggests.
+     */
+    public MediaType getMediaType() {
+        return mediaType(contentType, getFilename());
+    }
+
+    /**
+     * @return the media type to serve the file with, see {@link #servedMediaType(MediaType)}.
+     */
+    public MediaType getServedMediaType() {
+        return servedMediaType(getMediaType());
+    }
+
+    /**
+     * @return the media type {@code contentType}, or the one {@code filename} suggests if it is {@code null}.
+     */
+    public static MediaType mediaType(String contentType, String filename) {
+        if (contentType != null) {
+            return MediaType.parseMediaType(contentType);
+        }
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /**
+     * @return {@code mediaType} if browsers may display it inline, or else {@code application/octet-stream}.
+     */
+    public static MediaType servedMediaType(MediaType mediaType) {
+        return isPassive(mediaType) ? mediaType : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * @return {@code true} if a file of this type can be displayed inline rather than sent as an attachment.
+     */
+    public static boolean isPassive(MediaType mediaType) {
+        return PASSIVE_MEDIA_TYPES.stream().anyMatch(type -> type.includes(mediaType));
+    }
+
+    /**
+     * @return the modification time of the stored file in epoch millis, or {@code -1} if it could not be read.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return {@code true} if the file lives in the blob store under its digest, and therefore never changes.
+     */
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    /**
+     * @return the paths of the resized copies of this image, by width.
+     */
+    public NavigableMap<Integer, String> getDerivatives() {
+        return Collections.unmodifiableNavigableMap(derivatives);
+    }
+
+    /**
+     * Find the narrowest resized copy that is at least {@code width} pixels wide.
+     *
+     * @param width the width the client needs, in device pixels.
+     * @return the width and path of the copy, or empty if none is wide enough.
+     */
+    public Optional<Map.Entry<Integer, String>> derivativeFor(int width) {
+        return Optional.ofNullable(derivatives.ceilingEntry(width));
+    }
+
+    /**
+     * @return the path of the first-page preview image, or {@code null} if there is none.
+     */
+    public String getPreviewPath() {
+        return previewPath;
+    }
+
+    /**
+     * @return the path of the compressed copy in the cold tier, or {@code null} if the file is on the hot tier.
+     */
+    public String getColdPath() {
+        return coldPath;
+    }
+
+    /**
+     * @return {@code true} if the file was moved to the cold tier and must be promoted before it is read from {@link #getPath()}.
+     */
+    public boolean isCold() {
+        return coldPath != null;
+    }
+
+    /**
+     * @return the progress of the upload pipeline on this file, or {@code null} if it never ran on it.
+     */
+    public String getProcessingStatus() {
+        return processingStatus;
+    }
+
+    /**
+     * @return {@code true} unless the upload pipeline may still add resized copies, a preview or a content encoding.
+     */
+    public boolean isProcessed() {
+        return (
+            !UploadProcessingStatus.PENDING.name().equals(processingStatus) &&
+            !UploadProcessingStatus.PROCESSING.name().equals(processingStatus)
+        );
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "FileLocation{" +
+            "fileDetailsId=" + getFileDetailsId() +
+            ", sourceName='" + getSourceName() + "'" +
+            ", path='" + getPath() + "'" +
+            ", checksum='" + getChecksum() + "'" +
+            ", size=" + getSize() +
+            ", contentEncoding='" + getContentEncoding() + "'" +
+            ", contentType='" + getContentType() + "'" +
+            ", lastModified=" + getLastModified() +
+            ", contentAddressed='" + isContentAddressed() + "'" +
+            ", derivatives=" + getDerivatives().keySet() +
+            ", previewPath='" + getPreviewPath() + "'" +
+            ", coldPath='" + getColdPath() + "'" +
+            ", processingStatus='" + getProcessingStatus() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,143 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.repository.FileDetailsRepository;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Resolves a fileDetails id to the location of its stored bytes.
+ * <p>
+ * Lookups read the metadata rows of the fileDetails with a single query on the {@code (file_details_id, key)} index, and
+ * its uploaded name by primary key, and are kept in a bounded cache, so repeated downloads of the same file do not touch
+ * the database. Entries are evicted whenever the metadata of their fileDetails is written or deleted, and again once that
+ * write commits, so that a download loading the old rows in between does not keep them cached until the TTL. The stored
+ * file is only stat-ed once per load, to capture the modification time used as {@code Last-Modified}.
+ */
+@Service
+public class FileLocationResolver {
+
+    public static final String CACHE_NAME = "fileLocations";
+
+    private final Logger log = LoggerFactory.getLogger(FileLocationResolver.class);
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileDetailsRepository fileDetailsRepository;
+
+    private final FileBlobService fileBlobService;
+
+    private final Cache<Long, FileLocation> cache;
+
+    public FileLocationResolver(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileDetailsRepository fileDetailsRepository,
+        FileBlobService fileBlobService,
+        MeterRegistry meterRegistry,
+        @Value("${wii.file_location_cache.max_entries:10000}") long maxEntries,
+        @Value("${wii.file_location_cache.ttl:1h}") Duration ttl
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileDetailsRepository = fileDetailsRepository;
+        this.fileBlobService = fileBlobService;
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Get the location of the stored file of the "fileDetailsId" fileDetails.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return the location, or empty if the fileDetails has no stored file.
+     */
+    public Optional<FileLocation> resolve(Long fileDetailsId) {
+        return Optional.ofNullable(cache.get(fileDetailsId, this::load));
+    }
+
+    /**
+     * Forget the cached location of the "fileDetailsId" fileDetails, now and when the current transaction commits.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     */
+    public void evict(Long fileDetailsId) {
+        if (fileDetailsId == null) {
+            return;
+        }
+        // the current transaction must not read its own writes from the cache either
+        cache.invalidate(fileDetailsId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        cache.invalidate(fileDetailsId);
+                    }
+                }
+            );
+        }
+    }
+
+    private FileLocation load(Long fileDetailsId) {
+        log.debug("Resolving location of fileDetails {}", fileDetailsId);
+        Map<String, String> values = new HashMap<>();
+        NavigableMap<Integer, String> derivatives = new TreeMap<>();
+        for (FileMetaDataRepository.KeyValue value : fileMetaDataRepository.findValues(fileDetailsId)) {
+            if (value.getKey().startsWith(FileMetaDataKeys.DERIVATIVE_PREFIX)) {
+                derivatives.put(Integer.valueOf(value.getKey().substring(FileMetaDataKeys.DERIVATIVE_PREFIX.length())), value.getValue());
+            } else {
+                values.put(value.getKey(), value.getValue());
+            }
+        }
+        String path = values.get(FileMetaDataKeys.FILE_PATH);
+        if (path == null) {
+            return null;
+        }
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        boolean contentAddressed = file.startsWith(fileBlobService.blobRoot().toAbsolutePath().normalize());
+        String size = values.get(FileMetaDataKeys.FILE_SIZE);
+        String coldPath = values.get(FileMetaDataKeys.COLD_PATH);
+        return new FileLocation(
+            fileDetailsId,
+            fileDetailsRepository.findSourceName(fileDetailsId).orElse(null),
+            path,
+            values.get(FileMetaDataKeys.CHECKSUM),
+            size != null ? Long.parseLong(size) : -1,
+            values.get(FileMetaDataKeys.CONTENT_ENCODING),
+            values.get(FileMetaDataKeys.CONTENT_TYPE),
+            // demoted files keep their modification time on the cold copy
+            lastModified(coldPath != null ? Paths.get(coldPath) : file),
+            contentAddressed,
+            derivatives,
+            values.get(FileMetaDataKeys.PREVIEW_PATH),
+            coldPath,
+            values.get(FileMetaDataKeys.PROCESSING_STATUS)
+        );
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            log.warn("Cannot read modification time of {} : {}", file, e.getMessage());
+            return -1;
+        }
+    }
+}
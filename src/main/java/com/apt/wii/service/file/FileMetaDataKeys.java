@@ -0,0 +1,57 @@
+package com.apt.wii.service.file;
+
+/**
+ * Keys of the {@link com.apt.wii.domain.FileMetaData} rows written by {@link FileService}, {@link UploadSessionService}
+ * and the upload processing pipeline.
+ */
+public final class FileMetaDataKeys {
+
+    public static final String FILE_PATH = "filePath";
+    public static final String FILE_SIZE = "fileSize";
+    public static final String CHECKSUM = "sha256";
+    public static final String CONTENT_ENCODING = "contentEncoding";
+    public static final String CONTENT_TYPE = "contentType";
+    public static final String UPLOADED_BY = "uploadedBy";
+
+    /**
+     * Prefix of the keys holding the path of a resized copy of an image, followed by its width in pixels.
+     */
+    public static final String DERIVATIVE_PREFIX = "derivative.w";
+
+    public static final String PREVIEW_PATH = "previewPath";
+
+    /**
+     * Path of the compressed copy of a file moved to the cold tier; the file is not at {@link #FILE_PATH} while it is set.
+     */
+    public static final String COLD_PATH = "coldPath";
+
+    /**
+     * Epoch millis of the last download, written in batches by {@link FileAccessTracker}.
+     */
+    public static final String LAST_ACCESSED = "lastAccessed";
+
+    public static final String PROCESSING_STATUS = "processingStatus";
+    public static final String PROCESSING_ERROR = "processingError";
+
+    /**
+     * Epoch millis until which the instance that claimed a {@code PROCESSING} upload owns its pipeline run.
+     */
+    public static final String PROCESSING_LEASE = "processingLease";
+
+    /**
+     * Set by the integrity scrubber when the stored file is missing or no longer matches its checksum.
+     */
+    public static final String INTEGRITY_ERROR = "integrityError";
+
+    public static final String UPLOAD_STAGING_PATH = "uploadStagingPath";
+    public static final String UPLOAD_EXPECTED_SIZE = "uploadExpectedSize";
+    public static final String UPLOAD_RECEIVED_BYTES = "uploadReceivedBytes";
+    public static final String UPLOAD_EXPIRES_AT = "uploadExpiresAt";
+
+    /**
+     * Login of the user who opened an upload session; nobody else may write to it or complete it.
+     */
+    public static final String UPLOAD_OWNER = "uploadOwner";
+
+    private FileMetaDataKeys() {}
+}
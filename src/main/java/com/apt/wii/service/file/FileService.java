@@ -1,10 +1,97 @@
 package com.apt.wii.service.file;
 
 import com.apt.wii.service.dto.FileDetailsDTO;
-import org.springframework.core.io.InputStreamResource;
+import com.apt.wii.service.dto.FileUploadResultDTO;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface FileService {
-    FileDetailsDTO uploadFile(MultipartFile file);
-    InputStreamResource downloadFile(Long fileDetailsId);
+    FileDetailsDTO uploadFile(MultipartFile file) throws IOException;
+
+    /**
+     * Store several uploaded files at once.
+     * <p>
+     * The files are written concurrently, then the rows of every file that was written are saved in one transaction.
+     * A file that cannot be stored does not prevent the others from being saved.
+     *
+     * @param files the uploaded files.
+     * @return one result per file, in the same order.
+     */
+    List<FileUploadResultDTO> uploadFiles(List<MultipartFile> files);
+
+    /**
+     * Move a file that was assembled outside of {@link #uploadFile} into storage and attach it to {@code fileDetails}.
+     *
+     * @param fileDetails the fileDetails the file belongs to; its {@code sourceName} names the file.
+     * @param stagedFile the complete file; it no longer exists at this path once this method returns.
+     * @param uploader the login the file is recorded under and charged to, or {@code null}.
+     * @return the updated fileDetails.
+     * @throws IOException if the file cannot be read or moved.
+     */
+    FileDetailsDTO storeStagedFile(FileDetailsDTO fileDetails, Path stagedFile, String uploader) throws IOException;
+
+    /**
+     * Get where the "fileDetailsId" fileDetails is stored, without touching its content.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return the location, or empty if the fileDetails has no stored file.
+     */
+    Optional<FileLocation> findLocation(Long fileDetailsId);
+
+    /**
+     * Get where the "fileDetailsId" fileDetails is stored, for a caller about to read the file from that path.
+     * <p>
+     * Unlike {@link #findLocation}, this counts as an access to the file and brings it back from cold storage first.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return the location, or empty if the fileDetails has no stored file.
+     * @throws IOException if the file cannot be brought back from cold storage.
+     */
+    Optional<FileLocation> findReadableLocation(Long fileDetailsId) throws IOException;
+
+    /**
+     * Get the stored file of the "fileDetailsId" fileDetails.
+     * <p>
+     * The returned resource is backed by the file on disk, so its length and modification time are known and
+     * byte ranges can be read from it without going through the preceding content.
+     * <p>
+     * Files stored compressed (see {@link FileLocation#getContentEncoding()}) are returned as stored when
+     * {@code encoded} is set, and decompressed while they are read otherwise.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @param encoded whether the caller can send the content in its stored encoding.
+     * @return the stored file, or {@code null} if there is none.
+     */
+    Resource downloadFile(Long fileDetailsId, boolean encoded);
+
+    /**
+     * Get a resized copy of the "fileDetailsId" image.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @param width the width of the copy, one of {@link FileLocation#getDerivatives()}.
+     * @return the copy, or {@code null} if there is none of that width.
+     */
+    Resource downloadDerivative(Long fileDetailsId, int width);
+
+    /**
+     * Get the first-page preview image of the "fileDetailsId" document.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return the preview, or {@code null} if none was rendered.
+     */
+    Resource downloadPreview(Long fileDetailsId);
+
+    /**
+     * Delete the "fileDetailsId" fileDetails, its metadata and the stored bytes.
+     * <p>
+     * Content shared with other uploads is only removed once its last reference is gone.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return {@code false} if there is no such fileDetails.
+     */
+    boolean deleteFile(Long fileDetailsId);
 }
@@ -0,0 +1,17 @@
+package com.apt.wii.service.file;
+
+public class FileSizeLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long maxSize;
+
+    public FileSizeLimitExceededException(long maxSize) {
+        super("File exceeds the maximum upload size of " + maxSize + " bytes");
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,51 @@
+package com.apt.wii.service.file;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides where uploaded files are written under {@code wii.folder_path}.
+ * <p>
+ * With the sharded layout a file named {@code name} is stored as {@code files/ab/cd/name}, where {@code abcd} are the
+ * first hex digits of a hash of the name. This caps every directory at a few hundred entries per level instead of
+ * keeping all uploads in one directory. The flat layout writes directly into {@code wii.folder_path}.
+ */
+@Service
+public class FileStoreLayout {
+
+    public static final String FILES_DIRECTORY = "files";
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.storage.sharded_layout:true}")
+    private boolean sharded;
+
+    /**
+     * Get the path a new file called {@code filename} is stored at.
+     */
+    public Path pathFor(String filename) {
+        return sharded ? shardedPathFor(filename) : Paths.get(folderPath, filename);
+    }
+
+    /**
+     * Get the path {@code filename} has in the sharded layout, whatever the configured layout is.
+     */
+    public Path shardedPathFor(String filename) {
+        CRC32 crc = new CRC32();
+        crc.update(filename.getBytes(StandardCharsets.UTF_8));
+        String hash = String.format("%08x", crc.getValue());
+        return Paths.get(folderPath, FILES_DIRECTORY, hash.substring(0, 2), hash.substring(2, 4), filename);
+    }
+
+    /**
+     * @return {@code true} if {@code file} is already where the sharded layout puts it.
+     */
+    public boolean isSharded(Path file) {
+        return file.getFileName() != null && file.equals(shardedPathFor(file.getFileName().toString()));
+    }
+}
@@ -0,0 +1,170 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.config.StorageMaintenanceConfiguration;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.impl.FileSystemServiceImpl;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves files uploaded with the flat layout into the sharded {@link FileStoreLayout}, while the application serves them.
+ * <p>
+ * {@code filePath} metadata rows of file-system uploads are read in id order, {@code batch_size} at a time. Each file is
+ * first hard-linked (or copied, across file systems) to its new path, then its {@code filePath} is updated if it still
+ * names the old path, and only then is the old name removed, so the file can be read at every point. The last processed
+ * row id is saved after each batch, and rows already in the sharded layout are skipped, so an interrupted run resumes
+ * where it stopped.
+ */
+@Service
+public class FileStoreMigration {
+
+    private static final String JOB_NAME = "sharded-layout-migration";
+
+    private final Logger log = LoggerFactory.getLogger(FileStoreMigration.class);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.storage.migration.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wii.storage.migration.batch_size:200}")
+    private int batchSize;
+
+    @Value("${wii.storage.migration.batch_pause:500ms}")
+    private Duration batchPause;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final FileStoreLayout fileStoreLayout;
+
+    private final Executor maintenanceExecutor;
+
+    public FileStoreMigration(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileMetaDataService fileMetaDataService,
+        FileStoreLayout fileStoreLayout,
+        @Qualifier(StorageMaintenanceConfiguration.STORAGE_MAINTENANCE_EXECUTOR) Executor maintenanceExecutor
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileMetaDataService = fileMetaDataService;
+        this.fileStoreLayout = fileStoreLayout;
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    @Scheduled(
+        initialDelayString = "${wii.storage.migration.initial_delay:PT5M}",
+        fixedDelayString = "${wii.storage.migration.interval:PT1H}"
+    )
+    public void scheduledMigrate() {
+        if (enabled) {
+            maintenanceExecutor.execute(this::migrate);
+        }
+    }
+
+    /**
+     * @return {@code true} while files are being moved.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Move the remaining flat-layout files, resuming from the last saved position.
+     *
+     * @return the number of files moved, or {@code -1} if a migration was already running.
+     */
+    public long migrate() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        JobCursor cursor = new JobCursor(folderPath, JOB_NAME);
+        long moved = 0;
+        try {
+            long after = cursor.read();
+            List<FileMetaDataRepository.IdValue> page;
+            do {
+                page =
+                    fileMetaDataRepository.findValuesByDestinationAfter(
+                        FileMetaDataKeys.FILE_PATH,
+                        FileSystemServiceImpl.DESTINATION_FILE_SYSTEM,
+                        after,
+                        PageRequest.of(0, batchSize)
+                    );
+                for (FileMetaDataRepository.IdValue value : page) {
+                    if (move(value)) {
+                        moved++;
+                    }
+                    after = value.getId();
+                }
+                cursor.write(after);
+                if (!batchPause.isZero()) {
+                    Thread.sleep(batchPause.toMillis());
+                }
+            } while (page.size() == batchSize);
+            log.info("Sharded layout migration moved {} files, up to filePath metadata {}", moved, after);
+        } catch (IOException e) {
+            log.error("Sharded layout migration stopped after {} files : {}", moved, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Sharded layout migration interrupted after {} files", moved);
+        } finally {
+            running.set(false);
+        }
+        return moved;
+    }
+
+    private boolean move(FileMetaDataRepository.IdValue value) throws IOException {
+        Path source = Paths.get(value.getValue());
+        if (fileStoreLayout.isSharded(source) || !Files.exists(source)) {
+            return false;
+        }
+        Path target = fileStoreLayout.shardedPathFor(source.getFileName().toString());
+        Files.createDirectories(target.getParent());
+        link(source, target);
+        // the pipeline may have pointed the row at a compressed copy since it was read
+        if (!fileMetaDataService.updateValueIf(value.getFileDetailsId(), FileMetaDataKeys.FILE_PATH, target.toString(), value.getValue())) {
+            log.debug("Not moving {}, its filePath changed", source);
+            Files.deleteIfExists(target);
+            return false;
+        }
+        Files.delete(source);
+        log.debug("Moved {} to {}", source, target);
+        return true;
+    }
+
+    private void link(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            if (Files.isSameFile(source, target)) {
+                // left over from a run that stopped before updating the metadata
+                return;
+            }
+            Files.delete(target);
+        }
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            // hard links need both names on the same file system
+            Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+}
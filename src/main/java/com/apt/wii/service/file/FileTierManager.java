@@ -0,0 +1,360 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.config.StorageMaintenanceConfiguration;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.repository.FileMetaDataRepository.FileDetailsValue;
+import com.apt.wii.service.FileMetaDataService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves stored files between the hot tier ({@code wii.folder_path}) and the cold tier ({@code tiering.cold_path}).
+ * <p>
+ * Demotion walks the stored files in fileDetails id order, {@code batch_size} at a time, from a saved {@link JobCursor}.
+ * A file that was not downloaded for {@code cold_after} (according to {@link FileAccessTracker}, or its modification
+ * time if it was never downloaded since tracking started) is gzip-compressed into the cold tier, recorded in a
+ * {@code coldPath} metadata row, and only then removed from the hot tier. Its {@code filePath} is left as it is, so
+ * promotion writes the file back where it was and nothing else refers to the cold copy. Files already stored
+ * compressed are moved as they are.
+ * <p>
+ * Demotion runs on every instance, so the hand-off between the tiers is decided on the {@code coldPath} row, locked for
+ * update: demotion removes the hot file only while the row it saved is still there, and promotion removes the row before
+ * the cold copy. Whichever comes second sees the other's outcome, and one copy always survives.
+ * <p>
+ * Content-addressed blobs can be shared by several uploads and stay on the hot tier.
+ */
+@Service
+public class FileTierManager {
+
+    private static final String JOB_NAME = "tier-demotion";
+
+    private final Logger log = LoggerFactory.getLogger(FileTierManager.class);
+
+    private final StripedLocks locks = new StripedLocks();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.storage.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wii.storage.tiering.cold_path:${wii.folder_path}/cold}")
+    private String coldPath;
+
+    @Value("${wii.storage.tiering.cold_after:180d}")
+    private Duration coldAfter;
+
+    @Value("${wii.storage.tiering.batch_size:200}")
+    private int batchSize;
+
+    @Value("${wii.storage.tiering.batch_pause:500ms}")
+    private Duration batchPause;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final FileLocationResolver fileLocationResolver;
+
+    private final FileBlobService fileBlobService;
+
+    private final HotFileCache hotFileCache;
+
+    private final FileAccessTracker fileAccessTracker;
+
+    private final FileStoreMigration fileStoreMigration;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter demotions;
+
+    private final Counter promotions;
+
+    private final Executor maintenanceExecutor;
+
+    public FileTierManager(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileMetaDataService fileMetaDataService,
+        FileLocationResolver fileLocationResolver,
+        FileBlobService fileBlobService,
+        HotFileCache hotFileCache,
+        FileAccessTracker fileAccessTracker,
+        FileStoreMigration fileStoreMigration,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Qualifier(StorageMaintenanceConfiguration.STORAGE_MAINTENANCE_EXECUTOR) Executor maintenanceExecutor
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileMetaDataService = fileMetaDataService;
+        this.fileLocationResolver = fileLocationResolver;
+        this.fileBlobService = fileBlobService;
+        this.hotFileCache = hotFileCache;
+        this.fileAccessTracker = fileAccessTracker;
+        this.fileStoreMigration = fileStoreMigration;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.demotions = moveCounter(meterRegistry, "demote");
+        this.promotions = moveCounter(meterRegistry, "promote");
+    }
+
+    @Scheduled(initialDelayString = "${wii.storage.tiering.interval:PT6H}", fixedDelayString = "${wii.storage.tiering.interval:PT6H}")
+    public void scheduledDemote() {
+        if (enabled) {
+            maintenanceExecutor.execute(this::demote);
+        }
+    }
+
+    /**
+     * Move the files that went cold to the cold tier, resuming from the last saved position.
+     *
+     * @return the number of files moved, or {@code -1} if a demotion or a layout migration was already running.
+     */
+    public long demote() {
+        if (fileStoreMigration.isRunning()) {
+            log.info("Skipping cold file demotion while the file store is migrated");
+            return -1;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        JobCursor cursor = new JobCursor(folderPath, JOB_NAME);
+        Path blobRoot = fileBlobService.blobRoot().toAbsolutePath().normalize();
+        long cutoff = Instant.now().minus(coldAfter).toEpochMilli();
+        long moved = 0;
+        try {
+            long after = cursor.read();
+            List<FileDetailsValue> batch;
+            do {
+                batch = fileMetaDataRepository.findValuesAfter(FileMetaDataKeys.FILE_PATH, after, PageRequest.of(0, batchSize));
+                List<Long> ids = batch.stream().map(FileDetailsValue::getFileDetailsId).collect(Collectors.toList());
+                Map<Long, String> coldPaths = valuesFor(FileMetaDataKeys.COLD_PATH, ids);
+                Map<Long, String> lastAccessed = valuesFor(FileMetaDataKeys.LAST_ACCESSED, ids);
+                Map<Long, String> encodings = valuesFor(FileMetaDataKeys.CONTENT_ENCODING, ids);
+                for (FileDetailsValue value : batch) {
+                    Long fileDetailsId = value.getFileDetailsId();
+                    after = fileDetailsId;
+                    Path file = Paths.get(value.getValue()).toAbsolutePath().normalize();
+                    if (coldPaths.containsKey(fileDetailsId) || file.startsWith(blobRoot) || fileAccessTracker.isPending(fileDetailsId)) {
+                        continue;
+                    }
+                    String accessed = lastAccessed.get(fileDetailsId);
+                    if (accessed != null ? Long.parseLong(accessed) >= cutoff : !isModifiedBefore(file, cutoff)) {
+                        continue;
+                    }
+                    try {
+                        if (demote(fileDetailsId, value.getValue(), encodings.get(fileDetailsId))) {
+                            moved++;
+                        }
+                    } catch (IOException e) {
+                        log.warn("Could not demote {} : {}", value.getValue(), e.getMessage());
+                    }
+                }
+                cursor.write(after);
+                if (!batchPause.isZero()) {
+                    Thread.sleep(batchPause.toMillis());
+                }
+            } while (batch.size() == batchSize);
+            // the pass is over, the next run starts from the first file again
+            cursor.write(0);
+            log.info("Cold file demotion moved {} files", moved);
+        } catch (IOException e) {
+            log.error("Cold file demotion stopped after {} files : {}", moved, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Cold file demotion interrupted after {} files", moved);
+        } finally {
+            running.set(false);
+        }
+        return moved;
+    }
+
+    /**
+     * Bring a demoted file back to the hot tier, so it can be read from {@link FileLocation#getPath()}.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     * @return the location of the file, or empty if the fileDetails has no stored file.
+     * @throws IOException if the cold copy cannot be read or the file cannot be written.
+     */
+    public Optional<FileLocation> promote(Long fileDetailsId) throws IOException {
+        synchronized (locks.lockFor(fileDetailsId)) {
+            Optional<FileLocation> location = fileLocationResolver.resolve(fileDetailsId);
+            if (location.isEmpty() || !location.get().isCold()) {
+                return location;
+            }
+            Path file = Paths.get(location.get().getPath());
+            Path cold = Paths.get(location.get().getColdPath());
+            Boolean promoted = IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    if (!isColdAt(fileDetailsId, location.get().getColdPath())) {
+                        // promoted by another instance since the location was resolved
+                        return false;
+                    }
+                    // still there if a demotion has not removed it yet, which it no longer will once the row is gone
+                    if (!Files.exists(file)) {
+                        Files.createDirectories(file.getParent());
+                        try (
+                            InputStream raw = Files.newInputStream(cold);
+                            InputStream in = decode(raw, location.get().getContentEncoding())
+                        ) {
+                            StreamingFileWriter.replace(in, file, false);
+                        }
+                        Files.setLastModifiedTime(file, Files.getLastModifiedTime(cold));
+                    }
+                    fileMetaDataService.deleteValue(fileDetailsId, FileMetaDataKeys.COLD_PATH);
+                    return true;
+                }
+            );
+            if (Boolean.TRUE.equals(promoted)) {
+                Files.deleteIfExists(cold);
+                promotions.increment();
+                log.debug("Promoted {} from {}", file, cold);
+            }
+            return fileLocationResolver.resolve(fileDetailsId);
+        }
+    }
+
+    /**
+     * Run {@code action} while no demotion or promotion of the file can start on this instance.
+     */
+    public <T> T withFileLock(Long fileDetailsId, Supplier<T> action) {
+        synchronized (locks.lockFor(fileDetailsId)) {
+            return action.get();
+        }
+    }
+
+    /**
+     * Remove the cold copy of a file whose fileDetails was deleted.
+     */
+    public void deleteColdCopy(FileLocation location) throws IOException {
+        if (location.isCold()) {
+            synchronized (locks.lockFor(location.getFileDetailsId())) {
+                Files.deleteIfExists(Paths.get(location.getColdPath()));
+            }
+        }
+    }
+
+    private boolean demote(Long fileDetailsId, String path, String contentEncoding) throws IOException {
+        synchronized (locks.lockFor(fileDetailsId)) {
+            // the file may have been read, deleted or moved since the batch was loaded
+            Map<String, String> values = fileMetaDataRepository
+                .findValues(fileDetailsId)
+                .stream()
+                .collect(Collectors.toMap(FileMetaDataRepository.KeyValue::getKey, FileMetaDataRepository.KeyValue::getValue, (a, b) -> a));
+            Path file = Paths.get(path);
+            if (
+                !path.equals(values.get(FileMetaDataKeys.FILE_PATH)) ||
+                values.containsKey(FileMetaDataKeys.COLD_PATH) ||
+                fileAccessTracker.isPending(fileDetailsId) ||
+                !Files.exists(file)
+            ) {
+                return false;
+            }
+            Path cold = coldPathFor(file, contentEncoding);
+            Files.createDirectories(cold.getParent());
+            try (InputStream in = Files.newInputStream(file)) {
+                StreamingFileWriter.replace(in, cold, contentEncoding == null);
+            }
+            Files.setLastModifiedTime(cold, Files.getLastModifiedTime(file));
+            fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.COLD_PATH, cold.toString());
+            hotFileCache.evict(fileDetailsId);
+            Boolean handedOff = IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    if (!isColdAt(fileDetailsId, cold.toString())) {
+                        // promoted by another instance in the meantime, which kept the hot file
+                        return false;
+                    }
+                    Files.delete(file);
+                    return true;
+                }
+            );
+            if (!Boolean.TRUE.equals(handedOff)) {
+                return false;
+            }
+            demotions.increment();
+            log.debug("Demoted {} to {}", file, cold);
+            return true;
+        }
+    }
+
+    /**
+     * Lock the {@code coldPath} row of a fileDetails until the end of the transaction.
+     *
+     * @return {@code true} if the row still points at {@code cold}.
+     */
+    private boolean isColdAt(Long fileDetailsId, String cold) {
+        return fileMetaDataRepository
+            .findOneByFileDetailsIdAndKeyForUpdate(fileDetailsId, FileMetaDataKeys.COLD_PATH)
+            .map(fileMetaData -> cold.equals(fileMetaData.getValue()))
+            .orElse(false);
+    }
+
+    private Path coldPathFor(Path file, String contentEncoding) {
+        Path root = Paths.get(folderPath).toAbsolutePath().normalize();
+        Path absolute = file.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(root) ? root.relativize(absolute) : absolute.getFileName();
+        Path cold = Paths.get(coldPath).resolve(relative.toString());
+        return contentEncoding == null ? cold.resolveSibling(cold.getFileName() + ".gz") : cold;
+    }
+
+    /**
+     * Files stored without a content encoding are gzip-compressed in the cold tier, the others are kept as stored.
+     */
+    private static InputStream decode(InputStream raw, String contentEncoding) throws IOException {
+        return contentEncoding == null ? new GZIPInputStream(raw, StreamingFileWriter.BUFFER_SIZE) : raw;
+    }
+
+    private boolean isModifiedBefore(Path file, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoff;
+        } catch (IOException e) {
+            log.warn("Cannot read modification time of {} : {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private Map<Long, String> valuesFor(String key, List<Long> fileDetailsIds) {
+        if (fileDetailsIds.isEmpty()) {
+            return Map.of();
+        }
+        return fileMetaDataRepository
+            .findValuesFor(key, fileDetailsIds)
+            .stream()
+            .collect(Collectors.toMap(FileDetailsValue::getFileDetailsId, FileDetailsValue::getValue, (first, second) -> first));
+    }
+
+    private static Counter moveCounter(MeterRegistry meterRegistry, String direction) {
+        return Counter
+            .builder("wii.file.tier.moves")
+            .description("Stored files moved between the hot and cold storage tiers")
+            .tag("direction", direction)
+            .register(meterRegistry);
+    }
+}
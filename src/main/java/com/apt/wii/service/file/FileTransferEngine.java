@@ -0,0 +1,213 @@
+package com.apt.wii.service.file;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Writes stored files to a servlet response with as few copies as the container allows.
+ * <p>
+ * Three strategies are tried in order:
+ * <ol>
+ *     <li>Tomcat sendfile, when the connector advertises it through the {@code org.apache.tomcat.sendfile.support}
+ *     request attribute. The container streams the file after the servlet returns.</li>
+ *     <li>Undertow's {@code ServletOutputStreamImpl.transferFrom(FileChannel)}, which uses
+ *     {@link FileChannel#transferTo} into the socket. It always sends up to the end of the file, so it is only used
+ *     for transfers that end there (full downloads and open-ended ranges). Filters such as Spring Security wrap the
+ *     response, so the method is looked up on the stream of the innermost response. The response is committed through
+ *     the wrappers first, so that headers they add on commit, such as the security headers, are still sent.</li>
+ *     <li>A copy loop that reads the file into pooled direct buffers and writes them to the response.</li>
+ * </ol>
+ * The response status and headers must be set before calling {@link #transfer}. The {@code wii.file.transfer.requests}
+ * and {@code wii.file.transfer.bytes} meters are tagged with the strategy that served each transfer.
+ */
+@Service
+public class FileTransferEngine {
+
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String TRANSFER_FROM_METHOD = "transferFrom";
+
+    private final Logger log = LoggerFactory.getLogger(FileTransferEngine.class);
+
+    private final Map<Class<?>, Optional<Method>> transferFromMethods = new ConcurrentHashMap<>();
+
+    private final boolean zeroCopy;
+
+    private final DirectBufferPool bufferPool;
+
+    private final TransferMeters sendfile;
+
+    private final TransferMeters transferTo;
+
+    private final TransferMeters buffered;
+
+    public FileTransferEngine(
+        MeterRegistry meterRegistry,
+        @Value("${wii.download.zero_copy:true}") boolean zeroCopy,
+        @Value("${wii.download.buffer_pool.size:32}") int bufferPoolSize,
+        @Value("${wii.download.buffer_pool.buffer_size:256KB}") DataSize bufferSize
+    ) {
+        this.zeroCopy = zeroCopy;
+        this.bufferPool = new DirectBufferPool(bufferPoolSize, (int) bufferSize.toBytes());
+        this.sendfile = new TransferMeters(meterRegistry, "sendfile");
+        this.transferTo = new TransferMeters(meterRegistry, "transfer_to");
+        this.buffered = new TransferMeters(meterRegistry, "buffered");
+    }
+
+    /**
+     * Send {@code count} bytes of {@code file} starting at {@code position}.
+     *
+     * @param file the stored file.
+     * @param position the offset of the first byte to send.
+     * @param count the number of bytes to send.
+     * @param request the current request.
+     * @param response the response, with status and headers already set.
+     * @throws IOException if the file cannot be read or the client went away.
+     */
+    public void transfer(Path file, long position, long count, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+        if (zeroCopy && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            response.flushBuffer();
+            sendfile.record(count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (zeroCopy && position + count == channel.size()) {
+                OutputStream containerOut = unwrap(response).getOutputStream();
+                Optional<Method> transferFrom = transferFromMethod(containerOut.getClass());
+                if (transferFrom.isPresent()) {
+                    response.flushBuffer();
+                    channel.position(position);
+                    invokeTransferFrom(transferFrom.get(), containerOut, channel);
+                    transferTo.record(count);
+                    return;
+                }
+            }
+            copy(channel, position, count, Channels.newChannel(response.getOutputStream()));
+            buffered.record(count);
+        }
+    }
+
+    /**
+     * Copy a range of {@code source} to {@code target} through a pooled direct buffer.
+     */
+    public void copy(FileChannel source, long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try {
+            long remaining = count;
+            long offset = position;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = source.read(buffer, offset);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                offset += read;
+                remaining -= read;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * @return the response created by the container, under the wrappers added by filters.
+     */
+    private static ServletResponse unwrap(ServletResponse response) {
+        ServletResponse current = response;
+        while (current instanceof ServletResponseWrapper) {
+            current = ((ServletResponseWrapper) current).getResponse();
+        }
+        return current;
+    }
+
+    private Optional<Method> transferFromMethod(Class<?> outputStreamClass) {
+        return transferFromMethods.computeIfAbsent(
+            outputStreamClass,
+            c -> {
+                try {
+                    return Optional.of(c.getMethod(TRANSFER_FROM_METHOD, FileChannel.class));
+                } catch (NoSuchMethodException e) {
+                    log.debug("{} does not support zero-copy transfers", c.getName());
+                    return Optional.empty();
+                }
+            }
+        );
+    }
+
+    private void invokeTransferFrom(Method transferFrom, OutputStream out, FileChannel channel) throws IOException {
+        try {
+            transferFrom.invoke(out, channel);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot call " + transferFrom, e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Zero-copy transfer failed", e.getCause());
+        }
+    }
+
+    private static final class TransferMeters {
+
+        private final Counter requests;
+
+        private final Counter bytes;
+
+        TransferMeters(MeterRegistry meterRegistry, String mode) {
+            this.requests =
+                Counter
+                    .builder("wii.file.transfer.requests")
+                    .description("Transfers of stored files to clients")
+                    .tag("mode", mode)
+                    .register(meterRegistry);
+            this.bytes =
+                Counter
+                    .builder("wii.file.transfer.bytes")
+                    .description("Bytes of stored files sent to clients")
+                    .baseUnit("bytes")
+                    .tag("mode", mode)
+                    .register(meterRegistry);
+        }
+
+        void record(long count) {
+            requests.increment();
+            bytes.increment(count);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A gzip-compressed stored file, decompressed while it is read.
+ * <p>
+ * The original size is known from the file metadata, so the resource can be served with a {@code Content-Length} and
+ * byte ranges; skipping to a range start decompresses the preceding content.
+ */
+public class GzipFileResource extends AbstractResource {
+
+    private final Path file;
+
+    private final String filename;
+
+    private final long contentLength;
+
+    private final long lastModified;
+
+    public GzipFileResource(Path file, String filename, long contentLength, long lastModified) {
+        this.file = file;
+        this.filename = filename;
+        this.contentLength = contentLength;
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new GZIPInputStream(Files.newInputStream(file), StreamingFileWriter.BUFFER_SIZE);
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public String getDescription() {
+        return "gzip file [" + file + "]";
+    }
+}
@@ -0,0 +1,144 @@
+package com.apt.wii.service.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Keeps the bytes of small, frequently downloaded files in direct memory.
+ * <p>
+ * The cache is bounded by the total size of the cached files and uses Caffeine's W-TinyLFU policy, so a burst of
+ * one-off downloads does not push out the attachments that are requested all the time. Files larger than the per-entry
+ * limit are never cached. An entry is only served while it matches the current {@link FileLocation} of its fileDetails,
+ * so a file moved or rewritten after the location was re-resolved is read again from disk.
+ * <p>
+ * Evicted buffers are released by the garbage collector; {@code -XX:MaxDirectMemorySize} must leave room for
+ * {@code max_size} on top of the download buffer pool.
+ */
+@Service
+public class HotFileCache {
+
+    public static final String CACHE_NAME = "hotFiles";
+
+    private final Logger log = LoggerFactory.getLogger(HotFileCache.class);
+
+    private final boolean enabled;
+
+    private final long maxEntrySize;
+
+    private final Cache<Long, Entry> cache;
+
+    public HotFileCache(
+        MeterRegistry meterRegistry,
+        @Value("${wii.download.hot_cache.enabled:false}") boolean enabled,
+        @Value("${wii.download.hot_cache.max_size:64MB}") DataSize maxSize,
+        @Value("${wii.download.hot_cache.max_entry_size:512KB}") DataSize maxEntrySize
+    ) {
+        this.enabled = enabled;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.cache =
+            Caffeine
+                .newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long id, Entry entry) -> entry.content.capacity())
+                .recordStats()
+                .build();
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+            Gauge
+                .builder("wii.file.hot_cache.bytes", cache, c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Bytes of file content held in the hot file cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Get the content of a stored file from the cache, loading it if it is small enough.
+     *
+     * @param location the current location of the file.
+     * @param size the size of the stored file.
+     * @return the cached content, or empty if the cache is disabled or the file is too large.
+     */
+    public Optional<CachedFileResource> get(FileLocation location, long size) {
+        if (!enabled || size > maxEntrySize) {
+            return Optional.empty();
+        }
+        Long id = location.getFileDetailsId();
+        Entry entry = cache.getIfPresent(id);
+        if (entry == null || !entry.matches(location)) {
+            entry =
+                cache
+                    .asMap()
+                    .compute(id, (key, current) -> current != null && current.matches(location) ? current : load(location));
+        }
+        return Optional.of(entry.toResource());
+    }
+
+    /**
+     * Drop the cached content of the "fileDetailsId" fileDetails.
+     *
+     * @param fileDetailsId the id of the fileDetails.
+     */
+    public void evict(Long fileDetailsId) {
+        if (fileDetailsId != null) {
+            cache.invalidate(fileDetailsId);
+        }
+    }
+
+    private Entry load(FileLocation location) {
+        Path file = Paths.get(location.getPath());
+        log.debug("Caching content of {}", file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer content = ByteBuffer.allocateDirect((int) channel.size());
+            while (content.hasRemaining() && channel.read(content) != -1) {
+                // keep reading until the buffer is full
+            }
+            content.flip();
+            return new Entry(location, content.asReadOnlyBuffer(), file.getFileName().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot cache " + file, e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String path;
+
+        private final long lastModified;
+
+        private final ByteBuffer content;
+
+        private final String filename;
+
+        Entry(FileLocation location, ByteBuffer content, String filename) {
+            this.path = location.getPath();
+            this.lastModified = location.getLastModified();
+            this.content = content;
+            this.filename = filename;
+        }
+
+        boolean matches(FileLocation location) {
+            return path.equals(location.getPath()) && lastModified == location.getLastModified();
+        }
+
+        CachedFileResource toResource() {
+            return new CachedFileResource(content, filename, lastModified);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.apt.wii.service.file;
+
+import java.time.Instant;
+
+/**
+ * Progress and findings of one run of the {@link FileIntegrityScrubber}.
+ */
+public class IntegrityScrubReport {
+
+    private final Instant startedAt;
+
+    private final long startedAfter;
+
+    private volatile Instant finishedAt;
+
+    private volatile boolean complete;
+
+    private volatile long position;
+
+    private volatile long scannedFiles;
+
+    private volatile long scannedBytes;
+
+    private volatile long corruptFiles;
+
+    private volatile long missingFiles;
+
+    private volatile long recoveredFiles;
+
+    IntegrityScrubReport(Instant startedAt, long startedAfter) {
+        this.startedAt = startedAt;
+        this.startedAfter = startedAfter;
+        this.position = startedAfter;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the fileDetails id the run resumed after, {@code 0} for a run that started a new pass.
+     */
+    public long getStartedAfter() {
+        return startedAfter;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return {@code true} if the run reached the last stored file, {@code false} while running or if it was stopped.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the id of the last fileDetails checked.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getScannedFiles() {
+        return scannedFiles;
+    }
+
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+
+    public long getCorruptFiles() {
+        return corruptFiles;
+    }
+
+    public long getMissingFiles() {
+        return missingFiles;
+    }
+
+    /**
+     * @return the number of files reported damaged by an earlier run that now match their checksum again.
+     */
+    public long getRecoveredFiles() {
+        return recoveredFiles;
+    }
+
+    void fileScanned(long fileDetailsId) {
+        scannedFiles++;
+        position = fileDetailsId;
+    }
+
+    void bytesScanned(long count) {
+        scannedBytes += count;
+    }
+
+    void corruptFile() {
+        corruptFiles++;
+    }
+
+    void missingFile() {
+        missingFiles++;
+    }
+
+    void recoveredFile() {
+        recoveredFiles++;
+    }
+
+    void finish(Instant finishedAt, boolean complete) {
+        this.finishedAt = finishedAt;
+        this.complete = complete;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "IntegrityScrubReport{" +
+            "startedAt=" + getStartedAt() +
+            ", startedAfter=" + getStartedAfter() +
+            ", finishedAt=" + getFinishedAt() +
+            ", complete=" + isComplete() +
+            ", position=" + getPosition() +
+            ", scannedFiles=" + getScannedFiles() +
+            ", scannedBytes=" + getScannedBytes() +
+            ", corruptFiles=" + getCorruptFiles() +
+            ", missingFiles=" + getMissingFiles() +
+            ", recoveredFiles=" + getRecoveredFiles() +
+            "}";
+    }
+}
@@ -0,0 +1,40 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs file system work inside a {@link TransactionTemplate}, which only lets unchecked exceptions through.
+ */
+public final class IoTransactions {
+
+    private IoTransactions() {}
+
+    /**
+     * Run {@code action} in a transaction of {@code transactionTemplate}, rolled back if it throws.
+     *
+     * @return the result of {@code action}.
+     * @throws IOException thrown by {@code action}.
+     */
+    public static <T> T execute(TransactionTemplate transactionTemplate, IoAction<T> action) throws IOException {
+        try {
+            return transactionTemplate.execute(
+                status -> {
+                    try {
+                        return action.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            );
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    public interface IoAction<T> {
+        T run() throws IOException;
+    }
+}
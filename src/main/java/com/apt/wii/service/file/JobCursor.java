@@ -0,0 +1,43 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Position of a resumable maintenance job, kept in a small file under {@code <wii.folder_path>/.jobs} so it lives next
+ * to the data the job walks.
+ */
+public final class JobCursor {
+
+    public static final String JOBS_DIRECTORY = ".jobs";
+
+    private final Path file;
+
+    public JobCursor(String folderPath, String jobName) {
+        this.file = Paths.get(folderPath, JOBS_DIRECTORY, jobName + ".cursor");
+    }
+
+    /**
+     * @return the saved position, or {@code 0} if the job never saved one.
+     */
+    public long read() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Replace the saved position; a crash leaves either the old or the new value.
+     */
+    public void write(long position) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, Long.toString(position).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
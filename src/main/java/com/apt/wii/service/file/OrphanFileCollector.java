@@ -0,0 +1,490 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.config.StorageMaintenanceConfiguration;
+import com.apt.wii.domain.FileMetaData;
+import com.apt.wii.repository.FileBlobRepository;
+import com.apt.wii.repository.FileDetailsRepository;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.service.file.impl.UploadSessionServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Reconciles the storage directory with the {@code file_details}/{@code file_meta_data} tables.
+ * <p>
+ * Files under {@code wii.folder_path} that no metadata value (stored file, upload staging file, image derivative...) or
+ * blob points to are orphans, and so are fileDetails whose stored file is gone or that never got one. The directory is
+ * walked with {@link Files#walkFileTree}, which only keeps the open directory handles of the current branch, and its
+ * files are checked against the database {@code batch_size} at a time. The tables are read in fileDetails id order with
+ * keyset pagination. Both sides pause between batches to limit the load put on the disk and the database.
+ * <p>
+ * In {@link Mode#REPORT} mode orphans are only counted. {@link Mode#QUARANTINE} moves orphan files to
+ * {@code <wii.folder_path>/.quarantine}, where they are deleted once {@code quarantine_retention} has passed.
+ * {@link Mode#DELETE} deletes orphan files as well as orphan rows. Files and fileDetails without a file younger than
+ * {@code min_age} are skipped, as they may belong to an upload that has not written its metadata yet.
+ * <p>
+ * A run is abandoned if {@code wii.folder_path} is not a readable directory, since every row would then look orphaned.
+ * For the same reason no more than {@code max_row_deletions} rows are deleted per run, and a batch of files none of which
+ * is referenced is left alone. A row is deleted only if, under the {@link FileTierManager} lock of its file, its current
+ * location still has no file.
+ */
+@Service
+public class OrphanFileCollector {
+
+    public static final String QUARANTINE_DIRECTORY = ".quarantine";
+
+    /**
+     * Metadata keys holding the path of a file under {@code wii.folder_path}, besides the per-width image derivatives.
+     */
+    private static final Set<String> PATH_KEYS = Set.of(
+        FileMetaDataKeys.FILE_PATH,
+        FileMetaDataKeys.COLD_PATH,
+        FileMetaDataKeys.PREVIEW_PATH,
+        FileMetaDataKeys.UPLOAD_STAGING_PATH
+    );
+
+    /**
+     * Name of an image derivative written by {@link com.apt.wii.service.file.pipeline.ImageDerivativeStage}:
+     * {@code <name>.w<width>.<ext>}.
+     */
+    private static final Pattern DERIVATIVE_NAME = Pattern.compile("\\.w(\\d+)\\.[^.]+$");
+
+    public enum Mode {
+        REPORT,
+        QUARANTINE,
+        DELETE,
+    }
+
+    private final Logger log = LoggerFactory.getLogger(OrphanFileCollector.class);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.gc.mode:REPORT}")
+    private Mode mode;
+
+    @Value("${wii.gc.batch_size:500}")
+    private int batchSize;
+
+    @Value("${wii.gc.batch_pause:200ms}")
+    private Duration batchPause;
+
+    @Value("${wii.gc.min_age:1h}")
+    private Duration minAge;
+
+    @Value("${wii.gc.quarantine_retention:7d}")
+    private Duration quarantineRetention;
+
+    @Value("${wii.gc.max_row_deletions:100}")
+    private long maxRowDeletions;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final FileBlobRepository fileBlobRepository;
+
+    private final FileDetailsRepository fileDetailsRepository;
+
+    private final FileService fileService;
+
+    private final FileStoreMigration fileStoreMigration;
+
+    private final FileTierManager fileTierManager;
+
+    private final Counter orphanFiles;
+
+    private final Counter orphanRows;
+
+    private final Counter reclaimedBytes;
+
+    private final Timer runs;
+
+    private final Executor maintenanceExecutor;
+
+    public OrphanFileCollector(
+        FileMetaDataRepository fileMetaDataRepository,
+        FileBlobRepository fileBlobRepository,
+        FileDetailsRepository fileDetailsRepository,
+        FileService fileService,
+        FileStoreMigration fileStoreMigration,
+        FileTierManager fileTierManager,
+        MeterRegistry meterRegistry,
+        @Qualifier(StorageMaintenanceConfiguration.STORAGE_MAINTENANCE_EXECUTOR) Executor maintenanceExecutor
+    ) {
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.fileBlobRepository = fileBlobRepository;
+        this.fileDetailsRepository = fileDetailsRepository;
+        this.fileService = fileService;
+        this.fileStoreMigration = fileStoreMigration;
+        this.fileTierManager = fileTierManager;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.orphanFiles = orphanCounter(meterRegistry, "file");
+        this.orphanRows = orphanCounter(meterRegistry, "row");
+        this.reclaimedBytes =
+            Counter
+                .builder("wii.file.gc.reclaimed")
+                .description("Bytes of orphan files deleted from storage")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.runs = Timer.builder("wii.file.gc.runs").description("Orphan file collection runs").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${wii.gc.cron:0 30 3 * * ?}")
+    public void scheduledCollect() {
+        maintenanceExecutor.execute(this::collect);
+    }
+
+    /**
+     * Run a full reconciliation, unless one is already in progress.
+     *
+     * @return the counts of this run, or {@code null} if another run or a layout migration was in progress, or the storage
+     * directory cannot be read.
+     */
+    public OrphanFileReport collect() {
+        if (fileStoreMigration.isRunning()) {
+            // files being moved are briefly referenced under one name only
+            log.info("Skipping orphan file collection while the file store is migrated");
+            return null;
+        }
+        Path root = Paths.get(folderPath);
+        if (!Files.isDirectory(root) || !Files.isReadable(root)) {
+            log.error("Skipping orphan file collection, {} is not a readable directory", root);
+            return null;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.info("Orphan file collection already running");
+            return null;
+        }
+        try {
+            OrphanFileReport report = new OrphanFileReport();
+            runs.record(
+                () -> {
+                    try {
+                        collectFiles(root, report);
+                        collectRows(report);
+                        collectPathlessRows(report);
+                        purgeQuarantine(report);
+                    } catch (InterruptedIOException | InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.warn("Orphan file collection interrupted");
+                    } catch (IOException e) {
+                        log.error("Orphan file collection stopped : {}", e.getMessage());
+                    }
+                }
+            );
+            log.info("Orphan file collection ({}) done : {}", mode, report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void collectFiles(Path root, OrphanFileReport report) throws IOException {
+        Path quarantine = root.resolve(QUARANTINE_DIRECTORY);
+        Path jobs = root.resolve(JobCursor.JOBS_DIRECTORY);
+        Instant cutoff = Instant.now().minus(minAge);
+        List<StoredFile> batch = new ArrayList<>(batchSize);
+        Files.walkFileTree(
+            root,
+            new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return dir.equals(quarantine) || dir.equals(jobs) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && attrs.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                        batch.add(new StoredFile(file, attrs.size()));
+                    }
+                    if (batch.size() >= batchSize) {
+                        collectFileBatch(root, quarantine, batch, report);
+                        batch.clear();
+                        pauseDuringWalk();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.warn("Cannot inspect {} : {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+        );
+        if (!batch.isEmpty()) {
+            collectFileBatch(root, quarantine, batch, report);
+        }
+    }
+
+    private void collectFileBatch(Path root, Path quarantine, List<StoredFile> batch, OrphanFileReport report) throws IOException {
+        // rows written before paths were built with Paths hold wii.folder_path as configured followed by the file name,
+        // which can differ from the walked path in its separators; both spellings are looked up, then compared normalized
+        Set<String> paths = new HashSet<>();
+        for (StoredFile storedFile : batch) {
+            paths.add(storedFile.path.toString());
+            paths.add(folderPath + root.relativize(storedFile.path));
+        }
+        // the keys let the lookup use the (key, value) index
+        Set<String> keys = new HashSet<>(PATH_KEYS);
+        for (StoredFile storedFile : batch) {
+            Matcher derivative = DERIVATIVE_NAME.matcher(storedFile.path.getFileName().toString());
+            if (derivative.find()) {
+                keys.add(FileMetaDataKeys.DERIVATIVE_PREFIX + derivative.group(1));
+            }
+        }
+        List<String> values = new ArrayList<>(fileMetaDataRepository.findValuesIn(keys, paths));
+        values.addAll(fileBlobRepository.findPathsIn(paths));
+        Set<Path> referenced = values.stream().map(this::normalize).flatMap(Optional::stream).collect(Collectors.toSet());
+        if (referenced.isEmpty() && mode != Mode.REPORT) {
+            // more likely paths spelled in a way this run does not recognise than a whole batch of orphans
+            log.warn("None of {} files from {} is referenced, leaving them in place", batch.size(), batch.get(0).path);
+            batch.forEach(storedFile -> report.fileScanned());
+            return;
+        }
+        for (StoredFile storedFile : batch) {
+            report.fileScanned();
+            if (referenced.contains(storedFile.path.toAbsolutePath().normalize())) {
+                continue;
+            }
+            report.orphanFile();
+            orphanFiles.increment();
+            log.debug("Orphan file {}", storedFile.path);
+            if (mode == Mode.QUARANTINE) {
+                Path target = quarantine.resolve(root.relativize(storedFile.path));
+                Files.createDirectories(target.getParent());
+                Files.move(storedFile.path, target, StandardCopyOption.REPLACE_EXISTING);
+                // retention is counted from the move, not from the last write
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                report.fileQuarantined();
+            } else if (mode == Mode.DELETE && Files.deleteIfExists(storedFile.path)) {
+                report.fileDeleted(storedFile.size);
+                reclaimedBytes.increment(storedFile.size);
+            }
+        }
+    }
+
+    private Optional<Path> normalize(String path) {
+        try {
+            return Optional.of(Paths.get(path).toAbsolutePath().normalize());
+        } catch (InvalidPathException e) {
+            log.warn("Ignoring unreadable stored path {} : {}", path, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void collectRows(OrphanFileReport report) throws InterruptedException {
+        Long after = 0L;
+        List<FileMetaDataRepository.FileDetailsValue> page;
+        do {
+            page = fileMetaDataRepository.findValuesAfter(FileMetaDataKeys.FILE_PATH, after, PageRequest.of(0, batchSize));
+            Map<Long, String> coldPaths = coldPaths(page);
+            for (FileMetaDataRepository.FileDetailsValue value : page) {
+                report.rowScanned();
+                after = value.getFileDetailsId();
+                // demoted files are not at their filePath until they are promoted again
+                String path = coldPaths.getOrDefault(value.getFileDetailsId(), value.getValue());
+                if (Files.exists(Paths.get(path))) {
+                    continue;
+                }
+                report.orphanRow();
+                orphanRows.increment();
+                log.debug("FileDetails {} has no stored file at {}", value.getFileDetailsId(), path);
+                if (mode != Mode.DELETE) {
+                    continue;
+                }
+                if (report.getDeletedRows() >= maxRowDeletions) {
+                    log.error("Stopped after deleting {} orphan rows, check that {} is the expected storage", maxRowDeletions, folderPath);
+                    return;
+                }
+                if (deleteIfMissing(value.getFileDetailsId())) {
+                    report.rowDeleted();
+                }
+            }
+            pause();
+        } while (page.size() == batchSize);
+    }
+
+    /**
+     * Find the fileDetails that never got a stored file, such as an upload that failed between saving its fileDetails
+     * and its metadata. Upload sessions have no file until they complete and are left to their own sweep.
+     */
+    private void collectPathlessRows(OrphanFileReport report) throws InterruptedException {
+        Instant cutoff = Instant.now().minus(minAge);
+        Long after = 0L;
+        List<Long> page;
+        do {
+            page =
+                fileDetailsRepository.findIdsWithoutKeyAfter(
+                    after,
+                    UploadSessionServiceImpl.DESTINATION_UPLOAD_SESSION,
+                    cutoff,
+                    FileMetaDataKeys.FILE_PATH,
+                    PageRequest.of(0, batchSize)
+                );
+            for (Long fileDetailsId : page) {
+                report.rowScanned();
+                after = fileDetailsId;
+                report.orphanRow();
+                orphanRows.increment();
+                log.debug("FileDetails {} has no stored file", fileDetailsId);
+                if (mode != Mode.DELETE) {
+                    continue;
+                }
+                if (report.getDeletedRows() >= maxRowDeletions) {
+                    log.error("Stopped after deleting {} orphan rows, check that {} is the expected storage", maxRowDeletions, folderPath);
+                    return;
+                }
+                if (deleteIfPathless(fileDetailsId)) {
+                    report.rowDeleted();
+                }
+            }
+            pause();
+        } while (page.size() == batchSize);
+    }
+
+    /**
+     * Delete a fileDetails if it still has no stored file, with its demotion and promotion held off.
+     */
+    private boolean deleteIfPathless(Long fileDetailsId) {
+        return fileTierManager.withFileLock(
+            fileDetailsId,
+            () -> currentPath(fileDetailsId).isEmpty() && fileService.deleteFile(fileDetailsId)
+        );
+    }
+
+    /**
+     * Delete a fileDetails if the file at its current location is still missing, with its demotion and promotion held off.
+     */
+    private boolean deleteIfMissing(Long fileDetailsId) {
+        return fileTierManager.withFileLock(
+            fileDetailsId,
+            () -> {
+                // the file may have been compressed, migrated or promoted since the batch was read
+                Optional<String> path = currentPath(fileDetailsId);
+                return path.isPresent() && !Files.exists(Paths.get(path.get())) && fileService.deleteFile(fileDetailsId);
+            }
+        );
+    }
+
+    private Optional<String> currentPath(Long fileDetailsId) {
+        Optional<String> coldPath = fileMetaDataRepository
+            .findOneByFileDetailsIdAndKey(fileDetailsId, FileMetaDataKeys.COLD_PATH)
+            .map(FileMetaData::getValue);
+        if (coldPath.isPresent()) {
+            return coldPath;
+        }
+        return fileMetaDataRepository.findOneByFileDetailsIdAndKey(fileDetailsId, FileMetaDataKeys.FILE_PATH).map(FileMetaData::getValue);
+    }
+
+    private Map<Long, String> coldPaths(List<FileMetaDataRepository.FileDetailsValue> page) {
+        if (page.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = page.stream().map(FileMetaDataRepository.FileDetailsValue::getFileDetailsId).collect(Collectors.toList());
+        return fileMetaDataRepository
+            .findValuesFor(FileMetaDataKeys.COLD_PATH, ids)
+            .stream()
+            .collect(
+                Collectors.toMap(
+                    FileMetaDataRepository.FileDetailsValue::getFileDetailsId,
+                    FileMetaDataRepository.FileDetailsValue::getValue,
+                    (first, second) -> first
+                )
+            );
+    }
+
+    private void purgeQuarantine(OrphanFileReport report) throws IOException {
+        Path quarantine = Paths.get(folderPath, QUARANTINE_DIRECTORY);
+        if (!Files.isDirectory(quarantine)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(quarantineRetention);
+        Files.walkFileTree(
+            quarantine,
+            new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.lastModifiedTime().toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                        report.fileDeleted(attrs.size());
+                        reclaimedBytes.increment(attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.warn("Cannot inspect {} : {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+        );
+    }
+
+    private void pause() throws InterruptedException {
+        if (!batchPause.isZero()) {
+            Thread.sleep(batchPause.toMillis());
+        }
+    }
+
+    private void pauseDuringWalk() throws InterruptedIOException {
+        try {
+            pause();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted between batches");
+        }
+    }
+
+    private static Counter orphanCounter(MeterRegistry meterRegistry, String type) {
+        return Counter
+            .builder("wii.file.gc.orphans")
+            .description("Orphans found by the orphan file collector")
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+
+    private static final class StoredFile {
+
+        private final Path path;
+
+        private final long size;
+
+        StoredFile(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
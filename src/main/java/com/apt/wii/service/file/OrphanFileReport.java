@@ -0,0 +1,99 @@
+package com.apt.wii.service.file;
+
+/**
+ * Counts gathered by one run of the {@link OrphanFileCollector}.
+ */
+public class OrphanFileReport {
+
+    private long scannedFiles;
+
+    private long orphanFiles;
+
+    private long quarantinedFiles;
+
+    private long deletedFiles;
+
+    private long reclaimedBytes;
+
+    private long scannedRows;
+
+    private long orphanRows;
+
+    private long deletedRows;
+
+    public long getScannedFiles() {
+        return scannedFiles;
+    }
+
+    public long getOrphanFiles() {
+        return orphanFiles;
+    }
+
+    public long getQuarantinedFiles() {
+        return quarantinedFiles;
+    }
+
+    public long getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    public long getOrphanRows() {
+        return orphanRows;
+    }
+
+    public long getDeletedRows() {
+        return deletedRows;
+    }
+
+    void fileScanned() {
+        scannedFiles++;
+    }
+
+    void orphanFile() {
+        orphanFiles++;
+    }
+
+    void fileQuarantined() {
+        quarantinedFiles++;
+    }
+
+    void fileDeleted(long size) {
+        deletedFiles++;
+        reclaimedBytes += size;
+    }
+
+    void rowScanned() {
+        scannedRows++;
+    }
+
+    void orphanRow() {
+        orphanRows++;
+    }
+
+    void rowDeleted() {
+        deletedRows++;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "OrphanFileReport{" +
+            "scannedFiles=" + getScannedFiles() +
+            ", orphanFiles=" + getOrphanFiles() +
+            ", quarantinedFiles=" + getQuarantinedFiles() +
+            ", deletedFiles=" + getDeletedFiles() +
+            ", reclaimedBytes=" + getReclaimedBytes() +
+            ", scannedRows=" + getScannedRows() +
+            ", orphanRows=" + getOrphanRows() +
+            ", deletedRows=" + getDeletedRows() +
+            "}";
+    }
+}
@@ -0,0 +1,87 @@
+package com.apt.wii.service.file;
+
+import java.time.Instant;
+import org.springframework.http.MediaType;
+
+/**
+ * What a signed download URL grants: one stored file, until an expiry time.
+ */
+public class SignedDownload {
+
+    private final String path;
+
+    private final String filename;
+
+    private final String contentEncoding;
+
+    private final String contentType;
+
+    private final Instant expiresAt;
+
+    public SignedDownload(String path, String filename, String contentEncoding, String contentType, Instant expiresAt) {
+        this.path = path;
+        this.filename = filename;
+        this.contentEncoding = contentEncoding;
+        this.contentType = contentType;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * A download of the stored file of {@code location}, served under its uploaded name.
+     */
+    public static SignedDownload of(FileLocation location, Instant expiresAt) {
+        return new SignedDownload(
+            location.getPath(),
+            // the name becomes a path segment of the URL, where an encoded slash would be rejected
+            location.getDownloadName().replace('/', '_').replace('\\', '_'),
+            location.getContentEncoding(),
+            location.getContentType(),
+            expiresAt
+        );
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the name the file is served under, which also gives its media type when none was detected.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the media type detected from the content, or {@code null}.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the media type to serve the file with, see {@link FileLocation#servedMediaType(MediaType)}.
+     */
+    public MediaType getMediaType() {
+        return FileLocation.servedMediaType(FileLocation.mediaType(contentType, filename));
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SignedDownload{" +
+            "path='" + getPath() + "'" +
+            ", filename='" + getFilename() + "'" +
+            ", contentEncoding='" + getContentEncoding() + "'" +
+            ", contentType='" + getContentType() + "'" +
+            ", expiresAt=" + getExpiresAt() +
+            "}";
+    }
+}
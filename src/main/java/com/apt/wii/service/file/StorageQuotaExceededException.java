@@ -0,0 +1,10 @@
+package com.apt.wii.service.file;
+
+public class StorageQuotaExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageQuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,238 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.domain.StorageUsage;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.repository.StorageUsageRepository;
+import com.apt.wii.service.dto.StorageUsageDTO;
+import com.apt.wii.service.mapper.StorageUsageMapper;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Keeps the bytes and number of files stored by each uploader, and enforces the per-user quota.
+ * <p>
+ * Counters are held in memory and updated as files are stored and deleted, so a quota check is a map lookup. A user's
+ * counters are loaded from the {@code storage_usage} table the first time they are needed. Every {@code flush_interval}
+ * the changes made since are added to that table, and the counters are reloaded from it, which brings in the changes
+ * flushed by the other instances.
+ * <p>
+ * The table is filled from the {@code fileSize} of every file with an {@code uploadedBy} when it is found empty at startup.
+ * Files stored before uploaders were recorded have no {@code uploadedBy}; they are exempt from the quota and are not
+ * counted.
+ * <p>
+ * The quota is checked against the counters of this instance before a file is stored, and the file is counted only once
+ * it has been stored. Concurrent uploads by the same user can each pass the check, and an instance does not see what was
+ * stored on the others until their next flush and its own. A user can therefore go over the quota by whatever all
+ * instances accept in about two flush intervals, plus the uploads in progress; the quota is a soft limit.
+ */
+@Service
+public class StorageUsageService {
+
+    private final Logger log = LoggerFactory.getLogger(StorageUsageService.class);
+
+    private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+
+    @Value("${wii.quota.max_bytes:0}")
+    private DataSize maxBytes;
+
+    @Value("${wii.quota.max_files:0}")
+    private long maxFiles;
+
+    private final StorageUsageRepository storageUsageRepository;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final StorageUsageMapper storageUsageMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public StorageUsageService(
+        StorageUsageRepository storageUsageRepository,
+        FileMetaDataRepository fileMetaDataRepository,
+        StorageUsageMapper storageUsageMapper,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.storageUsageMapper = storageUsageMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Compute the usage of every uploader from the file metadata, if it has never been recorded.
+     * <p>
+     * Runs before the application serves requests, so no counter has been loaded yet.
+     */
+    @PostConstruct
+    public void backfill() {
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    if (storageUsageRepository.count() > 0) {
+                        return;
+                    }
+                    List<StorageUsage> backfilled = fileMetaDataRepository
+                        .sumValuesGroupedBy(FileMetaDataKeys.UPLOADED_BY, FileMetaDataKeys.FILE_SIZE)
+                        .stream()
+                        .map(total -> new StorageUsage().login(total.getLogin()).bytes(total.getBytes()).files(total.getFiles()))
+                        .collect(Collectors.toList());
+                    storageUsageRepository.saveAll(backfilled);
+                    log.info("Backfilled storage usage of {} uploaders", backfilled.size());
+                }
+            );
+        } catch (RuntimeException e) {
+            // another instance may have backfilled at the same time
+            log.warn("Could not backfill storage usage : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Check that {@code login} may store one more file of {@code size} bytes.
+     *
+     * @throws StorageQuotaExceededException if the file would take the user over the quota.
+     */
+    public void checkQuota(String login, long size) {
+        if (login == null || (maxBytes.toBytes() <= 0 && maxFiles <= 0)) {
+            return;
+        }
+        Usage usage = usage(login);
+        if (maxBytes.toBytes() > 0 && usage.bytes.get() + size > maxBytes.toBytes()) {
+            throw new StorageQuotaExceededException("Storage quota of " + maxBytes.toBytes() + " bytes exceeded");
+        }
+        if (maxFiles > 0 && usage.files.get() + 1 > maxFiles) {
+            throw new StorageQuotaExceededException("Storage quota of " + maxFiles + " files exceeded");
+        }
+    }
+
+    /**
+     * Account for files stored (positive values) or deleted (negative values) by {@code login}.
+     */
+    public void add(String login, long bytes, long files) {
+        if (login == null) {
+            return;
+        }
+        Usage usage = usage(login);
+        synchronized (usage) {
+            usage.bytes.addAndGet(bytes);
+            usage.files.addAndGet(files);
+            usage.pendingBytes.addAndGet(bytes);
+            usage.pendingFiles.addAndGet(files);
+        }
+    }
+
+    /**
+     * Get the usage of every uploader, including the changes of this instance not written to the database yet.
+     */
+    public Page<StorageUsageDTO> findAll(Pageable pageable) {
+        return storageUsageRepository
+            .findAll(pageable)
+            .map(storageUsageMapper::toDto)
+            .map(
+                storageUsage -> {
+                    Usage usage = usages.get(storageUsage.getLogin());
+                    if (usage != null) {
+                        storageUsage.setBytes(storageUsage.getBytes() + usage.pendingBytes.get());
+                        storageUsage.setFiles(storageUsage.getFiles() + usage.pendingFiles.get());
+                    }
+                    return storageUsage;
+                }
+            );
+    }
+
+    @Scheduled(fixedDelayString = "${wii.quota.flush_interval:PT30S}")
+    @PreDestroy
+    public void flush() {
+        usages.forEach(
+            (login, usage) -> {
+                long bytes;
+                long files;
+                synchronized (usage) {
+                    bytes = usage.pendingBytes.getAndSet(0);
+                    files = usage.pendingFiles.getAndSet(0);
+                }
+                if (bytes == 0 && files == 0) {
+                    return;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(
+                        status -> {
+                            if (storageUsageRepository.addUsage(login, bytes, files) == 0) {
+                                storageUsageRepository.save(new StorageUsage().login(login).bytes(bytes).files(files));
+                            }
+                        }
+                    );
+                } catch (RuntimeException e) {
+                    log.warn("Could not save storage usage of {}, will retry : {}", login, e.getMessage());
+                    usage.pendingBytes.addAndGet(bytes);
+                    usage.pendingFiles.addAndGet(files);
+                }
+            }
+        );
+        reload();
+    }
+
+    /**
+     * Set the counters to the stored usage plus the changes of this instance that are not stored yet.
+     */
+    private void reload() {
+        if (usages.isEmpty()) {
+            return;
+        }
+        Map<String, StorageUsage> stored;
+        try {
+            stored =
+                storageUsageRepository.findAllById(usages.keySet()).stream().collect(Collectors.toMap(StorageUsage::getLogin, u -> u));
+        } catch (RuntimeException e) {
+            log.warn("Could not reload storage usage : {}", e.getMessage());
+            return;
+        }
+        usages.forEach(
+            (login, usage) -> {
+                StorageUsage row = stored.get(login);
+                synchronized (usage) {
+                    usage.bytes.set((row != null ? row.getBytes() : 0) + usage.pendingBytes.get());
+                    usage.files.set((row != null ? row.getFiles() : 0) + usage.pendingFiles.get());
+                }
+            }
+        );
+    }
+
+    private Usage usage(String login) {
+        return usages.computeIfAbsent(
+            login,
+            key ->
+                storageUsageRepository
+                    .findById(key)
+                    .map(stored -> new Usage(stored.getBytes(), stored.getFiles()))
+                    .orElseGet(() -> new Usage(0, 0))
+        );
+    }
+
+    private static final class Usage {
+
+        private final AtomicLong bytes;
+        private final AtomicLong files;
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicLong pendingFiles = new AtomicLong();
+
+        Usage(long bytes, long files) {
+            this.bytes = new AtomicLong(bytes);
+            this.files = new AtomicLong(files);
+        }
+    }
+}
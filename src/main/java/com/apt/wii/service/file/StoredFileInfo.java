@@ -0,0 +1,43 @@
+package com.apt.wii.service.file;
+
+import java.nio.file.Path;
+
+/**
+ * Location, size and checksum of a file written by {@link StreamingFileWriter}.
+ */
+public class StoredFileInfo {
+
+    private final Path path;
+
+    private final long size;
+
+    private final String checksum;
+
+    public StoredFileInfo(Path path, long size, String checksum) {
+        this.path = path;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StoredFileInfo{" +
+            "path=" + getPath() +
+            ", size=" + getSize() +
+            ", checksum='" + getChecksum() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,212 @@
+package com.apt.wii.service.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies an upload stream to disk through NIO channels using a fixed-size buffer.
+ * <p>
+ * The size and SHA-256 checksum are computed while the bytes pass through, and the copy is aborted as soon as
+ * the configured limit is exceeded. Data is written to a {@code .part} file which is moved into place only once
+ * the stream has been fully consumed, so a failed upload never leaves a truncated file under its final name. Only
+ * {@link #replace(InputStream, Path, boolean)} replaces an existing file.
+ */
+public final class StreamingFileWriter {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    public static final String CHECKSUM_ALGORITHM = "SHA-256";
+
+    private static final String PART_SUFFIX = ".part";
+
+    private StreamingFileWriter() {}
+
+    /**
+     * Stream {@code in} to {@code target}.
+     *
+     * @param in the source stream, closed by this method.
+     * @param target the final location of the file.
+     * @param maxSize the maximum number of bytes accepted, or a negative value for no limit.
+     * @return the size and checksum of the written file.
+     * @throws FileSizeLimitExceededException if the stream is larger than {@code maxSize}.
+     * @throws java.nio.file.FileAlreadyExistsException if {@code target} or its {@code .part} file already exists.
+     * @throws IOException if the stream cannot be read or the file cannot be written.
+     */
+    public static StoredFileInfo write(InputStream in, Path target, long maxSize) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(in)) {
+            return writeThroughPart(
+                target,
+                false,
+                destination -> {
+                    MessageDigest digest = newDigest();
+                    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                    long size = 0;
+                    while (source.read(buffer) != -1) {
+                        buffer.flip();
+                        size += buffer.remaining();
+                        if (maxSize >= 0 && size > maxSize) {
+                            throw new FileSizeLimitExceededException(maxSize);
+                        }
+                        digest.update(buffer.array(), buffer.position(), buffer.remaining());
+                        while (buffer.hasRemaining()) {
+                            destination.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                    return new StoredFileInfo(target, size, toHex(digest.digest()));
+                }
+            );
+        }
+    }
+
+    /**
+     * Copy {@code in} to {@code target} the same way as {@link #write(InputStream, Path, long)}, but replacing the file
+     * already stored there, if any.
+     *
+     * @param in the source stream, left open.
+     * @param target the final location of the file.
+     * @param gzip whether to gzip-compress the content on the way.
+     * @throws IOException if the stream cannot be read or the file cannot be written.
+     */
+    public static void replace(InputStream in, Path target, boolean gzip) throws IOException {
+        writeThroughPart(
+            target,
+            true,
+            destination -> {
+                OutputStream out = Channels.newOutputStream(destination);
+                if (gzip) {
+                    GZIPOutputStream gzipOut = new GZIPOutputStream(out, BUFFER_SIZE);
+                    in.transferTo(gzipOut);
+                    gzipOut.finish();
+                } else {
+                    in.transferTo(out);
+                }
+                return null;
+            }
+        );
+    }
+
+    /**
+     * Write {@code in} into {@code target} starting at {@code position}, truncating anything stored after it.
+     *
+     * @param in the source stream, closed by this method.
+     * @param target the file to write to, created if missing.
+     * @param position the offset at which to start writing.
+     * @param maxBytes the maximum number of bytes accepted from {@code in}.
+     * @return the number of bytes written.
+     * @throws FileSizeLimitExceededException if the stream holds more than {@code maxBytes}.
+     * @throws IOException if the stream cannot be read or the file cannot be written.
+     */
+    public static long writeAt(InputStream in, Path target, long position, long maxBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long written = 0;
+        try (
+            ReadableByteChannel source = Channels.newChannel(in);
+            FileChannel destination = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+        ) {
+            destination.truncate(position);
+            destination.position(position);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                written += buffer.remaining();
+                if (written > maxBytes) {
+                    destination.truncate(position);
+                    throw new FileSizeLimitExceededException(maxBytes);
+                }
+                while (buffer.hasRemaining()) {
+                    destination.write(buffer);
+                }
+                buffer.clear();
+            }
+            destination.force(false);
+        }
+        return written;
+    }
+
+    /**
+     * Compute the size and checksum of an existing file, reading it in fixed-size chunks.
+     *
+     * @param file the file to read.
+     * @return the size and checksum of {@code file}.
+     * @throws IOException if the file cannot be read.
+     */
+    public static StoredFileInfo describe(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long size = 0;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                digest.update(buffer.array(), 0, read);
+                size += read;
+                buffer.clear();
+            }
+        }
+        return new StoredFileInfo(file, size, toHex(digest.digest()));
+    }
+
+    /**
+     * Run {@code writer} on the {@code .part} file of {@code target}, then sync it and move it into place.
+     * <p>
+     * The {@code .part} file is deleted if anything fails. When {@code replace} is set, a {@code .part} file left over
+     * from an interrupted copy and the existing {@code target} are both replaced.
+     */
+    private static <T> T writeThroughPart(Path target, boolean replace, PartWriter<T> writer) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        if (replace) {
+            Files.deleteIfExists(part);
+        }
+        T result;
+        try (FileChannel destination = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            result = writer.write(destination);
+            destination.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        try {
+            if (replace) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.move(part, target);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface PartWriter<T> {
+        T write(FileChannel destination) throws IOException;
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(CHECKSUM_ALGORITHM + " is not available", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.apt.wii.service.file;
+
+/**
+ * A fixed set of monitors shared by hash, to serialize work on the same key within this instance without keeping a
+ * monitor per key. Unrelated keys may share a monitor, so work done while holding one should stay short.
+ */
+public final class StripedLocks {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final Object[] locks;
+
+    public StripedLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedLocks(int stripes) {
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return the monitor to synchronize on for {@code key}.
+     */
+    public Object lockFor(Object key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,61 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.UploadSessionDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Service Interface for resumable, chunked uploads.
+ */
+public interface UploadSessionService {
+    /**
+     * Open an upload session.
+     *
+     * @param fileName the name of the file being uploaded.
+     * @param expectedSize the total size of the file in bytes.
+     * @return the new session.
+     */
+    UploadSessionDTO create(String fileName, long expectedSize);
+
+    /**
+     * Get the "id" upload session.
+     *
+     * @param id the id of the session.
+     * @return the session, with the number of bytes received so far, or empty if there is no such session of the current
+     * user.
+     */
+    Optional<UploadSessionDTO> findOne(Long id);
+
+    /**
+     * Write a chunk of the file at {@code offset}.
+     * <p>
+     * The offset may not be past the bytes already received; resending from an earlier offset overwrites what was
+     * stored from there on.
+     *
+     * @param id the id of the session.
+     * @param offset the position of the first byte of the chunk in the file.
+     * @param in the chunk content.
+     * @return the updated session, or empty if there is no such session of the current user.
+     * @throws UploadSessionStateException if {@code offset} is past the received bytes, or every byte was already received.
+     * @throws FileSizeLimitExceededException if the chunk goes beyond the expected size.
+     * @throws IOException if the chunk cannot be read or stored.
+     */
+    Optional<UploadSessionDTO> appendChunk(Long id, long offset, InputStream in) throws IOException;
+
+    /**
+     * Move the assembled file into storage and close the session.
+     *
+     * @param id the id of the session.
+     * @return the stored file, or empty if there is no such session of the current user.
+     * @throws UploadSessionStateException if not all bytes were received, or the session is already being completed.
+     * @throws IOException if the file cannot be stored.
+     */
+    Optional<FileDetailsDTO> complete(Long id) throws IOException;
+
+    /**
+     * Delete expired sessions along with their staged data.
+     */
+    void removeExpiredSessions();
+}
@@ -0,0 +1,23 @@
+package com.apt.wii.service.file;
+
+import com.apt.wii.service.dto.UploadSessionDTO;
+
+/**
+ * Thrown when a request does not match the current state of an upload session, e.g. a chunk that does not start
+ * where the previous one ended, or completing a session before all bytes were received.
+ */
+public class UploadSessionStateException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final UploadSessionDTO session;
+
+    public UploadSessionStateException(String message, UploadSessionDTO session) {
+        super(message);
+        this.session = session;
+    }
+
+    public UploadSessionDTO getSession() {
+        return session;
+    }
+}
@@ -0,0 +1,101 @@
+package com.apt.wii.service.file;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Limits the rate at which each user's uploads are read, so one user bulk-uploading cannot take all the disk bandwidth.
+ * <p>
+ * Each user has a token bucket of {@code burst} bytes refilled at {@code bytes_per_second}, kept as a single
+ * {@link AtomicLong} holding the time at which the bucket will be full again (the generic cell rate algorithm). Taking
+ * tokens is one compare-and-set, and the buckets live in a {@link ConcurrentHashMap}, so concurrent uploads never block
+ * on each other; an upload that runs out of tokens sleeps until it is back within its budget. All uploads of a user,
+ * including parallel ones, share one bucket.
+ */
+@Service
+public class UploadThrottle {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final long bytesPerSecond;
+
+    private final long burstNanos;
+
+    public UploadThrottle(
+        @Value("${wii.upload.throttle.bytes_per_second:0}") DataSize bytesPerSecond,
+        @Value("${wii.upload.throttle.burst:4MB}") DataSize burst
+    ) {
+        this.bytesPerSecond = bytesPerSecond.toBytes();
+        this.burstNanos = this.bytesPerSecond > 0 ? nanosFor(burst.toBytes()) : 0;
+    }
+
+    /**
+     * @return {@code in}, reading no faster than the upload budget of {@code login} allows.
+     */
+    public InputStream throttle(InputStream in, String login) {
+        if (bytesPerSecond <= 0 || login == null) {
+            return in;
+        }
+        return new ThrottledInputStream(in, buckets.computeIfAbsent(login, key -> new AtomicLong(System.nanoTime())));
+    }
+
+    private void acquire(AtomicLong bucket, long bytes) throws InterruptedIOException {
+        long cost = nanosFor(bytes);
+        long now = System.nanoTime();
+        long previous;
+        long next;
+        do {
+            previous = bucket.get();
+            next = Math.max(previous, now) + cost;
+        } while (!bucket.compareAndSet(previous, next));
+        long waitNanos = next - now - burstNanos;
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling an upload");
+            }
+        }
+    }
+
+    private long nanosFor(long bytes) {
+        return (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+    }
+
+    private final class ThrottledInputStream extends FilterInputStream {
+
+        private final AtomicLong bucket;
+
+        ThrottledInputStream(InputStream in, AtomicLong bucket) {
+            super(in);
+            this.bucket = bucket;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                acquire(bucket, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                acquire(bucket, read);
+            }
+            return read;
+        }
+    }
+}
@@ -1,83 +1,521 @@
 package com.apt.wii.service.file.impl;
 
+import com.apt.wii.config.UploadPipelineConfiguration;
+import com.apt.wii.domain.FileBlob;
+import com.apt.wii.repository.FileDetailsRepository;
+import com.apt.wii.security.SecurityUtils;
 import com.apt.wii.service.FileDetailsService;
 import com.apt.wii.service.FileMetaDataService;
 import com.apt.wii.service.dto.FileDetailsDTO;
 import com.apt.wii.service.dto.FileMetaDataDTO;
+import com.apt.wii.service.dto.FileUploadResultDTO;
+import com.apt.wii.service.file.EncodedFileResource;
+import com.apt.wii.service.file.FileBlobService;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileLocationResolver;
+import com.apt.wii.service.file.FileMetaDataKeys;
 import com.apt.wii.service.file.FileService;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import com.apt.wii.service.file.FileSizeLimitExceededException;
+import com.apt.wii.service.file.FileStoreLayout;
+import com.apt.wii.service.file.GzipFileResource;
+import com.apt.wii.service.file.HotFileCache;
+import com.apt.wii.service.file.StorageQuotaExceededException;
+import com.apt.wii.service.file.StorageUsageService;
+import com.apt.wii.service.file.StoredFileInfo;
+import com.apt.wii.service.file.StreamingFileWriter;
+import com.apt.wii.service.file.UploadThrottle;
+import com.apt.wii.service.file.pipeline.UploadPipeline;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class FileSystemServiceImpl implements FileService {
 
+    public static final String DESTINATION_FILE_SYSTEM = "FILE_SYSTEM";
+
+    public static final String DESTINATION_CONTENT_STORE = "CONTENT_STORE";
+
     private final Logger log = LoggerFactory.getLogger(FileSystemServiceImpl.class);
 
-    @Value("${wii.folder_path}")
-    private String folderPath;
+    @Value("${wii.upload.max_size:100MB}")
+    private DataSize maxUploadSize;
+
+    @Value("${wii.storage.deduplicate:false}")
+    private boolean deduplicate;
 
     private final FileDetailsService fileDetailsService;
 
+    private final FileDetailsRepository fileDetailsRepository;
+
     private final FileMetaDataService fileMetaDataService;
 
-    public FileSystemServiceImpl(FileDetailsService fileDetailsService, FileMetaDataService fileMetaDataService) {
+    private final FileBlobService fileBlobService;
+
+    private final FileLocationResolver fileLocationResolver;
+
+    private final HotFileCache hotFileCache;
+
+    private final FileStoreLayout fileStoreLayout;
+
+    private final UploadPipeline uploadPipeline;
+
+    private final Executor uploadIoExecutor;
+
+    private final UploadThrottle uploadThrottle;
+
+    private final StorageUsageService storageUsageService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public FileSystemServiceImpl(
+        FileDetailsService fileDetailsService,
+        FileDetailsRepository fileDetailsRepository,
+        FileMetaDataService fileMetaDataService,
+        FileBlobService fileBlobService,
+        FileLocationResolver fileLocationResolver,
+        HotFileCache hotFileCache,
+        FileStoreLayout fileStoreLayout,
+        UploadPipeline uploadPipeline,
+        @Qualifier(UploadPipelineConfiguration.UPLOAD_IO_EXECUTOR) Executor uploadIoExecutor,
+        UploadThrottle uploadThrottle,
+        StorageUsageService storageUsageService,
+        PlatformTransactionManager transactionManager
+    ) {
         this.fileDetailsService = fileDetailsService;
+        this.fileDetailsRepository = fileDetailsRepository;
         this.fileMetaDataService = fileMetaDataService;
+        this.fileBlobService = fileBlobService;
+        this.fileLocationResolver = fileLocationResolver;
+        this.hotFileCache = hotFileCache;
+        this.fileStoreLayout = fileStoreLayout;
+        this.uploadPipeline = uploadPipeline;
+        this.uploadIoExecutor = uploadIoExecutor;
+        this.uploadThrottle = uploadThrottle;
+        this.storageUsageService = storageUsageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public FileDetailsDTO uploadFile(MultipartFile file) throws IOException {
+        StoredUpload stored = store(file, SecurityUtils.getCurrentUserLogin().orElse(null));
+        FileDetailsDTO fileDetails = recordOrDiscard(stored);
+        account(stored);
+        uploadPipeline.submit(fileDetails.getId());
+        return fileDetails;
     }
 
     @Override
-    public FileDetailsDTO uploadFile(MultipartFile file) {
+    public List<FileUploadResultDTO> uploadFiles(List<MultipartFile> files) {
+        // the I/O threads have no security context
+        String login = SecurityUtils.getCurrentUserLogin().orElse(null);
+        List<CompletableFuture<StoredUpload>> writes = files
+            .stream()
+            .map(file -> CompletableFuture.supplyAsync(() -> storeUnchecked(file, login), uploadIoExecutor))
+            .collect(Collectors.toList());
+        List<FileUploadResultDTO> results = new ArrayList<>(files.size());
+        List<FileUploadResultDTO> storedResults = new ArrayList<>(files.size());
+        List<StoredUpload> stored = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FileUploadResultDTO result = new FileUploadResultDTO();
+            result.setFileName(files.get(i).getOriginalFilename());
+            try {
+                stored.add(writes.get(i).join());
+                storedResults.add(result);
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                log.error("Exception while uploading file {} : {}", result.getFileName(), cause.getMessage());
+                result.setError(isRejection(cause) ? cause.getMessage() : "Could not store file");
+            }
+            results.add(result);
+        }
+        if (stored.isEmpty()) {
+            return results;
+        }
+        List<FileDetailsDTO> saved;
         try {
-            byte[] bytes = file.getBytes();
-            String postfix = "_" + new SimpleDateFormat("yyyyMMddHHmm").format(new Date());
-            String filename = file.getOriginalFilename();
-            filename = filename.substring(0, filename.lastIndexOf(".")) + postfix + filename.substring(filename.lastIndexOf("."));
-            try (FileOutputStream fos = new FileOutputStream(folderPath + filename)) {
-                fos.write(bytes);
+            // one transaction for every row; the inserts are sent as JDBC batches when it commits
+            saved = transactionTemplate.execute(status -> stored.stream().map(this::record).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            log.error("Exception while saving {} uploaded files : {}", stored.size(), e.getMessage());
+            stored.forEach(this::discard);
+            storedResults.forEach(result -> result.setError("Could not save file details"));
+            return results;
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            storedResults.get(i).setFileDetails(saved.get(i));
+            account(stored.get(i));
+            uploadPipeline.submit(saved.get(i).getId());
+        }
+        return results;
+    }
+
+    private static boolean isRejection(Throwable e) {
+        return e instanceof FileSizeLimitExceededException || e instanceof StorageQuotaExceededException;
+    }
+
+    private StoredUpload storeUnchecked(MultipartFile file, String login) {
+        try {
+            return store(file, login);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write an upload to storage, without touching the database except for content-addressed blobs.
+     */
+    private StoredUpload store(MultipartFile file, String login) throws IOException {
+        storageUsageService.checkQuota(login, file.getSize());
+        FileDetailsDTO fileDetails = newFileDetails(file);
+        if (deduplicate) {
+            FileBlob blob;
+            try (InputStream in = uploadThrottle.throttle(file.getInputStream(), login)) {
+                blob = fileBlobService.store(in, extensionOf(file.getOriginalFilename()), maxUploadSize.toBytes());
             }
-            FileDetailsDTO data = new FileDetailsDTO();
-            data.setSourceName(file.getOriginalFilename());
-            data.setDestination("FILE_SYSTEM");
-            data.setDestinationName(filename);
-            data = fileDetailsService.save(data);
-            FileMetaDataDTO metadata = new FileMetaDataDTO();
-            metadata.setKey("filePath");
-            metadata.setValue(folderPath + filename);
-            metadata.setFileDetails(data);
-            metadata = fileMetaDataService.save(metadata);
-            return data;
-        } catch (Exception e) {
-            e.printStackTrace();
-            log.error("Exception while uploading file {}", e.getMessage());
+            log.debug("Stored upload in {}", blob);
+            return StoredUpload.blob(fileDetails, blob, login);
         }
-        return null;
+        String filename = uniqueName(file.getOriginalFilename());
+        Path target = fileStoreLayout.pathFor(filename);
+        Files.createDirectories(target.getParent());
+        StoredFileInfo stored;
+        try (InputStream in = uploadThrottle.throttle(file.getInputStream(), login)) {
+            stored = StreamingFileWriter.write(in, target, maxUploadSize.toBytes());
+        }
+        log.debug("Stored upload {}", stored);
+        return StoredUpload.file(fileDetails, filename, stored, login);
     }
 
     @Override
-    public InputStreamResource downloadFile(Long fileDetailsId) {
-        List<FileMetaDataDTO> fileMetaDataDTOList = fileMetaDataService.findByFileDetail(fileDetailsId);
-        String filePath = null;
-        for (FileMetaDataDTO fileMetaDataDTO : fileMetaDataDTOList) {
-            if (fileMetaDataDTO.getKey().equalsIgnoreCase("filePath")) {
-                filePath = fileMetaDataDTO.getValue();
-                break;
+    public FileDetailsDTO storeStagedFile(FileDetailsDTO fileDetails, Path stagedFile, String uploader) throws IOException {
+        StoredUpload stored = moveStagedFile(fileDetails, stagedFile, uploader);
+        FileDetailsDTO saved = recordOrDiscard(stored);
+        account(stored);
+        uploadPipeline.submit(saved.getId());
+        return saved;
+    }
+
+    private StoredUpload moveStagedFile(FileDetailsDTO fileDetails, Path stagedFile, String login) throws IOException {
+        StoredFileInfo staged = StreamingFileWriter.describe(stagedFile);
+        storageUsageService.checkQuota(login, staged.getSize());
+        if (deduplicate) {
+            return StoredUpload.blob(fileDetails, fileBlobService.store(staged, extensionOf(fileDetails.getSourceName())), login);
+        }
+        String filename = uniqueName(fileDetails.getSourceName());
+        Path target = fileStoreLayout.pathFor(filename);
+        Files.createDirectories(target.getParent());
+        Files.move(stagedFile, target);
+        return StoredUpload.file(fileDetails, filename, new StoredFileInfo(target, staged.getSize(), staged.getChecksum()), login);
+    }
+
+    private FileDetailsDTO newFileDetails(MultipartFile file) {
+        FileDetailsDTO data = new FileDetailsDTO();
+        data.setSourceName(file.getOriginalFilename());
+        return data;
+    }
+
+    /**
+     * Save the rows of a stored upload in their own transaction, removing the upload from storage if that fails.
+     */
+    private FileDetailsDTO recordOrDiscard(StoredUpload stored) {
+        try {
+            return transactionTemplate.execute(status -> record(stored));
+        } catch (RuntimeException e) {
+            discard(stored);
+            throw e;
+        }
+    }
+
+    /**
+     * Save the fileDetails and metadata rows of a stored upload.
+     */
+    private FileDetailsDTO record(StoredUpload stored) {
+        FileDetailsDTO data = stored.fileDetails;
+        data.setDestination(stored.destination);
+        data.setDestinationName(stored.destinationName);
+        data = fileDetailsService.save(data);
+        saveMetaData(data, FileMetaDataKeys.FILE_PATH, stored.path);
+        saveMetaData(data, FileMetaDataKeys.FILE_SIZE, String.valueOf(stored.size));
+        saveMetaData(data, FileMetaDataKeys.CHECKSUM, stored.checksum);
+        if (stored.uploader != null) {
+            saveMetaData(data, FileMetaDataKeys.UPLOADED_BY, stored.uploader);
+        }
+        return data;
+    }
+
+    private void account(StoredUpload stored) {
+        storageUsageService.add(stored.uploader, stored.size, 1);
+    }
+
+    private void discard(StoredUpload stored) {
+        try {
+            if (DESTINATION_CONTENT_STORE.equals(stored.destination)) {
+                fileBlobService.release(stored.destinationName);
+            } else {
+                Files.deleteIfExists(Paths.get(stored.path));
             }
+        } catch (IOException e) {
+            log.warn("Could not remove unsaved upload {} : {}", stored.path, e.getMessage());
+        }
+    }
+
+    /**
+     * Name a stored file after the uploaded one, with a random suffix so that uploads of the same name never share a file.
+     * The uploaded name itself is kept as the {@code sourceName} of the fileDetails.
+     */
+    private String uniqueName(String filename) {
+        String name = filename != null ? Paths.get(filename).getFileName().toString() : "";
+        String extension = extensionOf(name);
+        return name.substring(0, name.length() - extension.length()) + "_" + UUID.randomUUID() + extension;
+    }
+
+    private String extensionOf(String filename) {
+        return filename != null && filename.lastIndexOf(".") >= 0 ? filename.substring(filename.lastIndexOf(".")) : "";
+    }
+
+    @Override
+    public Optional<FileLocation> findLocation(Long fileDetailsId) {
+        return fileLocationResolver.resolve(fileDetailsId);
+    }
+
+    @Override
+    public Optional<FileLocation> findReadableLocation(Long fileDetailsId) {
+        return fileLocationResolver.resolve(fileDetailsId);
+    }
+
+    @Override
+    public Resource downloadFile(Long fileDetailsId, boolean encoded) {
+        Optional<FileLocation> location = fileLocationResolver.resolve(fileDetailsId);
+        if (location.isEmpty()) {
+            return null;
+        }
+        String filePath = location.get().getPath();
+        Resource resource = new FileSystemResource(filePath);
+        if (!resource.isReadable()) {
+            log.error("Stored file {} of fileDetails {} is not readable", filePath, fileDetailsId);
+            fileLocationResolver.evict(fileDetailsId);
+            hotFileCache.evict(fileDetailsId);
+            return null;
+        }
+        if (location.get().getContentEncoding() != null) {
+            return encodedResource(location.get(), encoded);
         }
         try {
-            InputStreamResource resource = new InputStreamResource(new FileInputStream(filePath));
-            return resource;
-        } catch (Exception e) {
-            log.error("Exception while downloading exception {}", e.getMessage());
+            Optional<? extends Resource> cached = hotFileCache.get(location.get(), resource.contentLength());
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Serving {} from disk, it could not be cached : {}", filePath, e.getMessage());
+        }
+        return resource;
+    }
+
+    @Override
+    public Resource downloadDerivative(Long fileDetailsId, int width) {
+        return generatedResource(fileDetailsId, location -> location.getDerivatives().get(width));
+    }
+
+    @Override
+    public Resource downloadPreview(Long fileDetailsId) {
+        return generatedResource(fileDetailsId, FileLocation::getPreviewPath);
+    }
+
+    private Resource generatedResource(Long fileDetailsId, Function<FileLocation, String> pathOf) {
+        Optional<String> path = fileLocationResolver.resolve(fileDetailsId).map(pathOf);
+        if (path.isEmpty()) {
+            return null;
+        }
+        Resource resource = new FileSystemResource(path.get());
+        if (!resource.isReadable()) {
+            log.error("Generated file {} of fileDetails {} is not readable", path.get(), fileDetailsId);
+            fileLocationResolver.evict(fileDetailsId);
+            return null;
+        }
+        return resource;
+    }
+
+    private Resource encodedResource(FileLocation location, boolean encoded) {
+        Path file = Paths.get(location.getPath());
+        if (encoded) {
+            return new EncodedFileResource(file, location.getFilename());
+        }
+        return new GzipFileResource(file, location.getFilename(), location.getSize(), location.getLastModified());
+    }
+
+    @Override
+    public boolean deleteFile(Long fileDetailsId) {
+        Optional<DeletedFile> deleted = transactionTemplate.execute(status -> deleteRows(fileDetailsId));
+        if (deleted == null || deleted.isEmpty()) {
+            return false;
+        }
+        FileDetailsDTO fileDetails = deleted.get().fileDetails;
+        List<FileMetaDataDTO> fileMetaDataDTOList = deleted.get().metaData;
+        String filePath = findFilePath(fileMetaDataDTOList);
+        Map<String, String> values = fileMetaDataDTOList
+            .stream()
+            .collect(Collectors.toMap(FileMetaDataDTO::getKey, FileMetaDataDTO::getValue, (first, second) -> first));
+        List<String> generatedPaths = fileMetaDataDTOList
+            .stream()
+            .filter(fileMetaDataDTO -> isGeneratedFile(fileMetaDataDTO.getKey()))
+            .map(FileMetaDataDTO::getValue)
+            .collect(Collectors.toList());
+        hotFileCache.evict(fileDetailsId);
+        if (values.containsKey(FileMetaDataKeys.UPLOADED_BY) && values.containsKey(FileMetaDataKeys.FILE_SIZE)) {
+            storageUsageService.add(values.get(FileMetaDataKeys.UPLOADED_BY), -Long.parseLong(values.get(FileMetaDataKeys.FILE_SIZE)), -1);
+        }
+        try {
+            boolean unreferenced = true;
+            if (DESTINATION_CONTENT_STORE.equals(fileDetails.getDestination())) {
+                // files generated from a shared blob are shared too
+                unreferenced = fileBlobService.release(fileDetails.getDestinationName());
+            } else if (filePath != null) {
+                Files.deleteIfExists(Paths.get(filePath));
+            }
+            if (unreferenced) {
+                for (String generatedPath : generatedPaths) {
+                    Files.deleteIfExists(Paths.get(generatedPath));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Exception while deleting stored file of fileDetails {} : {}", fileDetailsId, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Delete the metadata and fileDetails rows of a stored file in the current transaction. The fileDetails row is locked
+     * first, so a pipeline stage cannot add metadata to it until the deletion commits.
+     *
+     * @return the deleted rows, or empty if there is no such fileDetails.
+     */
+    private Optional<DeletedFile> deleteRows(Long fileDetailsId) {
+        if (fileDetailsRepository.findOneForUpdate(fileDetailsId).isEmpty()) {
+            return Optional.empty();
+        }
+        FileDetailsDTO fileDetails = fileDetailsService.findOne(fileDetailsId).orElseThrow();
+        List<FileMetaDataDTO> fileMetaDataDTOList = fileMetaDataService.findByFileDetail(fileDetailsId);
+        fileMetaDataDTOList.forEach(fileMetaDataDTO -> fileMetaDataService.delete(fileMetaDataDTO.getId()));
+        fileDetailsService.delete(fileDetailsId);
+        return Optional.of(new DeletedFile(fileDetails, fileMetaDataDTOList));
+    }
+
+    private boolean isGeneratedFile(String key) {
+        return key.startsWith(FileMetaDataKeys.DERIVATIVE_PREFIX) || key.equals(FileMetaDataKeys.PREVIEW_PATH);
+    }
+
+    private String findFilePath(List<FileMetaDataDTO> fileMetaDataDTOList) {
+        if (fileMetaDataDTOList == null) {
+            return null;
+        }
+        for (FileMetaDataDTO fileMetaDataDTO : fileMetaDataDTOList) {
+            if (fileMetaDataDTO.getKey().equalsIgnoreCase(FileMetaDataKeys.FILE_PATH)) {
+                return fileMetaDataDTO.getValue();
+            }
         }
         return null;
     }
+
+    private FileMetaDataDTO saveMetaData(FileDetailsDTO fileDetails, String key, String value) {
+        FileMetaDataDTO metadata = new FileMetaDataDTO();
+        metadata.setKey(key);
+        metadata.setValue(value);
+        metadata.setFileDetails(fileDetails);
+        return fileMetaDataService.save(metadata);
+    }
+
+    /**
+     * The rows of a deleted file, whose stored bytes are removed once the deletion has committed.
+     */
+    private static final class DeletedFile {
+
+        private final FileDetailsDTO fileDetails;
+        private final List<FileMetaDataDTO> metaData;
+
+        DeletedFile(FileDetailsDTO fileDetails, List<FileMetaDataDTO> metaData) {
+            this.fileDetails = fileDetails;
+            this.metaData = metaData;
+        }
+    }
+
+    /**
+     * An upload written to storage whose rows are not saved yet.
+     */
+    private static final class StoredUpload {
+
+        private final FileDetailsDTO fileDetails;
+        private final String destination;
+        private final String destinationName;
+        private final String path;
+        private final long size;
+        private final String checksum;
+        private final String uploader;
+
+        StoredUpload(
+            FileDetailsDTO fileDetails,
+            String destination,
+            String destinationName,
+            String path,
+            long size,
+            String checksum,
+            String uploader
+        ) {
+            this.fileDetails = fileDetails;
+            this.destination = destination;
+            this.destinationName = destinationName;
+            this.path = path;
+            this.size = size;
+            this.checksum = checksum;
+            this.uploader = uploader;
+        }
+
+        static StoredUpload file(FileDetailsDTO fileDetails, String filename, StoredFileInfo stored, String uploader) {
+            return new StoredUpload(
+                fileDetails,
+                DESTINATION_FILE_SYSTEM,
+                filename,
+                stored.getPath().toString(),
+                stored.getSize(),
+                stored.getChecksum(),
+                uploader
+            );
+        }
+
+        static StoredUpload blob(FileDetailsDTO fileDetails, FileBlob blob, String uploader) {
+            return new StoredUpload(
+                fileDetails,
+                DESTINATION_CONTENT_STORE,
+                blob.getDigest(),
+                blob.getPath(),
+                blob.getSize(),
+                blob.getDigest(),
+                uploader
+            );
+        }
+    }
 }
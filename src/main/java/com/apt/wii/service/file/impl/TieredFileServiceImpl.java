@@ -0,0 +1,117 @@
+package com.apt.wii.service.file.impl;
+
+import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.FileUploadResultDTO;
+import com.apt.wii.service.file.FileAccessTracker;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileService;
+import com.apt.wii.service.file.FileTierManager;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * {@link FileService} over two storage tiers: new files are written by {@link FileSystemServiceImpl} to the hot tier,
+ * and {@link FileTierManager} later moves the ones nobody reads to the cold tier.
+ * <p>
+ * Downloads, of the file or of its resized copies and preview, are recorded with {@link FileAccessTracker}, and a
+ * download of a cold file first promotes it back to the hot tier, so callers never see where a file currently lives.
+ */
+@Service
+@Primary
+public class TieredFileServiceImpl implements FileService {
+
+    private final Logger log = LoggerFactory.getLogger(TieredFileServiceImpl.class);
+
+    private final FileService fileSystemService;
+
+    private final FileTierManager fileTierManager;
+
+    private final FileAccessTracker fileAccessTracker;
+
+    public TieredFileServiceImpl(
+        @Qualifier("fileSystemServiceImpl") FileService fileSystemService,
+        FileTierManager fileTierManager,
+        FileAccessTracker fileAccessTracker
+    ) {
+        this.fileSystemService = fileSystemService;
+        this.fileTierManager = fileTierManager;
+        this.fileAccessTracker = fileAccessTracker;
+    }
+
+    @Override
+    public FileDetailsDTO uploadFile(MultipartFile file) throws IOException {
+        return fileSystemService.uploadFile(file);
+    }
+
+    @Override
+    public List<FileUploadResultDTO> uploadFiles(List<MultipartFile> files) {
+        return fileSystemService.uploadFiles(files);
+    }
+
+    @Override
+    public FileDetailsDTO storeStagedFile(FileDetailsDTO fileDetails, Path stagedFile, String uploader) throws IOException {
+        return fileSystemService.storeStagedFile(fileDetails, stagedFile, uploader);
+    }
+
+    @Override
+    public Optional<FileLocation> findLocation(Long fileDetailsId) {
+        return fileSystemService.findLocation(fileDetailsId);
+    }
+
+    @Override
+    public Optional<FileLocation> findReadableLocation(Long fileDetailsId) throws IOException {
+        fileAccessTracker.recordAccess(fileDetailsId);
+        return fileTierManager.promote(fileDetailsId);
+    }
+
+    @Override
+    public Resource downloadFile(Long fileDetailsId, boolean encoded) {
+        try {
+            if (findReadableLocation(fileDetailsId).isEmpty()) {
+                return null;
+            }
+        } catch (IOException e) {
+            log.error("Could not bring fileDetails {} back from cold storage : {}", fileDetailsId, e.getMessage());
+            return null;
+        }
+        return fileSystemService.downloadFile(fileDetailsId, encoded);
+    }
+
+    @Override
+    public Resource downloadDerivative(Long fileDetailsId, int width) {
+        // resized copies and previews are read instead of the file, which counts as reading it
+        fileAccessTracker.recordAccess(fileDetailsId);
+        return fileSystemService.downloadDerivative(fileDetailsId, width);
+    }
+
+    @Override
+    public Resource downloadPreview(Long fileDetailsId) {
+        fileAccessTracker.recordAccess(fileDetailsId);
+        return fileSystemService.downloadPreview(fileDetailsId);
+    }
+
+    @Override
+    public boolean deleteFile(Long fileDetailsId) {
+        Optional<FileLocation> location = fileSystemService.findLocation(fileDetailsId);
+        if (!fileSystemService.deleteFile(fileDetailsId)) {
+            return false;
+        }
+        if (location.isPresent()) {
+            try {
+                fileTierManager.deleteColdCopy(location.get());
+            } catch (IOException e) {
+                log.error("Exception while deleting cold copy of fileDetails {} : {}", fileDetailsId, e.getMessage());
+            }
+        }
+        return true;
+    }
+}
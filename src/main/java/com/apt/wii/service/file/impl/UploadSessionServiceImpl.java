@@ -0,0 +1,453 @@
+package com.apt.wii.service.file.impl;
+
+import com.apt.wii.domain.FileDetails;
+import com.apt.wii.repository.FileDetailsRepository;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.security.SecurityUtils;
+import com.apt.wii.service.FileDetailsService;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.FileMetaDataDTO;
+import com.apt.wii.service.dto.UploadSessionDTO;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import com.apt.wii.service.file.FileService;
+import com.apt.wii.service.file.FileSizeLimitExceededException;
+import com.apt.wii.service.file.IoTransactions;
+import com.apt.wii.service.file.StorageUsageService;
+import com.apt.wii.service.file.StreamingFileWriter;
+import com.apt.wii.service.file.StripedLocks;
+import com.apt.wii.service.file.UploadSessionService;
+import com.apt.wii.service.file.UploadSessionStateException;
+import com.apt.wii.service.file.UploadThrottle;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Resumable uploads kept in the {@code file_details}/{@code file_meta_data} tables.
+ * <p>
+ * A session is a {@link FileDetails} with destination {@link #DESTINATION_UPLOAD_SESSION}; its progress is held in
+ * {@code upload*} metadata rows and its bytes in a staging file under {@code <wii.folder_path>/.sessions}. Chunks of
+ * the same session are copied into the staging file one at a time. Each chunk is first received into a file of its own
+ * without holding any lock; the copy then runs with the {@code uploadReceivedBytes} row locked, which also orders
+ * chunks sent to different instances. Only the user who opened a session can see, extend or complete it; to anyone
+ * else it does not exist.
+ */
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    public static final String DESTINATION_UPLOAD_SESSION = "UPLOAD_SESSION";
+
+    private static final String STAGING_DIRECTORY = ".sessions";
+
+    private static final String CHUNK_SUFFIX = ".chunk";
+
+    private static final String COMPLETING_SUFFIX = ".completing";
+
+    private final Logger log = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+
+    private final StripedLocks locks = new StripedLocks();
+
+    @Value("${wii.folder_path}")
+    private String folderPath;
+
+    @Value("${wii.upload.max_size:100MB}")
+    private DataSize maxUploadSize;
+
+    @Value("${wii.upload.session_ttl:24h}")
+    private Duration sessionTtl;
+
+    private final FileDetailsService fileDetailsService;
+
+    private final FileDetailsRepository fileDetailsRepository;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final FileService fileService;
+
+    private final UploadThrottle uploadThrottle;
+
+    private final StorageUsageService storageUsageService;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UploadSessionServiceImpl(
+        FileDetailsService fileDetailsService,
+        FileDetailsRepository fileDetailsRepository,
+        FileMetaDataService fileMetaDataService,
+        FileService fileService,
+        UploadThrottle uploadThrottle,
+        StorageUsageService storageUsageService,
+        FileMetaDataRepository fileMetaDataRepository,
+        PlatformTransactionManager transactionManager
+    ) {
+        this.fileDetailsService = fileDetailsService;
+        this.fileDetailsRepository = fileDetailsRepository;
+        this.fileMetaDataService = fileMetaDataService;
+        this.fileService = fileService;
+        this.uploadThrottle = uploadThrottle;
+        this.storageUsageService = storageUsageService;
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public UploadSessionDTO create(String fileName, long expectedSize) {
+        log.debug("Request to create upload session for {} ({} bytes)", fileName, expectedSize);
+        if (expectedSize > maxUploadSize.toBytes()) {
+            throw new FileSizeLimitExceededException(maxUploadSize.toBytes());
+        }
+        String login = SecurityUtils.getCurrentUserLogin().orElse(null);
+        // checked again when the session completes
+        storageUsageService.checkQuota(login, expectedSize);
+        Instant expiresAt = Instant.now().plus(sessionTtl);
+        FileDetailsDTO fileDetails;
+        try {
+            // all rows commit together, so the sweep never sees a session without its expiry
+            fileDetails = IoTransactions.execute(transactionTemplate, () -> createSession(fileName, expectedSize, expiresAt, login));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        UploadSessionDTO session = new UploadSessionDTO();
+        session.setId(fileDetails.getId());
+        session.setFileName(fileName);
+        session.setExpectedSize(expectedSize);
+        session.setReceivedBytes(0L);
+        session.setExpiresAt(expiresAt);
+        return session;
+    }
+
+    /**
+     * Write the rows and the empty staging file of a new session, in the current transaction. The staging file is
+     * deleted again if the transaction does not commit.
+     */
+    private FileDetailsDTO createSession(String fileName, long expectedSize, Instant expiresAt, String login) throws IOException {
+        FileDetailsDTO fileDetails = new FileDetailsDTO();
+        fileDetails.setSourceName(fileName);
+        fileDetails.setDestination(DESTINATION_UPLOAD_SESSION);
+        fileDetails = fileDetailsService.save(fileDetails);
+        Path staging = Paths.get(folderPath, STAGING_DIRECTORY, fileDetails.getId() + ".part");
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        deleteQuietly(staging);
+                    }
+                }
+            }
+        );
+        // an existing staging file is how complete() tells an unclaimed session from one being completed
+        Files.createDirectories(staging.getParent());
+        Files.createFile(staging);
+        saveMetaData(fileDetails, FileMetaDataKeys.UPLOAD_STAGING_PATH, staging.toString());
+        saveMetaData(fileDetails, FileMetaDataKeys.UPLOAD_EXPECTED_SIZE, String.valueOf(expectedSize));
+        saveMetaData(fileDetails, FileMetaDataKeys.UPLOAD_RECEIVED_BYTES, "0");
+        saveMetaData(fileDetails, FileMetaDataKeys.UPLOAD_EXPIRES_AT, String.valueOf(expiresAt.toEpochMilli()));
+        if (login != null) {
+            saveMetaData(fileDetails, FileMetaDataKeys.UPLOAD_OWNER, login);
+        }
+        return fileDetails;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete staging file {} of a session that was not created : {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<UploadSessionDTO> findOne(Long id) {
+        log.debug("Request to get upload session : {}", id);
+        return findSessionDetails(id).flatMap(fileDetails -> ownSessionMetaData(id).map(metaData -> toDto(fileDetails, metaData)));
+    }
+
+    @Override
+    public Optional<UploadSessionDTO> appendChunk(Long id, long offset, InputStream in) throws IOException {
+        log.debug("Request to write chunk at {} of upload session : {}", offset, id);
+        Optional<FileDetailsDTO> fileDetails = findSessionDetails(id);
+        if (fileDetails.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<Map<String, FileMetaDataDTO>> ownMetaData = ownSessionMetaData(id);
+        if (ownMetaData.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, FileMetaDataDTO> metaData = ownMetaData.get();
+        UploadSessionDTO session = toDto(fileDetails.get(), metaData);
+        checkOffset(offset, session);
+        Path staging = Paths.get(metaData.get(FileMetaDataKeys.UPLOAD_STAGING_PATH).getValue());
+        // the body is read before any lock is taken, so a slow client only holds up its own request
+        Path chunk = staging.resolveSibling(staging.getFileName() + "." + UUID.randomUUID() + CHUNK_SUFFIX);
+        try {
+            IOException readFailure = null;
+            try {
+                InputStream throttled = uploadThrottle.throttle(in, metaData.get(FileMetaDataKeys.UPLOAD_OWNER).getValue());
+                StreamingFileWriter.writeAt(throttled, chunk, 0, session.getExpectedSize() - offset);
+            } catch (IOException e) {
+                // keep whatever was received so an interrupted chunk can be resumed from there
+                readFailure = e;
+            }
+            Optional<UploadSessionDTO> appended = append(fileDetails.get(), offset, chunk);
+            if (readFailure != null) {
+                throw readFailure;
+            }
+            return appended;
+        } finally {
+            Files.deleteIfExists(chunk);
+        }
+    }
+
+    /**
+     * Copy a received chunk into the staging file at {@code offset}, with the session locked on this instance and its
+     * {@code uploadReceivedBytes} row locked for update against the other instances.
+     *
+     * @return the updated session, or empty if it was completed or removed since the chunk was read.
+     */
+    private Optional<UploadSessionDTO> append(FileDetailsDTO fileDetails, long offset, Path chunk) throws IOException {
+        Long id = fileDetails.getId();
+        synchronized (locks.lockFor(id)) {
+            return IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    if (!lockSession(id)) {
+                        return Optional.empty();
+                    }
+                    Map<String, FileMetaDataDTO> metaData = sessionMetaData(id);
+                    UploadSessionDTO session = toDto(fileDetails, metaData);
+                    // another chunk may have been stored while this one was read
+                    checkOffset(offset, session);
+                    if (session.isComplete()) {
+                        throw new UploadSessionStateException("Upload session has received every byte", session);
+                    }
+                    Path staging = Paths.get(metaData.get(FileMetaDataKeys.UPLOAD_STAGING_PATH).getValue());
+                    if (Files.exists(chunk)) {
+                        try (InputStream in = Files.newInputStream(chunk)) {
+                            StreamingFileWriter.writeAt(in, staging, offset, session.getExpectedSize() - offset);
+                        }
+                    }
+                    session.setReceivedBytes(Files.size(staging));
+                    session.setExpiresAt(Instant.now().plus(sessionTtl));
+                    updateMetaData(metaData, FileMetaDataKeys.UPLOAD_RECEIVED_BYTES, String.valueOf(session.getReceivedBytes()));
+                    updateMetaData(metaData, FileMetaDataKeys.UPLOAD_EXPIRES_AT, String.valueOf(session.getExpiresAt().toEpochMilli()));
+                    return Optional.of(session);
+                }
+            );
+        }
+    }
+
+    private static void checkOffset(long offset, UploadSessionDTO session) {
+        if (offset < 0 || offset > session.getReceivedBytes()) {
+            throw new UploadSessionStateException("Chunk offset " + offset + " does not match the received bytes", session);
+        }
+    }
+
+    @Override
+    public Optional<FileDetailsDTO> complete(Long id) throws IOException {
+        log.debug("Request to complete upload session : {}", id);
+        Optional<FileDetailsDTO> fileDetails = findSessionDetails(id);
+        if (fileDetails.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<Map<String, FileMetaDataDTO>> ownMetaData = ownSessionMetaData(id);
+        if (ownMetaData.isEmpty()) {
+            return Optional.empty();
+        }
+        // storeStagedFile adds the rows of the stored file to the same fileDetails, only these are removed afterwards
+        List<Long> sessionRowIds = ownMetaData.get().values().stream().map(FileMetaDataDTO::getId).collect(Collectors.toList());
+        String owner = ownMetaData.get().get(FileMetaDataKeys.UPLOAD_OWNER).getValue();
+        Path staging = Paths.get(ownMetaData.get().get(FileMetaDataKeys.UPLOAD_STAGING_PATH).getValue());
+        Path claimed = staging.resolveSibling(staging.getFileName() + "." + UUID.randomUUID() + COMPLETING_SUFFIX);
+        if (claim(fileDetails.get(), staging, claimed).isEmpty()) {
+            return Optional.empty();
+        }
+        FileDetailsDTO stored;
+        try {
+            stored = fileService.storeStagedFile(fileDetails.get(), claimed, owner);
+        } catch (IOException | RuntimeException e) {
+            release(id, staging, claimed);
+            throw e;
+        }
+        sessionRowIds.forEach(fileMetaDataService::delete);
+        return Optional.of(stored);
+    }
+
+    /**
+     * Move the staging file of a fully received session to {@code claimed}, so that no other request can complete it
+     * at the same time.
+     *
+     * @return the session, or empty if it was removed.
+     */
+    private Optional<UploadSessionDTO> claim(FileDetailsDTO fileDetails, Path staging, Path claimed) throws IOException {
+        Long id = fileDetails.getId();
+        synchronized (locks.lockFor(id)) {
+            return IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    if (!lockSession(id)) {
+                        return Optional.empty();
+                    }
+                    UploadSessionDTO session = toDto(fileDetails, sessionMetaData(id));
+                    if (!session.isComplete()) {
+                        throw new UploadSessionStateException("Upload session is missing bytes", session);
+                    }
+                    if (!Files.exists(staging)) {
+                        throw new UploadSessionStateException("Upload session is already being completed", session);
+                    }
+                    Files.move(staging, claimed);
+                    // keep the sweep away while the file is being stored
+                    updateMetaData(
+                        sessionMetaData(id),
+                        FileMetaDataKeys.UPLOAD_EXPIRES_AT,
+                        String.valueOf(Instant.now().plus(sessionTtl).toEpochMilli())
+                    );
+                    return Optional.of(session);
+                }
+            );
+        }
+    }
+
+    /**
+     * Give a claimed staging file back to its session after a failed completion.
+     */
+    private void release(Long id, Path staging, Path claimed) throws IOException {
+        synchronized (locks.lockFor(id)) {
+            IoTransactions.execute(
+                transactionTemplate,
+                () -> {
+                    if (!lockSession(id)) {
+                        Files.deleteIfExists(claimed);
+                        return null;
+                    }
+                    if (Files.exists(claimed)) {
+                        Files.move(claimed, staging);
+                    } else {
+                        Files.createFile(staging);
+                    }
+                    // the staged bytes may have been moved away and discarded, so the client has to resume from what is left
+                    updateMetaData(sessionMetaData(id), FileMetaDataKeys.UPLOAD_RECEIVED_BYTES, String.valueOf(Files.size(staging)));
+                    return null;
+                }
+            );
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${wii.upload.sessions.sweep_interval:PT15M}")
+    public void removeExpiredSessions() {
+        long now = Instant.now().toEpochMilli();
+        for (FileDetails fileDetails : fileDetailsRepository.findByDestination(DESTINATION_UPLOAD_SESSION)) {
+            Long id = fileDetails.getId();
+            synchronized (locks.lockFor(id)) {
+                try {
+                    IoTransactions.execute(
+                        transactionTemplate,
+                        () -> {
+                            lockSession(id);
+                            Map<String, FileMetaDataDTO> metaData = sessionMetaData(id);
+                            FileMetaDataDTO expiresAt = metaData.get(FileMetaDataKeys.UPLOAD_EXPIRES_AT);
+                            // without an expiry the session is still being created
+                            if (expiresAt == null || Long.parseLong(expiresAt.getValue()) > now) {
+                                return null;
+                            }
+                            log.debug("Removing expired upload session {}", id);
+                            FileMetaDataDTO staging = metaData.get(FileMetaDataKeys.UPLOAD_STAGING_PATH);
+                            if (staging != null) {
+                                Files.deleteIfExists(Paths.get(staging.getValue()));
+                            }
+                            metaData.values().forEach(fileMetaDataDTO -> fileMetaDataService.delete(fileMetaDataDTO.getId()));
+                            fileDetailsService.delete(id);
+                            return null;
+                        }
+                    );
+                } catch (IOException e) {
+                    log.error("Exception while deleting staged upload {} : {}", id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Optional<FileDetailsDTO> findSessionDetails(Long id) {
+        return fileDetailsService.findOne(id).filter(fileDetails -> DESTINATION_UPLOAD_SESSION.equals(fileDetails.getDestination()));
+    }
+
+    /**
+     * @return the metadata of the "id" session, or empty if it was opened by someone other than the current user.
+     */
+    private Optional<Map<String, FileMetaDataDTO>> ownSessionMetaData(Long id) {
+        Map<String, FileMetaDataDTO> metaData = sessionMetaData(id);
+        FileMetaDataDTO owner = metaData.get(FileMetaDataKeys.UPLOAD_OWNER);
+        if (owner == null || SecurityUtils.getCurrentUserLogin().filter(owner.getValue()::equals).isEmpty()) {
+            log.warn("Refused access to upload session {} opened by another user", id);
+            return Optional.empty();
+        }
+        return Optional.of(metaData);
+    }
+
+    private Map<String, FileMetaDataDTO> sessionMetaData(Long id) {
+        Map<String, FileMetaDataDTO> metaData = new HashMap<>();
+        List<FileMetaDataDTO> fileMetaDataDTOList = fileMetaDataService.findByFileDetail(id);
+        if (fileMetaDataDTOList != null) {
+            fileMetaDataDTOList.forEach(fileMetaDataDTO -> metaData.put(fileMetaDataDTO.getKey(), fileMetaDataDTO));
+        }
+        return metaData;
+    }
+
+    private UploadSessionDTO toDto(FileDetailsDTO fileDetails, Map<String, FileMetaDataDTO> metaData) {
+        UploadSessionDTO session = new UploadSessionDTO();
+        session.setId(fileDetails.getId());
+        session.setFileName(fileDetails.getSourceName());
+        session.setExpectedSize(Long.valueOf(metaData.get(FileMetaDataKeys.UPLOAD_EXPECTED_SIZE).getValue()));
+        session.setReceivedBytes(Long.valueOf(metaData.get(FileMetaDataKeys.UPLOAD_RECEIVED_BYTES).getValue()));
+        session.setExpiresAt(Instant.ofEpochMilli(Long.parseLong(metaData.get(FileMetaDataKeys.UPLOAD_EXPIRES_AT).getValue())));
+        return session;
+    }
+
+    private void saveMetaData(FileDetailsDTO fileDetails, String key, String value) {
+        FileMetaDataDTO metadata = new FileMetaDataDTO();
+        metadata.setKey(key);
+        metadata.setValue(value);
+        metadata.setFileDetails(fileDetails);
+        fileMetaDataService.save(metadata);
+    }
+
+    private void updateMetaData(Map<String, FileMetaDataDTO> metaData, String key, String value) {
+        FileMetaDataDTO fileMetaDataDTO = metaData.get(key);
+        fileMetaDataDTO.setValue(value);
+        metaData.put(key, fileMetaDataService.save(fileMetaDataDTO));
+    }
+
+    /**
+     * Lock the session's {@code uploadReceivedBytes} row until the current transaction ends.
+     *
+     * @return false if the session is gone.
+     */
+    private boolean lockSession(Long id) {
+        return fileMetaDataRepository.findOneByFileDetailsIdAndKeyForUpdate(id, FileMetaDataKeys.UPLOAD_RECEIVED_BYTES).isPresent();
+    }
+}
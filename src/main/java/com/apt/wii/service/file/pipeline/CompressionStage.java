@@ -0,0 +1,118 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Replaces a stored upload by a gzip-compressed copy when {@link FileCompression} finds it worth it, so the upload
+ * request only writes the file once.
+ * <p>
+ * It runs last, so the other stages read the file as uploaded, and decides from the media type they detected. Once the
+ * metadata points to the copy, the uncompressed file is kept for {@code delete_delay} more, so downloads that resolved
+ * its path just before can still open it. A file left behind by a restart in the meantime is removed by the
+ * {@link com.apt.wii.service.file.OrphanFileCollector}.
+ */
+@Component
+@Order(1000)
+public class CompressionStage implements UploadProcessingStage {
+
+    private final Logger log = LoggerFactory.getLogger(CompressionStage.class);
+
+    private final FileCompression fileCompression;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TaskScheduler taskScheduler;
+
+    @Value("${wii.storage.compression.delete_delay:1m}")
+    private Duration deleteDelay;
+
+    public CompressionStage(
+        FileCompression fileCompression,
+        FileMetaDataService fileMetaDataService,
+        PlatformTransactionManager transactionManager,
+        TaskScheduler taskScheduler
+    ) {
+        this.fileCompression = fileCompression;
+        this.fileMetaDataService = fileMetaDataService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "compression";
+    }
+
+    @Override
+    public boolean supports(FileLocation location) {
+        return (
+            location.getContentEncoding() == null &&
+            !location.isContentAddressed() &&
+            !location.isCold() &&
+            fileCompression.isCompressible(location.getMediaType(), location.getSize())
+        );
+    }
+
+    @Override
+    public void process(FileLocation location) throws IOException {
+        Path file = Paths.get(location.getPath());
+        Optional<Path> compressed = fileCompression.compress(file);
+        if (compressed.isEmpty()) {
+            return;
+        }
+        Boolean switched;
+        try {
+            switched = transactionTemplate.execute(status -> switchToCompressed(location, compressed.get()));
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(compressed.get());
+            throw e;
+        }
+        if (!Boolean.TRUE.equals(switched)) {
+            log.debug("Not compressing {}, its filePath changed", file);
+            Files.deleteIfExists(compressed.get());
+            return;
+        }
+        taskScheduler.schedule(() -> deleteReplaced(file), Instant.now().plus(deleteDelay));
+        log.debug("Compressed {} to {}", file, compressed.get());
+    }
+
+    private void deleteReplaced(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {} after compressing it: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Point the metadata at the compressed copy, unless the file was moved to the sharded layout while it was compressed.
+     */
+    private boolean switchToCompressed(FileLocation location, Path compressed) {
+        Long fileDetailsId = location.getFileDetailsId();
+        if (!fileMetaDataService.updateValueIf(fileDetailsId, FileMetaDataKeys.FILE_PATH, compressed.toString(), location.getPath())) {
+            return false;
+        }
+        fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.CONTENT_ENCODING, FileCompression.GZIP);
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes narrower copies of uploaded images next to the original, one per configured width below the original width,
+ * and records them as {@code derivative.w<width>} metadata.
+ * <p>
+ * Opaque images are re-encoded as progressive JPEG, images with transparency as PNG. The image size is read from its
+ * header first, and images above {@code max_pixels} are left alone rather than decoded.
+ */
+@Component
+@Order(200)
+public class ImageDerivativeStage implements UploadProcessingStage {
+
+    private final Logger log = LoggerFactory.getLogger(ImageDerivativeStage.class);
+
+    private final int[] widths;
+
+    @Value("${wii.image.jpeg_quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${wii.image.max_pixels:40000000}")
+    private long maxPixels;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    public ImageDerivativeStage(
+        FileMetaDataService fileMetaDataService,
+        @Value("${wii.image.derivative_widths:320,640,1280}") int[] widths
+    ) {
+        this.fileMetaDataService = fileMetaDataService;
+        this.widths = Arrays.stream(widths).sorted().toArray();
+    }
+
+    @Override
+    public String getName() {
+        return "image-derivatives";
+    }
+
+    @Override
+    public boolean supports(FileLocation location) {
+        return ImageIO.getImageReadersByMIMEType(location.getMediaType().toString()).hasNext();
+    }
+
+    @Override
+    public void process(FileLocation location) throws IOException {
+        BufferedImage image = read(location);
+        if (image == null) {
+            return;
+        }
+        boolean alpha = image.getColorModel().hasAlpha();
+        for (int width : widths) {
+            if (width >= image.getWidth()) {
+                break;
+            }
+            int height = Math.max(1, Math.round((float) image.getHeight() * width / image.getWidth()));
+            String extension = alpha ? ImageFiles.PNG : ImageFiles.JPEG;
+            Path target = Paths.get(location.getPath()).resolveSibling(location.getFilename() + ".w" + width + "." + extension);
+            ImageFiles.write(scale(image, width, height, alpha), target, alpha, jpegQuality);
+            fileMetaDataService.saveValue(location.getFileDetailsId(), FileMetaDataKeys.DERIVATIVE_PREFIX + width, target.toString());
+        }
+    }
+
+    private BufferedImage read(FileLocation location) throws IOException {
+        try (InputStream in = FileCompression.openDecoded(location); ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                log.debug("No image reader for {}", location.getPath());
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Not resizing {}, {} pixels is above the limit", location.getPath(), pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale down by successive halvings, which keeps bilinear interpolation from skipping pixels on large reductions.
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+}
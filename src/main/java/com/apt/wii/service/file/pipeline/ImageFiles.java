@@ -0,0 +1,52 @@
+package com.apt.wii.service.file.pipeline;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writing of images generated by the processing stages.
+ */
+final class ImageFiles {
+
+    static final String JPEG = "jpg";
+
+    static final String PNG = "png";
+
+    private ImageFiles() {}
+
+    /**
+     * Encode {@code image} as PNG when {@code alpha} is set, as progressive JPEG otherwise, and move it to {@code target}.
+     * <p>
+     * The image is written under a unique temporary name first: deduplicated uploads share their original, and so the
+     * files generated from it, and may be processed at the same time.
+     */
+    static void write(BufferedImage image, Path target, boolean alpha, float jpegQuality) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(alpha ? PNG : "jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(part.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (!alpha) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,112 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the media type of an upload in its {@code contentType} metadata, from the first bytes of the content rather
+ * than from the name the client gave it. Downloads are served with that type once it is known.
+ * <p>
+ * Formats with an unambiguous signature are recognised from it. Anything else is recorded with the type its name
+ * suggests, so text files keep a {@code text/*} type and stay compressible, unless that name claims one of the signed
+ * formats; the file is then recorded as {@code application/octet-stream}. Downloads only serve a recorded type inline
+ * if it is passive, see {@link FileLocation#servedMediaType(MediaType)}.
+ */
+@Component
+@Order(100)
+public class MediaTypeDetectionStage implements UploadProcessingStage {
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte[] PDF = { '%', 'P', 'D', 'F', '-' };
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] GIF = { 'G', 'I', 'F', '8' };
+    private static final byte[] ZIP = { 'P', 'K', 0x03, 0x04 };
+    private static final byte[] RIFF = { 'R', 'I', 'F', 'F' };
+    private static final byte[] WEBP = { 'W', 'E', 'B', 'P' };
+
+    private static final List<MediaType> SIGNED_MEDIA_TYPES = List.of(
+        MediaType.APPLICATION_PDF,
+        MediaType.IMAGE_PNG,
+        MediaType.IMAGE_JPEG,
+        MediaType.IMAGE_GIF,
+        MediaType.valueOf("image/webp"),
+        MediaType.valueOf("application/zip")
+    );
+
+    private final FileMetaDataService fileMetaDataService;
+
+    public MediaTypeDetectionStage(FileMetaDataService fileMetaDataService) {
+        this.fileMetaDataService = fileMetaDataService;
+    }
+
+    @Override
+    public String getName() {
+        return "media-type";
+    }
+
+    @Override
+    public void process(FileLocation location) throws IOException {
+        String mediaType;
+        try (InputStream in = FileCompression.openDecoded(location)) {
+            mediaType = detect(in.readNBytes(HEADER_SIZE));
+        }
+        fileMetaDataService.saveValue(
+            location.getFileDetailsId(),
+            FileMetaDataKeys.CONTENT_TYPE,
+            mediaType != null ? mediaType : unsignedMediaType(location.getFilename())
+        );
+    }
+
+    /**
+     * @return the type {@code filename} suggests for content without a known signature, or
+     * {@code application/octet-stream} if there is none or it names a format that should have had one.
+     */
+    private static String unsignedMediaType(String filename) {
+        return MediaTypeFactory
+            .getMediaType(filename)
+            .filter(type -> SIGNED_MEDIA_TYPES.stream().noneMatch(signed -> signed.includes(type)))
+            .map(MediaType::toString)
+            .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+    }
+
+    private static String detect(byte[] header) {
+        if (startsWith(header, PDF, 0)) {
+            return MediaType.APPLICATION_PDF_VALUE;
+        }
+        if (startsWith(header, PNG, 0)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(header, JPEG, 0)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(header, GIF, 0)) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        if (startsWith(header, RIFF, 0) && startsWith(header, WEBP, 8)) {
+            return "image/webp";
+        }
+        if (startsWith(header, ZIP, 0)) {
+            return "application/zip";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] signature, int offset) {
+        return (
+            header.length >= offset + signature.length &&
+            Arrays.equals(header, offset, offset + signature.length, signature, 0, signature.length)
+        );
+    }
+}
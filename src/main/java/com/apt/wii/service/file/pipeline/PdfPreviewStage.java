@@ -0,0 +1,121 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.config.UploadPipelineConfiguration;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders the first page of uploaded PDFs to a JPEG thumbnail stored next to the original as
+ * {@code <name>.preview.jpg}, and records it as {@code previewPath} metadata.
+ * <p>
+ * Rendering runs on the preview executor so that the number of documents rendered at once is bounded by CPU rather
+ * than by the pipeline worker count. Documents are parsed with temp-file buffering, keeping large PDFs off the heap.
+ * Password protected documents get no preview.
+ */
+@Component
+@Order(300)
+public class PdfPreviewStage implements UploadProcessingStage {
+
+    private static final String PREVIEW_SUFFIX = ".preview." + ImageFiles.JPEG;
+
+    private final Logger log = LoggerFactory.getLogger(PdfPreviewStage.class);
+
+    @Value("${wii.preview.width:480}")
+    private int width;
+
+    @Value("${wii.preview.jpeg_quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${wii.preview.timeout:60s}")
+    private Duration timeout;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final ThreadPoolTaskExecutor renderExecutor;
+
+    public PdfPreviewStage(
+        FileMetaDataService fileMetaDataService,
+        @Qualifier(UploadPipelineConfiguration.PREVIEW_RENDER_EXECUTOR) ThreadPoolTaskExecutor renderExecutor
+    ) {
+        this.fileMetaDataService = fileMetaDataService;
+        this.renderExecutor = renderExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return "pdf-preview";
+    }
+
+    @Override
+    public boolean supports(FileLocation location) {
+        return location.getMediaType().isCompatibleWith(MediaType.APPLICATION_PDF);
+    }
+
+    @Override
+    public void process(FileLocation location) throws Exception {
+        Future<BufferedImage> rendering = renderExecutor.submit(() -> render(location));
+        BufferedImage image;
+        try {
+            image = rendering.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            rendering.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidPasswordException) {
+                log.info("Not rendering a preview of encrypted document {}", location.getPath());
+                return;
+            }
+            throw e;
+        }
+        if (image == null) {
+            return;
+        }
+        Path target = Paths.get(location.getPath()).resolveSibling(location.getFilename() + PREVIEW_SUFFIX);
+        ImageFiles.write(image, target, false, jpegQuality);
+        fileMetaDataService.saveValue(location.getFileDetailsId(), FileMetaDataKeys.PREVIEW_PATH, target.toString());
+        log.debug("Rendered preview {}", target);
+    }
+
+    private BufferedImage render(FileLocation location) throws IOException {
+        try (
+            InputStream in = FileCompression.openDecoded(location);
+            PDDocument document = PDDocument.load(in, MemoryUsageSetting.setupTempFileOnly())
+        ) {
+            if (document.getNumberOfPages() == 0) {
+                log.warn("Document {} has no pages", location.getPath());
+                return null;
+            }
+            PDPage page = document.getPage(0);
+            PDRectangle box = page.getCropBox();
+            float pageWidth = page.getRotation() % 180 == 0 ? box.getWidth() : box.getHeight();
+            return new PDFRenderer(document).renderImage(0, width / pageWidth, ImageType.RGB);
+        }
+    }
+}
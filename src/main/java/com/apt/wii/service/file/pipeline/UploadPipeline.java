@@ -0,0 +1,315 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.config.UploadPipelineConfiguration;
+import com.apt.wii.repository.FileMetaDataRepository;
+import com.apt.wii.repository.FileMetaDataRepository.FileDetailsValue;
+import com.apt.wii.repository.FileMetaDataRepository.KeyValue;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileLocationResolver;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the {@link UploadProcessingStage}s on stored uploads, outside of the upload request.
+ * <p>
+ * Work is queued on the bounded {@code uploadPipelineExecutor}. When its queue is full the upload is left
+ * {@link UploadProcessingStatus#PENDING} and a periodic sweep queues it again once there is room, which also recovers
+ * uploads interrupted by a restart. A failing stage is retried from that stage, with exponential backoff, up to
+ * {@code max_attempts} times before the upload is marked {@link UploadProcessingStatus#FAILED}.
+ * <p>
+ * Every instance runs the sweep, so a run starts by claiming the upload in the database: a pending upload is switched to
+ * {@link UploadProcessingStatus#PROCESSING} by a conditional update, and the winner holds a {@code processingLease} that
+ * it renews before each stage. A processing upload is taken over only once its lease has expired, and a run that finds
+ * its lease taken over stops.
+ */
+@Service
+public class UploadPipeline {
+
+    private static final List<String> UNFINISHED = List.of(UploadProcessingStatus.PENDING.name(), UploadProcessingStatus.PROCESSING.name());
+
+    private final Logger log = LoggerFactory.getLogger(UploadPipeline.class);
+
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "upload-pipeline-retry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
+    @Value("${wii.upload.pipeline.max_attempts:3}")
+    private int maxAttempts;
+
+    @Value("${wii.upload.pipeline.retry_delay:10s}")
+    private Duration retryDelay;
+
+    @Value("${wii.upload.pipeline.recovery_batch_size:100}")
+    private int recoveryBatchSize;
+
+    @Value("${wii.upload.pipeline.lease:30m}")
+    private Duration lease;
+
+    private final List<UploadProcessingStage> stages;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    private final FileLocationResolver fileLocationResolver;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    private final FileMetaDataRepository fileMetaDataRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    public UploadPipeline(
+        List<UploadProcessingStage> stages,
+        @Qualifier(UploadPipelineConfiguration.UPLOAD_PIPELINE_EXECUTOR) ThreadPoolTaskExecutor executor,
+        FileLocationResolver fileLocationResolver,
+        FileMetaDataService fileMetaDataService,
+        FileMetaDataRepository fileMetaDataRepository,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry
+    ) {
+        this.stages = stages;
+        this.executor = executor;
+        this.fileLocationResolver = fileLocationResolver;
+        this.fileMetaDataService = fileMetaDataService;
+        this.fileMetaDataRepository = fileMetaDataRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        Gauge
+            .builder("wii.upload.pipeline.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+            .description("Uploads waiting for a pipeline worker")
+            .register(meterRegistry);
+        Gauge
+            .builder("wii.upload.pipeline.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+            .description("Uploads being processed")
+            .register(meterRegistry);
+        Gauge
+            .builder("wii.upload.pipeline.in_flight", inFlight, Set::size)
+            .description("Uploads queued, being processed or waiting for a retry")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Mark the "fileDetailsId" upload as pending and queue it for processing.
+     *
+     * @param fileDetailsId the id of the stored upload.
+     */
+    public void submit(Long fileDetailsId) {
+        setStatus(fileDetailsId, UploadProcessingStatus.PENDING);
+        enqueue(fileDetailsId, 0, 1, null);
+    }
+
+    @Scheduled(fixedDelayString = "${wii.upload.pipeline.recovery_interval:PT1M}")
+    public void requeueUnfinished() {
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = fileMetaDataRepository.findFileDetailsIdsByValueAfter(
+                FileMetaDataKeys.PROCESSING_STATUS,
+                UNFINISHED,
+                lastId,
+                PageRequest.of(0, recoveryBatchSize)
+            );
+            if (ids.isEmpty()) {
+                return;
+            }
+            Map<Long, String> leases = fileMetaDataRepository
+                .findValuesFor(FileMetaDataKeys.PROCESSING_LEASE, ids)
+                .stream()
+                .collect(Collectors.toMap(FileDetailsValue::getFileDetailsId, FileDetailsValue::getValue, (first, second) -> first));
+            for (Long id : ids) {
+                if (executor.getThreadPoolExecutor().getQueue().remainingCapacity() == 0) {
+                    return;
+                }
+                // uploads held by another instance are claimed by the run itself once their lease expires
+                if (!inFlight.contains(id) && !isHeld(leases.get(id))) {
+                    log.debug("Requeueing unfinished upload {}", id);
+                    enqueue(id, 0, 1, null);
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+
+    private void enqueue(Long fileDetailsId, int firstStage, int attempt, String heldLease) {
+        inFlight.add(fileDetailsId);
+        try {
+            executor.execute(() -> process(fileDetailsId, firstStage, attempt, heldLease));
+        } catch (TaskRejectedException e) {
+            inFlight.remove(fileDetailsId);
+            log.warn("Upload pipeline is full, upload {} stays pending", fileDetailsId);
+        }
+    }
+
+    private void process(Long fileDetailsId, int firstStage, int attempt, String heldLease) {
+        if (fileLocationResolver.resolve(fileDetailsId).isEmpty()) {
+            // deleted while it was waiting
+            inFlight.remove(fileDetailsId);
+            return;
+        }
+        // a retry renews the lease it already holds, a first run has to claim the upload
+        Optional<String> currentLease = heldLease != null ? renew(fileDetailsId, heldLease) : claim(fileDetailsId);
+        if (currentLease.isEmpty()) {
+            log.debug("Upload {} is finished or processed by another instance", fileDetailsId);
+            inFlight.remove(fileDetailsId);
+            return;
+        }
+        String leaseValue = currentLease.get();
+        for (int i = firstStage; i < stages.size(); i++) {
+            UploadProcessingStage stage = stages.get(i);
+            // resolved again for every stage, which sees the type detected and the path written by the previous ones
+            Optional<FileLocation> location = fileLocationResolver.resolve(fileDetailsId);
+            if (location.isEmpty()) {
+                log.debug("Upload {} was deleted while it was processed", fileDetailsId);
+                inFlight.remove(fileDetailsId);
+                return;
+            }
+            if (!stage.supports(location.get())) {
+                continue;
+            }
+            if (i > firstStage) {
+                Optional<String> renewed = renew(fileDetailsId, leaseValue);
+                if (renewed.isEmpty()) {
+                    log.warn("Upload {} was taken over by another instance before stage {}", fileDetailsId, stage.getName());
+                    inFlight.remove(fileDetailsId);
+                    return;
+                }
+                leaseValue = renewed.get();
+            }
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                stage.process(location.get());
+                sample.stop(stageTimer(stage, "success"));
+            } catch (Exception e) {
+                sample.stop(stageTimer(stage, "failure"));
+                retry(fileDetailsId, i, attempt, stage, e, leaseValue);
+                return;
+            }
+        }
+        setStatus(fileDetailsId, UploadProcessingStatus.DONE);
+        fileMetaDataService.deleteValue(fileDetailsId, FileMetaDataKeys.PROCESSING_LEASE);
+        inFlight.remove(fileDetailsId);
+    }
+
+    private void retry(Long fileDetailsId, int stageIndex, int attempt, UploadProcessingStage stage, Exception e, String heldLease) {
+        if (attempt >= maxAttempts) {
+            log.error("Stage {} failed on upload {} after {} attempts : {}", stage.getName(), fileDetailsId, attempt, e.getMessage());
+            fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.PROCESSING_ERROR, stage.getName() + ": " + e.getMessage());
+            setStatus(fileDetailsId, UploadProcessingStatus.FAILED);
+            fileMetaDataService.deleteValue(fileDetailsId, FileMetaDataKeys.PROCESSING_LEASE);
+            inFlight.remove(fileDetailsId);
+            return;
+        }
+        long delay = retryDelay.toMillis() << (attempt - 1);
+        log.warn("Stage {} failed on upload {}, retrying in {} ms : {}", stage.getName(), fileDetailsId, delay, e.getMessage());
+        retryScheduler.schedule(() -> enqueue(fileDetailsId, stageIndex, attempt + 1, heldLease), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a pending upload, or a processing one whose lease has expired, for this instance.
+     *
+     * @return the lease now held, or empty if the upload is finished or another instance holds it.
+     */
+    private Optional<String> claim(Long fileDetailsId) {
+        String newLease = nextLease();
+        return transactionTemplate.execute(
+            status -> {
+                Map<String, String> values = fileMetaDataRepository
+                    .findValues(fileDetailsId)
+                    .stream()
+                    .collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue, (first, second) -> first));
+                String processingStatus = values.get(FileMetaDataKeys.PROCESSING_STATUS);
+                String currentLease = values.get(FileMetaDataKeys.PROCESSING_LEASE);
+                String pending = UploadProcessingStatus.PENDING.name();
+                String processing = UploadProcessingStatus.PROCESSING.name();
+                boolean claimed;
+                if (pending.equals(processingStatus)) {
+                    claimed = updateValueIf(FileMetaDataKeys.PROCESSING_STATUS, fileDetailsId, processing, pending);
+                } else if (processing.equals(processingStatus) && currentLease != null && !isHeld(currentLease)) {
+                    claimed = updateValueIf(FileMetaDataKeys.PROCESSING_LEASE, fileDetailsId, newLease, currentLease);
+                } else {
+                    claimed = false;
+                }
+                if (!claimed) {
+                    return Optional.<String>empty();
+                }
+                fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.PROCESSING_LEASE, newLease);
+                return Optional.of(newLease);
+            }
+        );
+    }
+
+    /**
+     * Extend the lease held on an upload.
+     *
+     * @return the new lease, or empty if another instance took the upload over after the held lease expired.
+     */
+    private Optional<String> renew(Long fileDetailsId, String heldLease) {
+        String newLease = nextLease();
+        Boolean renewed = transactionTemplate.execute(
+            status -> updateValueIf(FileMetaDataKeys.PROCESSING_LEASE, fileDetailsId, newLease, heldLease)
+        );
+        return Boolean.TRUE.equals(renewed) ? Optional.of(newLease) : Optional.empty();
+    }
+
+    private boolean updateValueIf(String key, Long fileDetailsId, String value, String expected) {
+        return fileMetaDataRepository.updateValueIf(key, fileDetailsId, value, expected) == 1;
+    }
+
+    private String nextLease() {
+        return String.valueOf(Instant.now().plus(lease).toEpochMilli());
+    }
+
+    private static boolean isHeld(String lease) {
+        return lease != null && Long.parseLong(lease) > System.currentTimeMillis();
+    }
+
+    private void setStatus(Long fileDetailsId, UploadProcessingStatus status) {
+        fileMetaDataService.saveValue(fileDetailsId, FileMetaDataKeys.PROCESSING_STATUS, status.name());
+    }
+
+    private Timer stageTimer(UploadProcessingStage stage, String outcome) {
+        return Timer
+            .builder("wii.upload.pipeline.stage")
+            .description("Time spent in upload processing stages")
+            .tag("stage", stage.getName())
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
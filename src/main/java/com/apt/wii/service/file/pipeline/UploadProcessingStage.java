@@ -0,0 +1,32 @@
+package com.apt.wii.service.file.pipeline;
+
+import com.apt.wii.service.file.FileLocation;
+
+/**
+ * A step run on every stored upload by the {@link UploadPipeline}.
+ * <p>
+ * Stages are Spring beans run in {@link org.springframework.core.annotation.Order} order, each given the location as
+ * left by the stages before it. A stage may be run more than once for the same file (after a failure or a restart), so
+ * it must be idempotent.
+ */
+public interface UploadProcessingStage {
+    /**
+     * @return the name used in logs and metrics.
+     */
+    String getName();
+
+    /**
+     * @return {@code true} if the stage applies to the file at {@code location}.
+     */
+    default boolean supports(FileLocation location) {
+        return true;
+    }
+
+    /**
+     * Process the file at {@code location}.
+     *
+     * @param location the stored file.
+     * @throws Exception if the stage failed and should be retried.
+     */
+    void process(FileLocation location) throws Exception;
+}
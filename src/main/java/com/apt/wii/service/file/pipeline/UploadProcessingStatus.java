@@ -0,0 +1,11 @@
+package com.apt.wii.service.file.pipeline;
+
+/**
+ * Progress of an upload through the {@link UploadPipeline}, kept in its {@code processingStatus} metadata.
+ */
+public enum UploadProcessingStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    FAILED,
+}
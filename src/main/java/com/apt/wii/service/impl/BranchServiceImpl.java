@@ -2,13 +2,14 @@ package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.Branch;
 import com.apt.wii.repository.BranchRepository;
+import com.apt.wii.repository.CatalogAncestry;
+import com.apt.wii.repository.DomainRepository;
 import com.apt.wii.service.BranchService;
-import com.apt.wii.service.DomainService;
+import com.apt.wii.service.catalog.CatalogTreeService;
+import com.apt.wii.service.catalog.HierarchyIndexService;
 import com.apt.wii.service.dto.BranchDTO;
-import com.apt.wii.service.dto.DomainDTO;
 import com.apt.wii.service.dto.SubjectDTO;
 import com.apt.wii.service.mapper.BranchMapper;
-import com.apt.wii.service.mapper.DomainMapper;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -31,29 +32,36 @@ public class BranchServiceImpl implements BranchService {
 
     private final BranchRepository branchRepository;
 
+    private final DomainRepository domainRepository;
+
     private final BranchMapper branchMapper;
 
-    private final DomainMapper domainMapper;
+    private final CatalogTreeService catalogTreeService;
 
-    private final DomainService domainService;
+    private final HierarchyIndexService hierarchyIndexService;
 
     public BranchServiceImpl(
         BranchRepository branchRepository,
+        DomainRepository domainRepository,
         BranchMapper branchMapper,
-        DomainMapper domainMapper,
-        DomainService domainService
+        CatalogTreeService catalogTreeService,
+        HierarchyIndexService hierarchyIndexService
     ) {
         this.branchRepository = branchRepository;
+        this.domainRepository = domainRepository;
         this.branchMapper = branchMapper;
-        this.domainMapper = domainMapper;
-        this.domainService = domainService;
+        this.catalogTreeService = catalogTreeService;
+        this.hierarchyIndexService = hierarchyIndexService;
     }
 
     @Override
     public BranchDTO save(BranchDTO branchDTO) {
         log.debug("Request to save Branch : {}", branchDTO);
+        CatalogAncestry previous = branchDTO.getId() != null ? branchRepository.findAncestry(branchDTO.getId()).orElse(null) : null;
         Branch branch = branchMapper.toEntity(branchDTO);
         branch = branchRepository.save(branch);
+        hierarchyIndexService.moved(branch, previous);
+        catalogTreeService.invalidate();
         return branchMapper.toDto(branch);
     }
 
@@ -65,7 +73,10 @@ public class BranchServiceImpl implements BranchService {
             .findById(branchDTO.getId())
             .map(
                 existingBranch -> {
+                    CatalogAncestry previous = branchRepository.findAncestry(existingBranch.getId()).orElse(null);
                     branchMapper.partialUpdate(existingBranch, branchDTO);
+                    hierarchyIndexService.moved(existingBranch, previous);
+                    catalogTreeService.invalidate();
                     return existingBranch;
                 }
             )
@@ -100,20 +111,18 @@ public class BranchServiceImpl implements BranchService {
     public void delete(Long id) {
         log.debug("Request to delete Branch : {}", id);
         branchRepository.deleteById(id);
+        catalogTreeService.invalidate();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<BranchDTO> findByDomain(Long id) {
         log.debug("Request to get Branch by domain id: {}", id);
-        Optional<DomainDTO> b = domainService.findOne(id);
-        if (b.isPresent()) {
-            return branchRepository
-                .findByDomain(domainMapper.toEntity(b.get()))
-                .stream()
-                .map(branchMapper::toDto)
-                .collect(Collectors.toCollection(LinkedList::new));
+        List<BranchDTO> branches = branchRepository.findDtosByDomainId(id);
+        if (branches.isEmpty() && !domainRepository.existsById(id)) {
+            log.error("Invalid domain ID: {}", id);
+            return null;
         }
-        log.error("Invalid branch ID: {}", id);
-        return null;
+        return branches;
     }
 }
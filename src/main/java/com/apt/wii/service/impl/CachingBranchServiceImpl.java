@@ -0,0 +1,83 @@
+package com.apt.wii.service.impl;
+
+import com.apt.wii.service.BranchService;
+import com.apt.wii.service.catalog.CatalogCache;
+import com.apt.wii.service.catalog.CatalogCaches;
+import com.apt.wii.service.dto.BranchDTO;
+import com.apt.wii.service.dto.SemesterDTO;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BranchService} in front of {@link BranchServiceImpl}, answering {@code findOne}, {@code findAll} and
+ * {@code findByDomain} from {@link CatalogCaches}.
+ * <p>
+ * A write evicts the branch, the list of branches, and the branches of the domain it belonged to before and after the
+ * write, so moving a branch to another domain refreshes both listings.
+ */
+@Service
+@Primary
+public class CachingBranchServiceImpl implements BranchService {
+
+    private final BranchService branchService;
+
+    private final CatalogCache<BranchDTO> cache;
+
+    private final CatalogCache<SemesterDTO> semesters;
+
+    public CachingBranchServiceImpl(@Qualifier("branchServiceImpl") BranchService branchService, CatalogCaches catalogCaches) {
+        this.branchService = branchService;
+        this.cache = catalogCaches.branches();
+        this.semesters = catalogCaches.semesters();
+    }
+
+    @Override
+    public BranchDTO save(BranchDTO branchDTO) {
+        Long previousDomainId = branchDTO.getId() != null ? domainIdOf(branchDTO.getId()) : null;
+        BranchDTO result = branchService.save(branchDTO);
+        cache.evict(result.getId(), previousDomainId, domainIdOf(result));
+        return result;
+    }
+
+    @Override
+    public Optional<BranchDTO> partialUpdate(BranchDTO branchDTO) {
+        Long previousDomainId = branchDTO.getId() != null ? domainIdOf(branchDTO.getId()) : null;
+        Optional<BranchDTO> result = branchService.partialUpdate(branchDTO);
+        result.ifPresent(updated -> cache.evict(updated.getId(), previousDomainId, domainIdOf(updated)));
+        return result;
+    }
+
+    @Override
+    public List<BranchDTO> findAll() {
+        return cache.findAll(branchService::findAll);
+    }
+
+    @Override
+    public Optional<BranchDTO> findOne(Long id) {
+        return cache.findOne(id, branchService::findOne);
+    }
+
+    @Override
+    public List<BranchDTO> findByDomain(Long id) {
+        return cache.findChildren(id, branchService::findByDomain);
+    }
+
+    @Override
+    public void delete(Long id) {
+        Long domainId = domainIdOf(id);
+        branchService.delete(id);
+        cache.evict(id, domainId);
+        semesters.evictChildren(id);
+    }
+
+    private Long domainIdOf(Long id) {
+        return findOne(id).map(this::domainIdOf).orElse(null);
+    }
+
+    private Long domainIdOf(BranchDTO branchDTO) {
+        return branchDTO.getDomain() != null ? branchDTO.getDomain().getId() : null;
+    }
+}
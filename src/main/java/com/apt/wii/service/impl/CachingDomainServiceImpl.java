@@ -0,0 +1,64 @@
+package com.apt.wii.service.impl;
+
+import com.apt.wii.service.DomainService;
+import com.apt.wii.service.catalog.CatalogCache;
+import com.apt.wii.service.catalog.CatalogCaches;
+import com.apt.wii.service.dto.BranchDTO;
+import com.apt.wii.service.dto.DomainDTO;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the reads of {@link DomainServiceImpl} in {@link CatalogCaches}; writes evict the domain, the list of domains, and
+ * the cached branches of a deleted domain.
+ */
+@Service
+@Primary
+public class CachingDomainServiceImpl implements DomainService {
+
+    private final DomainService domainService;
+
+    private final CatalogCache<DomainDTO> cache;
+
+    private final CatalogCache<BranchDTO> branches;
+
+    public CachingDomainServiceImpl(@Qualifier("domainServiceImpl") DomainService domainService, CatalogCaches catalogCaches) {
+        this.domainService = domainService;
+        this.cache = catalogCaches.domains();
+        this.branches = catalogCaches.branches();
+    }
+
+    @Override
+    public DomainDTO save(DomainDTO domainDTO) {
+        DomainDTO result = domainService.save(domainDTO);
+        cache.evict(result.getId());
+        return result;
+    }
+
+    @Override
+    public Optional<DomainDTO> partialUpdate(DomainDTO domainDTO) {
+        Optional<DomainDTO> result = domainService.partialUpdate(domainDTO);
+        result.ifPresent(updated -> cache.evict(updated.getId()));
+        return result;
+    }
+
+    @Override
+    public List<DomainDTO> findAll() {
+        return cache.findAll(domainService::findAll);
+    }
+
+    @Override
+    public Optional<DomainDTO> findOne(Long id) {
+        return cache.findOne(id, domainService::findOne);
+    }
+
+    @Override
+    public void delete(Long id) {
+        domainService.delete(id);
+        cache.evict(id);
+        branches.evictChildren(id);
+    }
+}
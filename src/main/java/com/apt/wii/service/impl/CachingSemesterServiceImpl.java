@@ -0,0 +1,79 @@
+package com.apt.wii.service.impl;
+
+import com.apt.wii.service.SemesterService;
+import com.apt.wii.service.catalog.CatalogCache;
+import com.apt.wii.service.catalog.CatalogCaches;
+import com.apt.wii.service.dto.SemesterDTO;
+import com.apt.wii.service.dto.SubjectDTO;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cached {@link SemesterService}; see {@link CachingBranchServiceImpl} for what a write evicts.
+ */
+@Service
+@Primary
+public class CachingSemesterServiceImpl implements SemesterService {
+
+    private final SemesterService semesterService;
+
+    private final CatalogCache<SemesterDTO> cache;
+
+    private final CatalogCache<SubjectDTO> subjects;
+
+    public CachingSemesterServiceImpl(@Qualifier("semesterServiceImpl") SemesterService semesterService, CatalogCaches catalogCaches) {
+        this.semesterService = semesterService;
+        this.cache = catalogCaches.semesters();
+        this.subjects = catalogCaches.subjects();
+    }
+
+    @Override
+    public SemesterDTO save(SemesterDTO semesterDTO) {
+        Long previousBranchId = semesterDTO.getId() != null ? branchIdOf(semesterDTO.getId()) : null;
+        SemesterDTO result = semesterService.save(semesterDTO);
+        cache.evict(result.getId(), previousBranchId, branchIdOf(result));
+        return result;
+    }
+
+    @Override
+    public Optional<SemesterDTO> partialUpdate(SemesterDTO semesterDTO) {
+        Long previousBranchId = semesterDTO.getId() != null ? branchIdOf(semesterDTO.getId()) : null;
+        Optional<SemesterDTO> result = semesterService.partialUpdate(semesterDTO);
+        result.ifPresent(updated -> cache.evict(updated.getId(), previousBranchId, branchIdOf(updated)));
+        return result;
+    }
+
+    @Override
+    public List<SemesterDTO> findAll() {
+        return cache.findAll(semesterService::findAll);
+    }
+
+    @Override
+    public Optional<SemesterDTO> findOne(Long id) {
+        return cache.findOne(id, semesterService::findOne);
+    }
+
+    @Override
+    public List<SemesterDTO> findByBranch(Long id) {
+        return cache.findChildren(id, semesterService::findByBranch);
+    }
+
+    @Override
+    public void delete(Long id) {
+        Long branchId = branchIdOf(id);
+        semesterService.delete(id);
+        cache.evict(id, branchId);
+        subjects.evictChildren(id);
+    }
+
+    private Long branchIdOf(Long id) {
+        return findOne(id).map(this::branchIdOf).orElse(null);
+    }
+
+    private Long branchIdOf(SemesterDTO semesterDTO) {
+        return semesterDTO.getBranch() != null ? semesterDTO.getBranch().getId() : null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.apt.wii.service.impl;
+
+import com.apt.wii.service.SubjectService;
+import com.apt.wii.service.catalog.CatalogCache;
+import com.apt.wii.service.catalog.CatalogCaches;
+import com.apt.wii.service.dto.SubjectDTO;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cached {@link SubjectService}, evicted like {@link CachingSemesterServiceImpl} on every write.
+ */
+@Service
+@Primary
+public class CachingSubjectServiceImpl implements SubjectService {
+
+    private final SubjectService subjectService;
+
+    private final CatalogCache<SubjectDTO> cache;
+
+    public CachingSubjectServiceImpl(@Qualifier("subjectServiceImpl") SubjectService subjectService, CatalogCaches catalogCaches) {
+        this.subjectService = subjectService;
+        this.cache = catalogCaches.subjects();
+    }
+
+    @Override
+    public SubjectDTO save(SubjectDTO subjectDTO) {
+        Long previousSemesterId = subjectDTO.getId() != null ? semesterIdOf(subjectDTO.getId()) : null;
+        SubjectDTO result = subjectService.save(subjectDTO);
+        cache.evict(result.getId(), previousSemesterId, semesterIdOf(result));
+        return result;
+    }
+
+    @Override
+    public Optional<SubjectDTO> partialUpdate(SubjectDTO subjectDTO) {
+        Long previousSemesterId = subjectDTO.getId() != null ? semesterIdOf(subjectDTO.getId()) : null;
+        Optional<SubjectDTO> result = subjectService.partialUpdate(subjectDTO);
+        result.ifPresent(updated -> cache.evict(updated.getId(), previousSemesterId, semesterIdOf(updated)));
+        return result;
+    }
+
+    @Override
+    public List<SubjectDTO> findAll() {
+        return cache.findAll(subjectService::findAll);
+    }
+
+    @Override
+    public Optional<SubjectDTO> findOne(Long id) {
+        return cache.findOne(id, subjectService::findOne);
+    }
+
+    @Override
+    public List<SubjectDTO> findBySemester(Long id) {
+        return cache.findChildren(id, subjectService::findBySemester);
+    }
+
+    @Override
+    public void delete(Long id) {
+        Long semesterId = semesterIdOf(id);
+        subjectService.delete(id);
+        cache.evict(id, semesterId);
+    }
+
+    private Long semesterIdOf(Long id) {
+        return findOne(id).map(this::semesterIdOf).orElse(null);
+    }
+
+    private Long semesterIdOf(SubjectDTO subjectDTO) {
+        return subjectDTO.getSemester() != null ? subjectDTO.getSemester().getId() : null;
+    }
+}
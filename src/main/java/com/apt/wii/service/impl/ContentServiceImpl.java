@@ -2,14 +2,12 @@ package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.Content;
 import com.apt.wii.repository.ContentRepository;
+import com.apt.wii.repository.QuestionRepository;
 import com.apt.wii.service.ContentService;
-import com.apt.wii.service.QuestionService;
 import com.apt.wii.service.dto.BranchDTO;
 import com.apt.wii.service.dto.ContentDTO;
-import com.apt.wii.service.dto.QuestionDTO;
 import com.apt.wii.service.dto.SubjectDTO;
 import com.apt.wii.service.mapper.ContentMapper;
-import com.apt.wii.service.mapper.QuestionMapper;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -32,22 +30,18 @@ public class ContentServiceImpl implements ContentService {
 
     private final ContentRepository contentRepository;
 
-    private final ContentMapper contentMapper;
-
-    private final QuestionMapper questionMapper;
+    private final QuestionRepository questionRepository;
 
-    private final QuestionService questionService;
+    private final ContentMapper contentMapper;
 
     public ContentServiceImpl(
         ContentRepository contentRepository,
-        ContentMapper contentMapper,
-        QuestionService questionService,
-        QuestionMapper questionMapper
+        QuestionRepository questionRepository,
+        ContentMapper contentMapper
     ) {
         this.contentRepository = contentRepository;
+        this.questionRepository = questionRepository;
         this.contentMapper = contentMapper;
-        this.questionMapper = questionMapper;
-        this.questionService = questionService;
     }
 
     @Override
@@ -104,18 +98,14 @@ public class ContentServiceImpl implements ContentService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ContentDTO> findByQuestion(Long id) {
         log.debug("Request to get content by question id: {}", id);
-        Optional<QuestionDTO> b = questionService.findOne(id);
-
-        if (b.isPresent()) {
-            return contentRepository
-                .findByQuestion(questionMapper.toEntity(b.get()))
-                .stream()
-                .map(contentMapper::toDto)
-                .collect(Collectors.toCollection(LinkedList::new));
+        List<ContentDTO> contents = contentRepository.findDtosByQuestionId(id);
+        if (contents.isEmpty() && !questionRepository.existsById(id)) {
+            log.error("Invalid question ID: {}", id);
+            return null;
         }
-        log.error("Invalid question ID: {}", id);
-        return null;
+        return contents;
     }
 }
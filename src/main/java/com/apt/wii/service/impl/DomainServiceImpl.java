@@ -3,6 +3,7 @@ package com.apt.wii.service.impl;
 import com.apt.wii.domain.Domain;
 import com.apt.wii.repository.DomainRepository;
 import com.apt.wii.service.DomainService;
+import com.apt.wii.service.catalog.CatalogTreeService;
 import com.apt.wii.service.dto.ContentDTO;
 import com.apt.wii.service.dto.DomainDTO;
 import com.apt.wii.service.mapper.DomainMapper;
@@ -28,9 +29,12 @@ public class DomainServiceImpl implements DomainService {
 
     private final DomainMapper domainMapper;
 
-    public DomainServiceImpl(DomainRepository domainRepository, DomainMapper domainMapper) {
+    private final CatalogTreeService catalogTreeService;
+
+    public DomainServiceImpl(DomainRepository domainRepository, DomainMapper domainMapper, CatalogTreeService catalogTreeService) {
         this.domainRepository = domainRepository;
         this.domainMapper = domainMapper;
+        this.catalogTreeService = catalogTreeService;
     }
 
     @Override
@@ -38,6 +42,7 @@ public class DomainServiceImpl implements DomainService {
         log.debug("Request to save Domain : {}", domainDTO);
         Domain domain = domainMapper.toEntity(domainDTO);
         domain = domainRepository.save(domain);
+        catalogTreeService.invalidate();
         return domainMapper.toDto(domain);
     }
 
@@ -50,6 +55,7 @@ public class DomainServiceImpl implements DomainService {
             .map(
                 existingDomain -> {
                     domainMapper.partialUpdate(existingDomain, domainDTO);
+                    catalogTreeService.invalidate();
                     return existingDomain;
                 }
             )
@@ -84,5 +90,6 @@ public class DomainServiceImpl implements DomainService {
     public void delete(Long id) {
         log.debug("Request to delete Domain : {}", id);
         domainRepository.deleteById(id);
+        catalogTreeService.invalidate();
     }
 }
@@ -4,6 +4,7 @@ import com.apt.wii.domain.FileDetails;
 import com.apt.wii.repository.FileDetailsRepository;
 import com.apt.wii.service.FileDetailsService;
 import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.file.FileLocationResolver;
 import com.apt.wii.service.mapper.FileDetailsMapper;
 import java.util.LinkedList;
 import java.util.List;
@@ -27,9 +28,16 @@ public class FileDetailsServiceImpl implements FileDetailsService {
 
     private final FileDetailsMapper fileDetailsMapper;
 
-    public FileDetailsServiceImpl(FileDetailsRepository fileDetailsRepository, FileDetailsMapper fileDetailsMapper) {
+    private final FileLocationResolver fileLocationResolver;
+
+    public FileDetailsServiceImpl(
+        FileDetailsRepository fileDetailsRepository,
+        FileDetailsMapper fileDetailsMapper,
+        FileLocationResolver fileLocationResolver
+    ) {
         this.fileDetailsRepository = fileDetailsRepository;
         this.fileDetailsMapper = fileDetailsMapper;
+        this.fileLocationResolver = fileLocationResolver;
     }
 
     @Override
@@ -74,5 +82,6 @@ public class FileDetailsServiceImpl implements FileDetailsService {
     public void delete(Long id) {
         log.debug("Request to delete FileDetails : {}", id);
         fileDetailsRepository.deleteById(id);
+        fileLocationResolver.evict(id);
     }
 }
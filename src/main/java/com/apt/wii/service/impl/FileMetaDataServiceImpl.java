@@ -7,6 +7,7 @@ import com.apt.wii.service.FileDetailsService;
 import com.apt.wii.service.FileMetaDataService;
 import com.apt.wii.service.dto.FileDetailsDTO;
 import com.apt.wii.service.dto.FileMetaDataDTO;
+import com.apt.wii.service.file.FileLocationResolver;
 import com.apt.wii.service.mapper.FileDetailsMapper;
 import com.apt.wii.service.mapper.FileMetaDataMapper;
 import java.util.LinkedList;
@@ -15,6 +16,8 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,16 +38,20 @@ public class FileMetaDataServiceImpl implements FileMetaDataService {
 
     private final FileDetailsMapper fileDetailsMapper;
 
+    private final FileLocationResolver fileLocationResolver;
+
     public FileMetaDataServiceImpl(
         FileMetaDataRepository fileMetaDataRepository,
         FileMetaDataMapper fileMetaDataMapper,
         FileDetailsService fileDetailsService,
-        FileDetailsMapper fileDetailsMapper
+        FileDetailsMapper fileDetailsMapper,
+        FileLocationResolver fileLocationResolver
     ) {
         this.fileMetaDataRepository = fileMetaDataRepository;
         this.fileMetaDataMapper = fileMetaDataMapper;
         this.fileDetailsService = fileDetailsService;
         this.fileDetailsMapper = fileDetailsMapper;
+        this.fileLocationResolver = fileLocationResolver;
     }
 
     @Override
@@ -52,6 +59,7 @@ public class FileMetaDataServiceImpl implements FileMetaDataService {
         log.debug("Request to save FileMetaData : {}", fileMetaDataDTO);
         FileMetaData fileMetaData = fileMetaDataMapper.toEntity(fileMetaDataDTO);
         fileMetaData = fileMetaDataRepository.save(fileMetaData);
+        evictFileLocation(fileMetaData);
         return fileMetaDataMapper.toDto(fileMetaData);
     }
 
@@ -64,6 +72,7 @@ public class FileMetaDataServiceImpl implements FileMetaDataService {
             .map(
                 existingFileMetaData -> {
                     fileMetaDataMapper.partialUpdate(existingFileMetaData, fileMetaDataDTO);
+                    evictFileLocation(existingFileMetaData);
                     return existingFileMetaData;
                 }
             )
@@ -71,6 +80,53 @@ public class FileMetaDataServiceImpl implements FileMetaDataService {
             .map(fileMetaDataMapper::toDto);
     }
 
+    @Override
+    public FileMetaDataDTO saveValue(Long fileDetailsId, String key, String value) {
+        log.debug("Request to set FileMetaData {} of FileDetails {} : {}", key, fileDetailsId, value);
+        FileMetaData fileMetaData = fileMetaDataRepository
+            .findOneByFileDetailsIdAndKey(fileDetailsId, key)
+            .orElseGet(
+                () -> {
+                    FileDetails fileDetails = new FileDetails();
+                    fileDetails.setId(fileDetailsId);
+                    return new FileMetaData().key(key).fileDetails(fileDetails);
+                }
+            );
+        fileMetaData = fileMetaDataRepository.save(fileMetaData.value(value));
+        evictFileLocation(fileMetaData);
+        return fileMetaDataMapper.toDto(fileMetaData);
+    }
+
+    @Override
+    public boolean updateValueIf(Long fileDetailsId, String key, String value, String expected) {
+        log.debug("Request to set FileMetaData {} of FileDetails {} from {} to {}", key, fileDetailsId, expected, value);
+        if (fileMetaDataRepository.updateValueIf(key, fileDetailsId, value, expected) == 0) {
+            return false;
+        }
+        fileLocationResolver.evict(fileDetailsId);
+        return true;
+    }
+
+    @Override
+    public void deleteValue(Long fileDetailsId, String key) {
+        log.debug("Request to delete FileMetaData {} of FileDetails {}", key, fileDetailsId);
+        fileMetaDataRepository
+            .findOneByFileDetailsIdAndKey(fileDetailsId, key)
+            .ifPresent(
+                fileMetaData -> {
+                    fileMetaDataRepository.delete(fileMetaData);
+                    evictFileLocation(fileMetaData);
+                }
+            );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<FileMetaDataDTO> findByKey(String key, Pageable pageable) {
+        log.debug("Request to get FileMetaData with key {}", key);
+        return fileMetaDataRepository.findByKey(key, pageable).map(fileMetaDataMapper::toDto);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<FileMetaDataDTO> findAll() {
@@ -99,6 +155,13 @@ public class FileMetaDataServiceImpl implements FileMetaDataService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete FileMetaData : {}", id);
+        fileMetaDataRepository.findById(id).ifPresent(this::evictFileLocation);
         fileMetaDataRepository.deleteById(id);
     }
+
+    private void evictFileLocation(FileMetaData fileMetaData) {
+        if (fileMetaData.getFileDetails() != null) {
+            fileLocationResolver.evict(fileMetaData.getFileDetails().getId());
+        }
+    }
 }
@@ -2,10 +2,16 @@ package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.Question;
 import com.apt.wii.domain.TagMetaData;
+import com.apt.wii.repository.BranchRepository;
+import com.apt.wii.repository.CatalogAncestry;
+import com.apt.wii.repository.DomainRepository;
 import com.apt.wii.repository.QuestionRepository;
+import com.apt.wii.repository.SemesterRepository;
 import com.apt.wii.service.QuestionService;
 import com.apt.wii.service.SemesterService;
 import com.apt.wii.service.SubjectService;
+import com.apt.wii.service.catalog.HierarchyIndexService;
+import com.apt.wii.service.catalog.QuestionCountService;
 import com.apt.wii.service.dto.BranchDTO;
 import com.apt.wii.service.dto.DomainDTO;
 import com.apt.wii.service.dto.QuestionDTO;
@@ -25,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -47,23 +54,51 @@ public class QuestionServiceImpl implements QuestionService {
 
     private final SubjectService subjectService;
 
+    private final DomainRepository domainRepository;
+
+    private final BranchRepository branchRepository;
+
+    private final SemesterRepository semesterRepository;
+
+    private final HierarchyIndexService hierarchyIndexService;
+
+    private final QuestionCountService questionCountService;
+
     public QuestionServiceImpl(
         SubjectService subjectService,
         QuestionRepository questionRepository,
         QuestionMapper questionMapper,
-        SubjectMapper subjectMapper
+        SubjectMapper subjectMapper,
+        DomainRepository domainRepository,
+        BranchRepository branchRepository,
+        SemesterRepository semesterRepository,
+        HierarchyIndexService hierarchyIndexService,
+        QuestionCountService questionCountService
     ) {
         this.questionRepository = questionRepository;
         this.questionMapper = questionMapper;
         this.subjectService = subjectService;
         this.subjectMapper = subjectMapper;
+        this.domainRepository = domainRepository;
+        this.branchRepository = branchRepository;
+        this.semesterRepository = semesterRepository;
+        this.hierarchyIndexService = hierarchyIndexService;
+        this.questionCountService = questionCountService;
     }
 
     @Override
     public QuestionDTO save(QuestionDTO questionDTO) {
         log.debug("Request to save Question : {}", questionDTO);
+        CatalogAncestry previous = null;
+        if (questionDTO.getId() != null) {
+            // held until commit, so a concurrent move of the same question counts from the ancestry this one leaves
+            questionRepository.findOneForUpdate(questionDTO.getId());
+            previous = questionRepository.findAncestry(questionDTO.getId()).orElse(null);
+        }
         Question question = questionMapper.toEntity(questionDTO);
+        hierarchyIndexService.index(question);
         question = questionRepository.save(question);
+        questionCountService.moved(1, QuestionCountService.path(previous), path(question));
         return questionMapper.toDto(question);
     }
 
@@ -72,10 +107,13 @@ public class QuestionServiceImpl implements QuestionService {
         log.debug("Request to partially update Question : {}", questionDTO);
 
         return questionRepository
-            .findById(questionDTO.getId())
+            .findOneForUpdate(questionDTO.getId())
             .map(
                 existingQuestion -> {
+                    Map<String, Long> previous = path(existingQuestion);
                     questionMapper.partialUpdate(existingQuestion, questionDTO);
+                    hierarchyIndexService.index(existingQuestion);
+                    questionCountService.moved(1, previous, path(existingQuestion));
                     return existingQuestion;
                 }
             )
@@ -110,7 +148,10 @@ public class QuestionServiceImpl implements QuestionService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Question : {}", id);
+        questionRepository.findOneForUpdate(id);
+        CatalogAncestry previous = questionRepository.findAncestry(id).orElse(null);
         questionRepository.deleteById(id);
+        questionCountService.moved(1, QuestionCountService.path(previous), Map.of());
     }
 
     @Override
@@ -139,4 +180,40 @@ public class QuestionServiceImpl implements QuestionService {
         tags.values().stream().forEach(values -> filterTags.addAll((List<String>) values));
         return questionRepository.getQuestionsBySubjectAndTags(subjectId, tags.keySet(), filterTags, paging);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Question> findBySemester(Long semesterId, int page, int size) {
+        log.debug("Request to get questions by semester id: {}", semesterId);
+        Page<Question> questions = questionRepository.findBySemesterId(semesterId, byId(page, size));
+        return questions.isEmpty() && !semesterRepository.existsById(semesterId) ? null : questions;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Question> findByBranch(Long branchId, int page, int size) {
+        log.debug("Request to get questions by branch id: {}", branchId);
+        Page<Question> questions = questionRepository.findByBranchId(branchId, byId(page, size));
+        return questions.isEmpty() && !branchRepository.existsById(branchId) ? null : questions;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Question> findByDomain(Long domainId, int page, int size) {
+        log.debug("Request to get questions by domain id: {}", domainId);
+        Page<Question> questions = questionRepository.findByDomainId(domainId, byId(page, size));
+        return questions.isEmpty() && !domainRepository.existsById(domainId) ? null : questions;
+    }
+
+    private static Map<String, Long> path(Question question) {
+        Long subjectId = question.getSubject() != null ? question.getSubject().getId() : null;
+        return QuestionCountService.path(subjectId, question.getSemesterId(), question.getBranchId(), question.getDomainId());
+    }
+
+    /**
+     * Pages in id order, which the {@code (ancestor_id, id)} indexes return without sorting.
+     */
+    private static Pageable byId(int page, int size) {
+        return PageRequest.of(page, size, Sort.by("id"));
+    }
 }
@@ -1,13 +1,14 @@
 package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.Semester;
+import com.apt.wii.repository.BranchRepository;
+import com.apt.wii.repository.CatalogAncestry;
 import com.apt.wii.repository.SemesterRepository;
-import com.apt.wii.service.BranchService;
 import com.apt.wii.service.SemesterService;
-import com.apt.wii.service.dto.BranchDTO;
+import com.apt.wii.service.catalog.CatalogTreeService;
+import com.apt.wii.service.catalog.HierarchyIndexService;
 import com.apt.wii.service.dto.QuestionDTO;
 import com.apt.wii.service.dto.SemesterDTO;
-import com.apt.wii.service.mapper.BranchMapper;
 import com.apt.wii.service.mapper.SemesterMapper;
 import com.apt.wii.service.mapper.SubjectMapper;
 import java.util.LinkedList;
@@ -32,29 +33,36 @@ public class SemesterServiceImpl implements SemesterService {
 
     private final SemesterRepository semesterRepository;
 
+    private final BranchRepository branchRepository;
+
     private final SemesterMapper semesterMapper;
 
-    private final BranchMapper branchMapper;
+    private final CatalogTreeService catalogTreeService;
 
-    private final BranchService branchService;
+    private final HierarchyIndexService hierarchyIndexService;
 
     public SemesterServiceImpl(
         SemesterRepository semesterRepository,
+        BranchRepository branchRepository,
         SemesterMapper semesterMapper,
-        BranchMapper branchMapper,
-        BranchService branchService
+        CatalogTreeService catalogTreeService,
+        HierarchyIndexService hierarchyIndexService
     ) {
         this.semesterRepository = semesterRepository;
+        this.branchRepository = branchRepository;
         this.semesterMapper = semesterMapper;
-        this.branchService = branchService;
-        this.branchMapper = branchMapper;
+        this.catalogTreeService = catalogTreeService;
+        this.hierarchyIndexService = hierarchyIndexService;
     }
 
     @Override
     public SemesterDTO save(SemesterDTO semesterDTO) {
         log.debug("Request to save Semester : {}", semesterDTO);
+        CatalogAncestry previous = semesterDTO.getId() != null ? semesterRepository.findAncestry(semesterDTO.getId()).orElse(null) : null;
         Semester semester = semesterMapper.toEntity(semesterDTO);
         semester = semesterRepository.save(semester);
+        hierarchyIndexService.moved(semester, previous);
+        catalogTreeService.invalidate();
         return semesterMapper.toDto(semester);
     }
 
@@ -66,7 +74,10 @@ public class SemesterServiceImpl implements SemesterService {
             .findById(semesterDTO.getId())
             .map(
                 existingSemester -> {
+                    CatalogAncestry previous = semesterRepository.findAncestry(existingSemester.getId()).orElse(null);
                     semesterMapper.partialUpdate(existingSemester, semesterDTO);
+                    hierarchyIndexService.moved(existingSemester, previous);
+                    catalogTreeService.invalidate();
                     return existingSemester;
                 }
             )
@@ -101,20 +112,18 @@ public class SemesterServiceImpl implements SemesterService {
     public void delete(Long id) {
         log.debug("Request to delete Semester : {}", id);
         semesterRepository.deleteById(id);
+        catalogTreeService.invalidate();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<SemesterDTO> findByBranch(Long branchId) {
         log.debug("Request to get Semester by branch id: {}", branchId);
-        Optional<BranchDTO> b = branchService.findOne(branchId);
-        if (b.isPresent()) {
-            return semesterRepository
-                .findByBranch(branchMapper.toEntity(b.get()))
-                .stream()
-                .map(semesterMapper::toDto)
-                .collect(Collectors.toCollection(LinkedList::new));
+        List<SemesterDTO> semesters = semesterRepository.findDtosByBranchId(branchId);
+        if (semesters.isEmpty() && !branchRepository.existsById(branchId)) {
+            log.error("Invalid branch ID: {}", branchId);
+            return null;
         }
-        log.error("Invalid branch ID: {}", branchId);
-        return null;
+        return semesters;
     }
 }
@@ -1,14 +1,15 @@
 package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.Subject;
+import com.apt.wii.repository.CatalogAncestry;
+import com.apt.wii.repository.SemesterRepository;
 import com.apt.wii.repository.SubjectRepository;
 import com.apt.wii.service.BranchService;
-import com.apt.wii.service.SemesterService;
 import com.apt.wii.service.SubjectService;
+import com.apt.wii.service.catalog.CatalogTreeService;
+import com.apt.wii.service.catalog.HierarchyIndexService;
 import com.apt.wii.service.dto.BranchDTO;
-import com.apt.wii.service.dto.SemesterDTO;
 import com.apt.wii.service.dto.SubjectDTO;
-import com.apt.wii.service.mapper.SemesterMapper;
 import com.apt.wii.service.mapper.SubjectMapper;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,29 +33,41 @@ public class SubjectServiceImpl implements SubjectService {
 
     private final SubjectRepository subjectRepository;
 
+    private final SemesterRepository semesterRepository;
+
     private final SubjectMapper subjectMapper;
 
-    private final SemesterMapper semesterMapper;
+    private final CatalogTreeService catalogTreeService;
 
-    private final SemesterService semesterService;
+    private final HierarchyIndexService hierarchyIndexService;
 
     public SubjectServiceImpl(
-        SemesterService semesterService,
-        SemesterMapper semesterMapper,
         SubjectRepository subjectRepository,
-        SubjectMapper subjectMapper
+        SemesterRepository semesterRepository,
+        SubjectMapper subjectMapper,
+        CatalogTreeService catalogTreeService,
+        HierarchyIndexService hierarchyIndexService
     ) {
         this.subjectRepository = subjectRepository;
+        this.semesterRepository = semesterRepository;
         this.subjectMapper = subjectMapper;
-        this.semesterService = semesterService;
-        this.semesterMapper = semesterMapper;
+        this.catalogTreeService = catalogTreeService;
+        this.hierarchyIndexService = hierarchyIndexService;
     }
 
     @Override
     public SubjectDTO save(SubjectDTO subjectDTO) {
         log.debug("Request to save Subject : {}", subjectDTO);
+        CatalogAncestry previous = null;
+        if (subjectDTO.getId() != null) {
+            // held until commit, so questions saved meanwhile are either moved with the subject or see the move
+            subjectRepository.findOneForUpdate(subjectDTO.getId());
+            previous = subjectRepository.findAncestry(subjectDTO.getId()).orElse(null);
+        }
         Subject subject = subjectMapper.toEntity(subjectDTO);
+        hierarchyIndexService.index(subject, previous);
         subject = subjectRepository.save(subject);
+        catalogTreeService.invalidate();
         return subjectMapper.toDto(subject);
     }
 
@@ -63,10 +76,13 @@ public class SubjectServiceImpl implements SubjectService {
         log.debug("Request to partially update Subject : {}", subjectDTO);
 
         return subjectRepository
-            .findById(subjectDTO.getId())
+            .findOneForUpdate(subjectDTO.getId())
             .map(
                 existingSubject -> {
+                    CatalogAncestry previous = subjectRepository.findAncestry(existingSubject.getId()).orElse(null);
                     subjectMapper.partialUpdate(existingSubject, subjectDTO);
+                    hierarchyIndexService.index(existingSubject, previous);
+                    catalogTreeService.invalidate();
                     return existingSubject;
                 }
             )
@@ -101,20 +117,18 @@ public class SubjectServiceImpl implements SubjectService {
     public void delete(Long id) {
         log.debug("Request to delete Subject : {}", id);
         subjectRepository.deleteById(id);
+        catalogTreeService.invalidate();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<SubjectDTO> findBySemester(Long semesterId) {
         log.debug("Request to get Semester by branch id: {}", semesterId);
-        Optional<SemesterDTO> b = semesterService.findOne(semesterId);
-        if (b.isPresent()) {
-            return subjectRepository
-                .findBySemester(semesterMapper.toEntity(b.get()))
-                .stream()
-                .map(subjectMapper::toDto)
-                .collect(Collectors.toCollection(LinkedList::new));
+        List<SubjectDTO> subjects = subjectRepository.findDtosBySemesterId(semesterId);
+        if (subjects.isEmpty() && !semesterRepository.existsById(semesterId)) {
+            log.error("Invalid semester ID: {}", semesterId);
+            return null;
         }
-        log.error("Invalid branch ID: {}", semesterId);
-        return null;
+        return subjects;
     }
 }
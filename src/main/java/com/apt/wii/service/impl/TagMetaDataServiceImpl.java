@@ -1,13 +1,11 @@
 package com.apt.wii.service.impl;
 
 import com.apt.wii.domain.TagMetaData;
+import com.apt.wii.repository.QuestionRepository;
 import com.apt.wii.repository.TagMetaDataRepository;
-import com.apt.wii.service.QuestionService;
 import com.apt.wii.service.TagMetaDataService;
-import com.apt.wii.service.dto.QuestionDTO;
 import com.apt.wii.service.dto.SubjectDTO;
 import com.apt.wii.service.dto.TagMetaDataDTO;
-import com.apt.wii.service.mapper.QuestionMapper;
 import com.apt.wii.service.mapper.TagMetaDataMapper;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,22 +34,18 @@ public class TagMetaDataServiceImpl implements TagMetaDataService {
 
     private final TagMetaDataRepository tagMetaDataRepository;
 
-    private final TagMetaDataMapper tagMetaDataMapper;
-
-    private final QuestionMapper questionMapper;
+    private final QuestionRepository questionRepository;
 
-    private final QuestionService questionService;
+    private final TagMetaDataMapper tagMetaDataMapper;
 
     public TagMetaDataServiceImpl(
         TagMetaDataRepository tagMetaDataRepository,
-        TagMetaDataMapper tagMetaDataMapper,
-        QuestionMapper questionMapper,
-        QuestionService questionService
+        QuestionRepository questionRepository,
+        TagMetaDataMapper tagMetaDataMapper
     ) {
         this.tagMetaDataRepository = tagMetaDataRepository;
+        this.questionRepository = questionRepository;
         this.tagMetaDataMapper = tagMetaDataMapper;
-        this.questionMapper = questionMapper;
-        this.questionService = questionService;
     }
 
     @Override
@@ -108,18 +102,15 @@ public class TagMetaDataServiceImpl implements TagMetaDataService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<TagMetaDataDTO> findByQuestion(Long id) {
         log.debug("Request to get tag meta data by question id: {}", id);
-        Optional<QuestionDTO> b = questionService.findOne(id);
-        if (b.isPresent()) {
-            return tagMetaDataRepository
-                .findByQuestion(questionMapper.toEntity(b.get()))
-                .stream()
-                .map(tagMetaDataMapper::toDto)
-                .collect(Collectors.toCollection(LinkedList::new));
+        List<TagMetaDataDTO> tags = tagMetaDataRepository.findDtosByQuestionId(id);
+        if (tags.isEmpty() && !questionRepository.existsById(id)) {
+            log.error("Invalid question ID: {}", id);
+            return null;
         }
-        log.error("Invalid question ID: {}", id);
-        return null;
+        return tags;
     }
 
     @Override
@@ -0,0 +1,11 @@
+package com.apt.wii.service.mapper;
+
+import com.apt.wii.domain.*;
+import com.apt.wii.service.dto.StorageUsageDTO;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link StorageUsage} and its DTO {@link StorageUsageDTO}.
+ */
+@Mapper(componentModel = "spring", uses = {})
+public interface StorageUsageMapper extends EntityMapper<StorageUsageDTO, StorageUsage> {}
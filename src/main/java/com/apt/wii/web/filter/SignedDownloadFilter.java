@@ -0,0 +1,116 @@
+package com.apt.wii.web.filter;
+
+import com.apt.wii.service.file.DownloadUrlSigner;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
+import com.apt.wii.service.file.FileTransferEngine;
+import com.apt.wii.service.file.SignedDownload;
+import com.apt.wii.service.file.StreamingFileWriter;
+import com.apt.wii.web.rest.FileResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Serves signed download URLs minted by {@link DownloadUrlSigner}.
+ * <p>
+ * The filter runs ahead of Spring Security and answers the request itself: a valid signature is the only authorization,
+ * so there is no token parsing, no security context and no database access on this path.
+ */
+public class SignedDownloadFilter extends OncePerRequestFilter {
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final FileTransferEngine fileTransferEngine;
+
+    private final Counter served;
+
+    private final Counter rejected;
+
+    public SignedDownloadFilter(DownloadUrlSigner downloadUrlSigner, FileTransferEngine fileTransferEngine, MeterRegistry meterRegistry) {
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.fileTransferEngine = fileTransferEngine;
+        this.served = downloadCounter(meterRegistry, "served");
+        this.rejected = downloadCounter(meterRegistry, "rejected");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws IOException {
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+        if (!head && !HttpMethod.GET.matches(request.getMethod())) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        Optional<SignedDownload> download = downloadUrlSigner.verify(request);
+        if (download.isEmpty()) {
+            rejected.increment();
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Path file = Paths.get(download.get().getPath());
+        if (!Files.isReadable(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long maxAge = Math.max(0, Duration.between(Instant.now(), download.get().getExpiresAt()).getSeconds());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate().getHeaderValue());
+        MediaType mediaType = download.get().getMediaType();
+        response.setContentType(mediaType.toString());
+        response.setHeader(FileResource.X_CONTENT_TYPE_OPTIONS, "nosniff");
+        if (!FileLocation.isPassive(mediaType)) {
+            response.setHeader(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(download.get().getFilename(), StandardCharsets.UTF_8).build().toString()
+            );
+        }
+        String contentEncoding = download.get().getContentEncoding();
+        if (contentEncoding != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (contentEncoding == null || FileCompression.accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING), contentEncoding)) {
+            long size = Files.size(file);
+            if (contentEncoding != null) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+            }
+            response.setContentLengthLong(size);
+            if (!head) {
+                fileTransferEngine.transfer(file, 0, size, request, response);
+            }
+        } else if (!head) {
+            // only gzip is used at rest
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file), StreamingFileWriter.BUFFER_SIZE)) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+        served.increment();
+    }
+
+    private static Counter downloadCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter
+            .builder("wii.file.signed_downloads")
+            .description("Requests for signed download URLs")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package com.apt.wii.web.filter;
@@ -0,0 +1,92 @@
+package com.apt.wii.web.rest;
+
+import com.apt.wii.service.catalog.CatalogSnapshot;
+import com.apt.wii.service.catalog.CatalogTreeService;
+import com.apt.wii.service.dto.CatalogNodeDTO;
+import com.apt.wii.web.rest.errors.BadRequestAlertException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * REST controller serving the Domain → Branch → Semester → Subject tree in one call.
+ * <p>
+ * The ETag is a hash of the catalog content, the same on every instance, so clients revalidate with
+ * {@code If-None-Match} and get a {@code 304} until a domain, branch, semester, subject or question count changes.
+ */
+@RestController
+@RequestMapping("/api")
+public class CatalogResource {
+
+    private static final String ENTITY_NAME = "catalog";
+
+    private static final Set<String> TYPES = Set.of(
+        CatalogNodeDTO.DOMAIN,
+        CatalogNodeDTO.BRANCH,
+        CatalogNodeDTO.SEMESTER,
+        CatalogNodeDTO.SUBJECT
+    );
+
+    private final Logger log = LoggerFactory.getLogger(CatalogResource.class);
+
+    private final CatalogTreeService catalogTreeService;
+
+    public CatalogResource(CatalogTreeService catalogTreeService) {
+        this.catalogTreeService = catalogTreeService;
+    }
+
+    /**
+     * {@code GET  /catalog/tree} : get the whole catalog tree.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the domains with their subtrees in body,
+     * or with status {@code 304 (Not Modified)} if the catalog did not change since the {@code If-None-Match} tag.
+     */
+    @GetMapping("/catalog/tree")
+    public ResponseEntity<List<CatalogNodeDTO>> getCatalogTree(WebRequest webRequest) {
+        log.debug("REST request to get the catalog tree");
+        CatalogSnapshot snapshot = catalogTreeService.getSnapshot();
+        if (webRequest.checkNotModified(entityTag(snapshot))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(snapshot.getDomains());
+    }
+
+    /**
+     * {@code GET  /catalog/tree/:type/:id} : get the subtree under one node of the catalog.
+     *
+     * @param type the type of the node: {@code domain}, {@code branch}, {@code semester} or {@code subject}.
+     * @param id the id of the node.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the node with its subtree in body,
+     * or with status {@code 304 (Not Modified)} if the catalog did not change since the {@code If-None-Match} tag,
+     * or with status {@code 400 (Bad Request)} if the type is unknown, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/catalog/tree/{type}/{id}")
+    public ResponseEntity<CatalogNodeDTO> getCatalogSubtree(@PathVariable String type, @PathVariable Long id, WebRequest webRequest) {
+        log.debug("REST request to get the catalog subtree of {} : {}", type, id);
+        if (!TYPES.contains(type)) {
+            throw new BadRequestAlertException("Unknown catalog node type", ENTITY_NAME, "typeinvalid");
+        }
+        CatalogSnapshot snapshot = catalogTreeService.getSnapshot();
+        Optional<CatalogNodeDTO> node = snapshot.find(type, id);
+        if (node.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(entityTag(snapshot))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(node.get());
+    }
+
+    private static String entityTag(CatalogSnapshot snapshot) {
+        return "\"" + snapshot.getContentTag() + "\"";
+    }
+}
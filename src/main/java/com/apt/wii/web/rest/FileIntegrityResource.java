@@ -0,0 +1,69 @@
+package com.apt.wii.web.rest;
+
+import com.apt.wii.security.AuthoritiesConstants;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.dto.FileMetaDataDTO;
+import com.apt.wii.service.file.FileIntegrityScrubber;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import com.apt.wii.service.file.IntegrityScrubReport;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import tech.jhipster.web.util.PaginationUtil;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller reporting on the integrity of stored files.
+ */
+@RestController
+@RequestMapping("/api/secure/admin")
+public class FileIntegrityResource {
+
+    private final Logger log = LoggerFactory.getLogger(FileIntegrityResource.class);
+
+    private final FileIntegrityScrubber fileIntegrityScrubber;
+
+    private final FileMetaDataService fileMetaDataService;
+
+    public FileIntegrityResource(FileIntegrityScrubber fileIntegrityScrubber, FileMetaDataService fileMetaDataService) {
+        this.fileIntegrityScrubber = fileIntegrityScrubber;
+        this.fileMetaDataService = fileMetaDataService;
+    }
+
+    /**
+     * {@code GET /admin/file-integrity} : get the progress of the running integrity scrub, or the result of the last one.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the report in body, or with status
+     * {@code 404 (Not Found)} if no scrub ran since startup.
+     */
+    @GetMapping("/file-integrity")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<IntegrityScrubReport> getReport() {
+        log.debug("REST request to get the integrity scrub report");
+        return ResponseUtil.wrapOrNotFound(fileIntegrityScrubber.getReport());
+    }
+
+    /**
+     * {@code GET /admin/file-integrity/errors} : get the stored files found missing or corrupt.
+     *
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the {@code integrityError} metadata in body.
+     */
+    @GetMapping("/file-integrity/errors")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<FileMetaDataDTO>> getErrors(Pageable pageable) {
+        log.debug("REST request to get a page of file integrity errors");
+        Page<FileMetaDataDTO> page = fileMetaDataService.findByKey(FileMetaDataKeys.INTEGRITY_ERROR, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+}
@@ -1,18 +1,46 @@
 package com.apt.wii.web.rest;
 
+import com.apt.wii.repository.QuestionRepository;
+import com.apt.wii.repository.SubjectRepository;
 import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.FileUploadResultDTO;
+import com.apt.wii.service.file.DownloadUrlSigner;
+import com.apt.wii.service.file.FileAccessTracker;
+import com.apt.wii.service.file.FileArchiveWriter;
+import com.apt.wii.service.file.FileCompression;
+import com.apt.wii.service.file.FileLocation;
 import com.apt.wii.service.file.FileService;
+import com.apt.wii.service.file.FileSizeLimitExceededException;
+import com.apt.wii.service.file.StorageQuotaExceededException;
+import com.apt.wii.service.file.SignedDownload;
 import com.apt.wii.web.rest.errors.BadRequestAlertException;
-import java.io.File;
+import com.apt.wii.web.rest.vm.SignedUrlVM;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import tech.jhipster.web.util.HeaderUtil;
 
@@ -24,29 +52,364 @@ public class FileResource {
 
     private static final String ENTITY_NAME = "file";
 
+    private static final String IMMUTABLE = "immutable";
+
+    private static final String ACCEPT_CH = "Accept-CH";
+
+    public static final String X_CONTENT_TYPE_OPTIONS = "X-Content-Type-Options";
+
+    private static final String DPR = "DPR";
+
+    private static final String WIDTH = "Width";
+
     private final FileService fileService;
 
+    private final FileAccessTracker fileAccessTracker;
+
+    private final FileArchiveWriter fileArchiveWriter;
+
+    private final DownloadUrlSigner downloadUrlSigner;
+
+    private final QuestionRepository questionRepository;
+
+    private final SubjectRepository subjectRepository;
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
-    public FileResource(FileService fileService) {
+    @Value("${wii.upload.batch.max_files:50}")
+    private int maxBatchFiles;
+
+    @Value("${wii.download.cache.max_age:365d}")
+    private Duration immutableMaxAge;
+
+    @Value("${wii.download.cache.shared:false}")
+    private boolean sharedCache;
+
+    public FileResource(
+        FileService fileService,
+        FileAccessTracker fileAccessTracker,
+        FileArchiveWriter fileArchiveWriter,
+        DownloadUrlSigner downloadUrlSigner,
+        QuestionRepository questionRepository,
+        SubjectRepository subjectRepository
+    ) {
         this.fileService = fileService;
+        this.fileAccessTracker = fileAccessTracker;
+        this.fileArchiveWriter = fileArchiveWriter;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.questionRepository = questionRepository;
+        this.subjectRepository = subjectRepository;
     }
 
+    /**
+     * {@code POST  /secure/file-upload} : store an uploaded file.
+     * <p>
+     * The file is stored before the response is sent; processing it (see {@code processingStatus} in its metadata)
+     * continues in the background.
+     *
+     * @param file the uploaded file.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} and the new fileDetails in body.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     * @throws IOException if the file cannot be stored.
+     */
     @PostMapping("/secure/file-upload")
-    public ResponseEntity<FileDetailsDTO> uploadFile(@RequestParam("file") MultipartFile file) throws URISyntaxException {
+    public ResponseEntity<FileDetailsDTO> uploadFile(@RequestParam("file") MultipartFile file) throws URISyntaxException, IOException {
         log.debug("REST request to upload File : {}", file.getName());
-        FileDetailsDTO obj = fileService.uploadFile(file);
+        FileDetailsDTO obj;
+        try {
+            obj = fileService.uploadFile(file);
+        } catch (FileSizeLimitExceededException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "filetoolarge");
+        } catch (StorageQuotaExceededException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "quotaexceeded");
+        }
         return ResponseEntity
-            .created(new URI("/api/file-upload/" + obj.getId()))
+            .accepted()
+            .location(new URI("/api/file-upload/" + obj.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, obj.getId().toString()))
             .body(obj);
     }
 
+    /**
+     * {@code POST  /secure/file-upload/batch} : store several uploaded files at once.
+     * <p>
+     * Each file is stored or rejected on its own; the body lists the outcome of every file in request order.
+     *
+     * @param files the uploaded files.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} and the per-file results in body, or with status
+     * {@code 400 (Bad Request)} if there are no files or too many.
+     */
+    @PostMapping("/secure/file-upload/batch")
+    public ResponseEntity<List<FileUploadResultDTO>> uploadFiles(@RequestParam("files") List<MultipartFile> files) {
+        log.debug("REST request to upload {} Files", files.size());
+        if (files.isEmpty() || files.size() > maxBatchFiles) {
+            throw new BadRequestAlertException("A batch upload takes 1 to " + maxBatchFiles + " files", ENTITY_NAME, "batchsize");
+        }
+        return ResponseEntity.accepted().body(fileService.uploadFiles(files));
+    }
+
+    /**
+     * {@code GET  /secure/file-download/:id} : download the stored file of the "id" fileDetails.
+     * <p>
+     * Single and multiple {@code Range} requests are answered with {@code 206 (Partial Content)}, the latter as
+     * {@code multipart/byteranges}. Range handling, {@code Accept-Ranges} and {@code Content-Length} are taken care of by
+     * Spring MVC for file-backed {@link Resource} bodies.
+     * <p>
+     * The response carries the SHA-256 of the content as a strong {@code ETag} and the stored file modification time as
+     * {@code Last-Modified}. Both come from the cached file location, so conditional requests that match are answered with
+     * {@code 304 (Not Modified)} without opening the file. Content-addressed files never change and are marked immutable
+     * once the upload pipeline is done with them; other files must be revalidated.
+     * <p>
+     * Files stored compressed are sent as stored, with {@code Content-Encoding}, to clients that accept that encoding, and
+     * decompressed on the fly for the others.
+     * <p>
+     * For images with resized copies, the narrowest copy at least {@code width * dpr} device pixels wide is sent instead of
+     * the original. The {@code Width} and {@code DPR} client hints are used when the parameters are missing.
+     *
+     * @param fileDetailId the id of the fileDetails.
+     * @param width the width the image is displayed at, in CSS pixels.
+     * @param dpr the device pixel ratio of the display.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} or {@code 206 (Partial Content)} and the file content in body,
+     * with status {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)}.
+     * @throws IOException if the stored file cannot be inspected.
+     */
     @GetMapping("/secure/file-download/{id}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable("id") Long fileDetailId) throws URISyntaxException {
+    public ResponseEntity<Resource> downloadFile(
+        @PathVariable("id") Long fileDetailId,
+        @RequestParam(value = "width", required = false) Integer width,
+        @RequestParam(value = "dpr", required = false) Double dpr,
+        WebRequest webRequest,
+        HttpServletResponse response
+    ) throws IOException {
         log.debug("REST request to donwload File : {}", fileDetailId);
-        InputStreamResource obj = fileService.downloadFile(fileDetailId);
-        return ResponseEntity.ok().body(obj);
+        Optional<FileLocation> location = fileService.findLocation(fileDetailId);
+        if (location.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        List<String> vary = new ArrayList<>();
+        Integer derivativeWidth = null;
+        if (!location.get().getDerivatives().isEmpty()) {
+            vary.add(DPR);
+            vary.add(WIDTH);
+            response.setHeader(ACCEPT_CH, DPR + ", " + WIDTH);
+            derivativeWidth = derivativeWidth(location.get(), width, dpr, webRequest);
+        }
+        String contentEncoding = derivativeWidth == null ? location.get().getContentEncoding() : null;
+        boolean encoded =
+            contentEncoding != null && FileCompression.accepts(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING), contentEncoding);
+        if (contentEncoding != null) {
+            vary.add(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (!vary.isEmpty()) {
+            response.setHeader(HttpHeaders.VARY, String.join(", ", vary));
+        }
+        String variant = derivativeWidth != null ? "w" + derivativeWidth : encoded ? contentEncoding : null;
+        String cacheControl = cacheControl(location.get());
+        // Sets ETag and Last-Modified on the response, and the 304 status when the client copy is still valid
+        if (webRequest.checkNotModified(entityTag(location.get(), variant), location.get().getLastModified())) {
+            // the client still reads the file, which must keep it on the hot tier
+            fileAccessTracker.recordAccess(fileDetailId);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            return null;
+        }
+        Resource obj = derivativeWidth != null
+            ? fileService.downloadDerivative(fileDetailId, derivativeWidth)
+            : fileService.downloadFile(fileDetailId, encoded);
+        if (obj == null) {
+            return ResponseEntity.notFound().build();
+        }
+        MediaType mediaType = FileLocation.servedMediaType(
+            derivativeWidth != null
+                ? MediaTypeFactory.getMediaType(obj).orElse(MediaType.APPLICATION_OCTET_STREAM)
+                : location.get().getMediaType()
+        );
+        ResponseEntity.BodyBuilder builder = ResponseEntity
+            .ok()
+            .contentType(mediaType)
+            .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+            .header(X_CONTENT_TYPE_OPTIONS, "nosniff");
+        if (!FileLocation.isPassive(mediaType)) {
+            builder.header(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(location.get().getDownloadName(), StandardCharsets.UTF_8).build().toString()
+            );
+        }
+        if (encoded) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        return builder.body(obj);
+    }
+
+    /**
+     * {@code GET  /secure/file-url/:id} : get a short-lived signed URL to download the "id" file without authentication.
+     * <p>
+     * With {@code width}, the URL points to the narrowest resized copy of an image at least that many pixels wide.
+     *
+     * @param fileDetailId the id of the fileDetails.
+     * @param width the width in device pixels the image is displayed at.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the URL in body, with status {@code 404 (Not Found)},
+     * or with status {@code 501 (Not Implemented)} if no signing key is configured.
+     * @throws IOException if the file cannot be brought back from cold storage.
+     */
+    @GetMapping("/secure/file-url/{id}")
+    public ResponseEntity<SignedUrlVM> getSignedUrl(
+        @PathVariable("id") Long fileDetailId,
+        @RequestParam(value = "width", required = false) Integer width
+    ) throws IOException {
+        log.debug("REST request to sign a download URL for File : {}", fileDetailId);
+        if (!downloadUrlSigner.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        // the signed URL points at the hot tier
+        Optional<FileLocation> location = fileService.findReadableLocation(fileDetailId);
+        if (location.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Instant expiresAt = downloadUrlSigner.expiry();
+        Optional<String> derivative = width != null ? location.get().derivativeFor(width).map(Map.Entry::getValue) : Optional.empty();
+        SignedDownload download = derivative
+            .map(path -> new SignedDownload(path, Paths.get(path).getFileName().toString(), null, null, expiresAt))
+            .orElseGet(() -> SignedDownload.of(location.get(), expiresAt));
+        return ResponseEntity.ok().body(new SignedUrlVM(downloadUrlSigner.sign(download), expiresAt));
+    }
+
+    /**
+     * {@code GET  /secure/file-preview/:id} : get the first-page preview image of the "id" document.
+     *
+     * @param fileDetailId the id of the fileDetails.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the JPEG preview in body, with status
+     * {@code 304 (Not Modified)}, or with status {@code 404 (Not Found)} if no preview was rendered.
+     */
+    @GetMapping("/secure/file-preview/{id}")
+    public ResponseEntity<Resource> downloadPreview(
+        @PathVariable("id") Long fileDetailId,
+        WebRequest webRequest,
+        HttpServletResponse response
+    ) {
+        log.debug("REST request to download preview of File : {}", fileDetailId);
+        Optional<FileLocation> location = fileService.findLocation(fileDetailId);
+        if (location.isEmpty() || location.get().getPreviewPath() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String cacheControl = cacheControl(location.get());
+        if (webRequest.checkNotModified(entityTag(location.get(), "preview"), location.get().getLastModified())) {
+            fileAccessTracker.recordAccess(fileDetailId);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            return null;
+        }
+        Resource obj = fileService.downloadPreview(fileDetailId);
+        if (obj == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).header(HttpHeaders.CACHE_CONTROL, cacheControl).body(obj);
+    }
+
+    /**
+     * {@code GET  /secure/file-archive/question/:id} : download the files attached to the "id" question as a ZIP archive.
+     * <p>
+     * The archive is written to the response while it is built; files that cannot be read are left out.
+     *
+     * @param questionId the id of the question.
+     * @return {@code null} once the archive is written, or the {@link ResponseEntity} with status {@code 404 (Not Found)}.
+     * @throws IOException if a file cannot be read or the client went away.
+     */
+    @GetMapping("/secure/file-archive/question/{id}")
+    public ResponseEntity<Void> downloadQuestionArchive(@PathVariable("id") Long questionId, HttpServletResponse response)
+        throws IOException {
+        log.debug("REST request to download the files of Question : {}", questionId);
+        if (!questionRepository.existsById(questionId)) {
+            return ResponseEntity.notFound().build();
+        }
+        startArchive(response, "question-" + questionId);
+        int count = fileArchiveWriter.writeQuestion(questionId, response.getOutputStream());
+        log.debug("Sent {} files of Question {}", count, questionId);
+        return null;
+    }
+
+    /**
+     * {@code GET  /secure/file-archive/subject/:id} : download the files attached to every question of the "id" subject
+     * as a ZIP archive, with one folder per question.
+     *
+     * @param subjectId the id of the subject.
+     * @return {@code null} once the archive is written, or the {@link ResponseEntity} with status {@code 404 (Not Found)}.
+     * @throws IOException if a file cannot be read or the client went away.
+     */
+    @GetMapping("/secure/file-archive/subject/{id}")
+    public ResponseEntity<Void> downloadSubjectArchive(@PathVariable("id") Long subjectId, HttpServletResponse response)
+        throws IOException {
+        log.debug("REST request to download the files of Subject : {}", subjectId);
+        if (!subjectRepository.existsById(subjectId)) {
+            return ResponseEntity.notFound().build();
+        }
+        startArchive(response, "subject-" + subjectId);
+        int count = fileArchiveWriter.writeSubject(subjectId, response.getOutputStream());
+        log.debug("Sent {} files of Subject {}", count, subjectId);
+        return null;
+    }
+
+    /**
+     * {@code DELETE  /secure/file/:id} : delete the "id" uploaded file and release its stored content.
+     *
+     * @param fileDetailId the id of the fileDetails.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}, or with status {@code 404 (Not Found)}.
+     */
+    @DeleteMapping("/secure/file/{id}")
+    public ResponseEntity<Void> deleteFile(@PathVariable("id") Long fileDetailId) {
+        log.debug("REST request to delete File : {}", fileDetailId);
+        if (!fileService.deleteFile(fileDetailId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity
+            .noContent()
+            .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, fileDetailId.toString()))
+            .build();
+    }
+
+    private static void startArchive(HttpServletResponse response, String name) {
+        // the length is not known up front, the response is sent chunked
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(name + ".zip").build().toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+    }
+
+    private String entityTag(FileLocation location, String variant) {
+        if (location.getChecksum() == null) {
+            return null;
+        }
+        // each encoding or resized copy is a different representation and needs its own strong validator
+        return "\"" + location.getChecksum() + (variant != null ? "-" + variant : "") + "\"";
+    }
+
+    private static Integer derivativeWidth(FileLocation location, Integer width, Double dpr, WebRequest webRequest) {
+        double devicePixels;
+        if (width != null) {
+            double ratio = dpr != null ? dpr : parseHint(webRequest.getHeader(DPR), 1);
+            devicePixels = width * ratio;
+        } else {
+            // the Width hint is already in device pixels
+            devicePixels = parseHint(webRequest.getHeader(WIDTH), -1);
+        }
+        if (devicePixels <= 0) {
+            return null;
+        }
+        return location.derivativeFor((int) Math.ceil(devicePixels)).map(Map.Entry::getKey).orElse(null);
+    }
+
+    private static double parseHint(String value, double defaultValue) {
+        try {
+            return value != null ? Double.parseDouble(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private String cacheControl(FileLocation location) {
+        // until the pipeline is done, a ?width request gets the original and must see the resized copy once it exists
+        if (!location.isContentAddressed() || !location.isProcessed()) {
+            return (sharedCache ? CacheControl.noCache().cachePublic() : CacheControl.noCache().cachePrivate()).getHeaderValue();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(immutableMaxAge.getSeconds(), TimeUnit.SECONDS);
+        return (sharedCache ? cacheControl.cachePublic() : cacheControl.cachePrivate()).getHeaderValue() + ", " + IMMUTABLE;
     }
 }
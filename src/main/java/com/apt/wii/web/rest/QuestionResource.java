@@ -199,6 +199,69 @@ public class QuestionResource {
         return CommonUtil.getPaginatedResponseEntity(questionDTOs);
     }
 
+    /**
+     * {@code GET  /semester/:id/questions} : get a page of the questions under the "id" semester, in id order.
+     *
+     * @param id the id of the semester.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of questions in body,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/semester/{id}/questions")
+    public ResponseEntity<List<Question>> getQuestionsBySemester(
+        @PathVariable Long id,
+        @RequestParam(defaultValue = "0") Integer pageNo,
+        @RequestParam(defaultValue = "10") Integer pageSize
+    ) {
+        log.debug("REST request to get Questions by Semester : {}", id);
+        Page<Question> questions = questionService.findBySemester(id, pageNo, pageSize);
+        if (questions == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return CommonUtil.getPaginatedResponseEntity(questions);
+    }
+
+    /**
+     * {@code GET  /branch/:id/questions} : get a page of the questions under the "id" branch, in id order.
+     *
+     * @param id the id of the branch.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of questions in body,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/branch/{id}/questions")
+    public ResponseEntity<List<Question>> getQuestionsByBranch(
+        @PathVariable Long id,
+        @RequestParam(defaultValue = "0") Integer pageNo,
+        @RequestParam(defaultValue = "10") Integer pageSize
+    ) {
+        log.debug("REST request to get Questions by Branch : {}", id);
+        Page<Question> questions = questionService.findByBranch(id, pageNo, pageSize);
+        if (questions == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return CommonUtil.getPaginatedResponseEntity(questions);
+    }
+
+    /**
+     * {@code GET  /domain/:id/questions} : get a page of the questions under the "id" domain, in id order.
+     *
+     * @param id the id of the domain.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the page of questions in body,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/domain/{id}/questions")
+    public ResponseEntity<List<Question>> getQuestionsByDomain(
+        @PathVariable Long id,
+        @RequestParam(defaultValue = "0") Integer pageNo,
+        @RequestParam(defaultValue = "10") Integer pageSize
+    ) {
+        log.debug("REST request to get Questions by Domain : {}", id);
+        Page<Question> questions = questionService.findByDomain(id, pageNo, pageSize);
+        if (questions == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return CommonUtil.getPaginatedResponseEntity(questions);
+    }
+
     /**
      * {@code DELETE  /questions/:id} : delete the "id" question.
      *
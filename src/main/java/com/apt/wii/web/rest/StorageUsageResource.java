@@ -0,0 +1,49 @@
+package com.apt.wii.web.rest;
+
+import com.apt.wii.security.AuthoritiesConstants;
+import com.apt.wii.service.dto.StorageUsageDTO;
+import com.apt.wii.service.file.StorageUsageService;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import tech.jhipster.web.util.PaginationUtil;
+
+/**
+ * REST controller reporting the storage used by each uploader.
+ */
+@RestController
+@RequestMapping("/api/secure/admin")
+public class StorageUsageResource {
+
+    private final Logger log = LoggerFactory.getLogger(StorageUsageResource.class);
+
+    private final StorageUsageService storageUsageService;
+
+    public StorageUsageResource(StorageUsageService storageUsageService) {
+        this.storageUsageService = storageUsageService;
+    }
+
+    /**
+     * {@code GET /admin/storage-usage} : get the bytes and number of files stored by each user.
+     *
+     * @param pageable the pagination information.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of usages in body.
+     */
+    @GetMapping("/storage-usage")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<List<StorageUsageDTO>> getStorageUsages(Pageable pageable) {
+        log.debug("REST request to get a page of storage usages");
+        Page<StorageUsageDTO> page = storageUsageService.findAll(pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+}
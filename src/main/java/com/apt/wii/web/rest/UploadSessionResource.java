@@ -0,0 +1,138 @@
+package com.apt.wii.web.rest;
+
+import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.UploadSessionDTO;
+import com.apt.wii.service.file.FileSizeLimitExceededException;
+import com.apt.wii.service.file.StorageQuotaExceededException;
+import com.apt.wii.service.file.UploadSessionService;
+import com.apt.wii.service.file.UploadSessionStateException;
+import com.apt.wii.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for resumable, chunked uploads.
+ * <p>
+ * A client opens a session with the file name and size, {@code PUT}s the content in chunks at increasing offsets,
+ * asks for the session to learn where to resume after a dropped connection, and finally completes it. Sessions opened
+ * by other users answer {@code 404 (Not Found)}.
+ */
+@RestController
+@RequestMapping("/api")
+public class UploadSessionResource {
+
+    private final Logger log = LoggerFactory.getLogger(UploadSessionResource.class);
+
+    private static final String ENTITY_NAME = "uploadSession";
+
+    @Value("${jhipster.clientApp.name}")
+    private String applicationName;
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionResource(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    /**
+     * {@code POST  /secure/file-upload/sessions} : Open a new upload session.
+     *
+     * @param uploadSessionDTO the file name and expected size of the upload.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new session,
+     * or with status {@code 400 (Bad Request)} if the size is missing or too large.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/secure/file-upload/sessions")
+    public ResponseEntity<UploadSessionDTO> createUploadSession(@RequestBody UploadSessionDTO uploadSessionDTO) throws URISyntaxException {
+        log.debug("REST request to create upload session : {}", uploadSessionDTO);
+        if (uploadSessionDTO.getExpectedSize() == null || uploadSessionDTO.getExpectedSize() < 0) {
+            throw new BadRequestAlertException("Invalid expected size", ENTITY_NAME, "sizeinvalid");
+        }
+        UploadSessionDTO result;
+        try {
+            result = uploadSessionService.create(uploadSessionDTO.getFileName(), uploadSessionDTO.getExpectedSize());
+        } catch (FileSizeLimitExceededException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "filetoolarge");
+        } catch (StorageQuotaExceededException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "quotaexceeded");
+        }
+        return ResponseEntity
+            .created(new URI("/api/secure/file-upload/sessions/" + result.getId()))
+            .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+            .body(result);
+    }
+
+    /**
+     * {@code GET  /secure/file-upload/sessions/:id} : get the progress of the "id" upload session.
+     *
+     * @param id the id of the session.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the session, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/secure/file-upload/sessions/{id}")
+    public ResponseEntity<UploadSessionDTO> getUploadSession(@PathVariable Long id) {
+        log.debug("REST request to get upload session : {}", id);
+        return ResponseUtil.wrapOrNotFound(uploadSessionService.findOne(id));
+    }
+
+    /**
+     * {@code PUT  /secure/file-upload/sessions/:id?offset=} : write the request body at {@code offset} of the upload.
+     *
+     * @param id the id of the session.
+     * @param offset the position of the first byte of the chunk.
+     * @param request the request whose body is the chunk.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated session,
+     * or with status {@code 409 (Conflict)} and the current session if the offset is past the received bytes,
+     * or with status {@code 400 (Bad Request)} if the chunk goes beyond the expected size,
+     * or with status {@code 404 (Not Found)}.
+     * @throws IOException if the chunk cannot be read or stored.
+     */
+    @PutMapping(value = "/secure/file-upload/sessions/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionDTO> uploadChunk(
+        @PathVariable Long id,
+        @RequestParam("offset") long offset,
+        HttpServletRequest request
+    ) throws IOException {
+        log.debug("REST request to upload chunk at {} of upload session : {}", offset, id);
+        try {
+            return ResponseUtil.wrapOrNotFound(uploadSessionService.appendChunk(id, offset, request.getInputStream()));
+        } catch (UploadSessionStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getSession());
+        } catch (FileSizeLimitExceededException e) {
+            throw new BadRequestAlertException("Chunk goes beyond the expected size", ENTITY_NAME, "chunktoolarge");
+        }
+    }
+
+    /**
+     * {@code POST  /secure/file-upload/sessions/:id/complete} : store the uploaded file and close the session.
+     *
+     * @param id the id of the session.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the stored fileDetails,
+     * or with status {@code 409 (Conflict)} and the current session if bytes are missing,
+     * or with status {@code 404 (Not Found)}.
+     * @throws IOException if the file cannot be stored.
+     */
+    @PostMapping("/secure/file-upload/sessions/{id}/complete")
+    public ResponseEntity<?> completeUploadSession(@PathVariable Long id) throws IOException {
+        log.debug("REST request to complete upload session : {}", id);
+        try {
+            Optional<FileDetailsDTO> result = uploadSessionService.complete(id);
+            return ResponseUtil.wrapOrNotFound(result);
+        } catch (UploadSessionStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getSession());
+        } catch (StorageQuotaExceededException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "quotaexceeded");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.apt.wii.web.rest.converter;
+
+import com.apt.wii.service.file.CachedFileResource;
+import com.apt.wii.service.file.FileTransferEngine;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * {@link ResourceHttpMessageConverter} that hands file-backed resources to the {@link FileTransferEngine} and writes
+ * cached files straight from their buffer.
+ */
+public class ZeroCopyResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+    private final FileTransferEngine fileTransferEngine;
+
+    public ZeroCopyResourceHttpMessageConverter(FileTransferEngine fileTransferEngine) {
+        this.fileTransferEngine = fileTransferEngine;
+    }
+
+    @Override
+    protected void writeContent(Resource resource, HttpOutputMessage outputMessage) throws IOException {
+        if (resource instanceof CachedFileResource) {
+            ((CachedFileResource) resource).writeTo(Channels.newChannel(outputMessage.getBody()), 0, resource.contentLength());
+            return;
+        }
+        HttpServletRequest request = currentRequest();
+        if (request == null || !(outputMessage instanceof ServletServerHttpResponse) || !resource.isFile()) {
+            super.writeContent(resource, outputMessage);
+            return;
+        }
+        File file = resource.getFile();
+        // getBody() copies the pending headers onto the servlet response
+        outputMessage.getBody();
+        fileTransferEngine.transfer(
+            file.toPath(),
+            0,
+            file.length(),
+            request,
+            ((ServletServerHttpResponse) outputMessage).getServletResponse()
+        );
+    }
+
+    static HttpServletRequest currentRequest() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.apt.wii.web.rest.converter;
+
+import com.apt.wii.service.file.CachedFileResource;
+import com.apt.wii.service.file.FileTransferEngine;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import javax.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+
+/**
+ * {@link ResourceRegionHttpMessageConverter} that hands single ranges of file-backed resources to the
+ * {@link FileTransferEngine}, and single ranges of cached files straight from their buffer. Multi-range responses keep
+ * the default {@code multipart/byteranges} writer.
+ */
+public class ZeroCopyResourceRegionHttpMessageConverter extends ResourceRegionHttpMessageConverter {
+
+    private final FileTransferEngine fileTransferEngine;
+
+    public ZeroCopyResourceRegionHttpMessageConverter(FileTransferEngine fileTransferEngine) {
+        this.fileTransferEngine = fileTransferEngine;
+    }
+
+    @Override
+    protected void writeResourceRegion(ResourceRegion region, HttpOutputMessage outputMessage) throws IOException {
+        Resource resource = region.getResource();
+        HttpServletRequest request = ZeroCopyResourceHttpMessageConverter.currentRequest();
+        boolean cached = resource instanceof CachedFileResource;
+        if (!cached && (request == null || !(outputMessage instanceof ServletServerHttpResponse) || !resource.isFile())) {
+            super.writeResourceRegion(region, outputMessage);
+            return;
+        }
+        long resourceLength = resource.contentLength();
+        long start = region.getPosition();
+        long end = Math.min(start + region.getCount() - 1, resourceLength - 1);
+        long rangeLength = end - start + 1;
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.add("Content-Range", "bytes " + start + '-' + end + '/' + resourceLength);
+        headers.setContentLength(rangeLength);
+        if (cached) {
+            ((CachedFileResource) resource).writeTo(Channels.newChannel(outputMessage.getBody()), start, rangeLength);
+            return;
+        }
+        // getBody() copies the pending headers onto the servlet response
+        outputMessage.getBody();
+        fileTransferEngine.transfer(
+            resource.getFile().toPath(),
+            start,
+            rangeLength,
+            request,
+            ((ServletServerHttpResponse) outputMessage).getServletResponse()
+        );
+    }
+}
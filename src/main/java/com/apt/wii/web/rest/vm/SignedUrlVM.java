@@ -0,0 +1,35 @@
+package com.apt.wii.web.rest.vm;
+
+import java.time.Instant;
+
+/**
+ * View Model object for a signed download URL.
+ */
+public class SignedUrlVM {
+
+    private final String url;
+
+    private final Instant expiresAt;
+
+    public SignedUrlVM(String url, Instant expiresAt) {
+        this.url = url;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SignedUrlVM{" +
+            "url='" + url + "'" +
+            ", expiresAt=" + expiresAt +
+            "}";
+    }
+}
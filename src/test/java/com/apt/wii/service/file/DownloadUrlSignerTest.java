@@ -0,0 +1,129 @@
+package com.apt.wii.service.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Unit tests for {@link DownloadUrlSigner}.
+ */
+class DownloadUrlSignerTest {
+
+    private static final String PATH = "/data/files/ab/cd/report.txt";
+
+    private final DownloadUrlSigner signer = new DownloadUrlSigner(new String[] { "k1:first-secret" }, Duration.ofMinutes(10));
+
+    @Test
+    void signedUrlIsAccepted() {
+        Instant expiresAt = signer.expiry();
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", FileCompression.GZIP, "text/plain", expiresAt));
+
+        Optional<SignedDownload> download = signer.verify(request(url));
+
+        assertThat(download).isPresent();
+        assertThat(download.get().getPath()).isEqualTo(PATH);
+        assertThat(download.get().getFilename()).isEqualTo("report.txt");
+        assertThat(download.get().getContentEncoding()).isEqualTo(FileCompression.GZIP);
+        assertThat(download.get().getContentType()).isEqualTo("text/plain");
+        assertThat(download.get().getExpiresAt()).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void tamperedPathIsRejected() {
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", null, null, signer.expiry()));
+        MockHttpServletRequest request = request(url);
+        request.setParameter("p", base64("/data/files/ab/cd/other.txt"));
+
+        assertThat(signer.verify(request)).isEmpty();
+    }
+
+    @Test
+    void tamperedFilenameIsRejected() {
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", null, null, signer.expiry()));
+        MockHttpServletRequest request = request(url);
+        request.setRequestURI(DownloadUrlSigner.PATH_PREFIX + "report.html");
+
+        assertThat(signer.verify(request)).isEmpty();
+    }
+
+    @Test
+    void tamperedExpiryIsRejected() {
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", null, null, signer.expiry()));
+        MockHttpServletRequest request = request(url);
+        request.setParameter("e", String.valueOf(Instant.now().plus(365, ChronoUnit.DAYS).getEpochSecond()));
+
+        assertThat(signer.verify(request)).isEmpty();
+    }
+
+    @Test
+    void expiredUrlIsRejected() {
+        Instant expiredAt = Instant.now().minus(1, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", null, null, expiredAt));
+
+        assertThat(signer.verify(request(url))).isEmpty();
+    }
+
+    @Test
+    void unknownKeyIsRejected() {
+        DownloadUrlSigner other = new DownloadUrlSigner(new String[] { "k9:other-secret" }, Duration.ofMinutes(10));
+        String url = other.sign(new SignedDownload(PATH, "report.txt", null, null, other.expiry()));
+
+        assertThat(signer.verify(request(url))).isEmpty();
+    }
+
+    @Test
+    void keyIdSignedWithAnotherSecretIsRejected() {
+        DownloadUrlSigner forged = new DownloadUrlSigner(new String[] { "k1:guessed-secret" }, Duration.ofMinutes(10));
+        String url = forged.sign(new SignedDownload(PATH, "report.txt", null, null, forged.expiry()));
+
+        assertThat(signer.verify(request(url))).isEmpty();
+    }
+
+    @Test
+    void urlSignedWithRotatedKeyIsAcceptedUntilTheKeyIsRemoved() {
+        String url = signer.sign(new SignedDownload(PATH, "report.txt", null, null, signer.expiry()));
+        DownloadUrlSigner rotated = new DownloadUrlSigner(new String[] { "k2:second-secret", "k1:first-secret" }, Duration.ofMinutes(10));
+        DownloadUrlSigner revoked = new DownloadUrlSigner(new String[] { "k2:second-secret" }, Duration.ofMinutes(10));
+
+        assertThat(rotated.verify(request(url))).isPresent();
+        assertThat(rotated.sign(new SignedDownload(PATH, "report.txt", null, null, rotated.expiry()))).contains("k=k2");
+        assertThat(revoked.verify(request(url))).isEmpty();
+    }
+
+    @Test
+    void filenameWithSemicolonIsKept() {
+        String filename = "minutes;draft 2.txt";
+        String url = signer.sign(new SignedDownload(PATH, filename, null, null, signer.expiry()));
+
+        assertThat(url).startsWith(DownloadUrlSigner.PATH_PREFIX + "minutes%3Bdraft%202.txt?");
+        Optional<SignedDownload> download = signer.verify(request(url));
+        assertThat(download).isPresent();
+        assertThat(download.get().getFilename()).isEqualTo(filename);
+    }
+
+    /**
+     * A GET request for {@code url} as the servlet container hands it over: the raw request URI and decoded parameters.
+     */
+    private static MockHttpServletRequest request(String url) {
+        UriComponents uri = UriComponentsBuilder.fromUriString(url).build();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri.getPath());
+        uri
+            .getQueryParams()
+            .forEach((name, values) -> values.forEach(value -> request.addParameter(name, UriUtils.decode(value, StandardCharsets.UTF_8))));
+        return request;
+    }
+
+    private static String base64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
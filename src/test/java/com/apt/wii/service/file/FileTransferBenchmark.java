@@ -0,0 +1,164 @@
+package com.apt.wii.service.file;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Throughput of {@link FileTransferEngine} sending a large file over a loopback socket, with zero-copy enabled and
+ * disabled.
+ * <p>
+ * The response stream offers a public {@code transferFrom(FileChannel)} like Undertow's, and the response is wrapped the
+ * way servlet filters wrap it, so the zero-copy run goes through the same lookup as in production and ends in
+ * {@link FileChannel#transferTo}. The other run uses the pooled direct buffer copy.
+ * <p>
+ * This is not part of the test suite; run it with
+ * {@code java -cp target/classes:target/test-classes:<test classpath> com.apt.wii.service.file.FileTransferBenchmark [sizeInMb] [rounds]}.
+ */
+public final class FileTransferBenchmark {
+
+    private static final int MB = 1024 * 1024;
+
+    private FileTransferBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMb = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileTransferEngine zeroCopy = new FileTransferEngine(meterRegistry, true, 4, DataSize.ofKilobytes(256));
+        FileTransferEngine buffered = new FileTransferEngine(meterRegistry, false, 4, DataSize.ofKilobytes(256));
+        Path file = createFile(sizeInMb);
+        try {
+            for (int round = 0; round <= rounds; round++) {
+                double zeroCopyRate = run(zeroCopy, file);
+                double bufferedRate = run(buffered, file);
+                // the first round only warms up the page cache and the JIT
+                if (round > 0) {
+                    System.out.printf("round %d: zero-copy %.1f MB/s, buffered %.1f MB/s%n", round, zeroCopyRate, bufferedRate);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        meterRegistry
+            .find("wii.file.transfer.requests")
+            .counters()
+            .forEach(counter -> System.out.printf("%s transfers: %.0f%n", counter.getId().getTag("mode"), counter.count()));
+    }
+
+    private static Path createFile(int sizeInMb) throws IOException {
+        Path file = Files.createTempFile("wii-transfer-benchmark", ".bin");
+        byte[] chunk = new byte[MB];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < sizeInMb; i++) {
+                ThreadLocalRandom.current().nextBytes(chunk);
+                channel.write(ByteBuffer.wrap(chunk));
+            }
+        }
+        return file;
+    }
+
+    private static double run(FileTransferEngine engine, Path file) throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            Thread drain = new Thread(() -> drain(server), "benchmark-drain");
+            drain.start();
+            long size = Files.size(file);
+            long start = System.nanoTime();
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+                HttpServletResponse response = new HttpServletResponseWrapper(new SocketResponse(client));
+                engine.transfer(file, 0, size, new MockHttpServletRequest(), response);
+            }
+            drain.join();
+            long elapsed = System.nanoTime() - start;
+            return (size / (double) MB) / (elapsed / 1_000_000_000.0);
+        }
+    }
+
+    private static void drain(ServerSocketChannel server) {
+        ByteBuffer sink = ByteBuffer.allocateDirect(MB);
+        try (SocketChannel accepted = server.accept()) {
+            while (accepted.read(sink) != -1) {
+                sink.clear();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A container response whose body goes to a socket.
+     */
+    private static final class SocketResponse extends MockHttpServletResponse {
+
+        private final SocketOutputStream out;
+
+        SocketResponse(SocketChannel socket) {
+            this.out = new SocketOutputStream(socket);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    /**
+     * Writes to a socket, with the zero-copy entry point Undertow's stream offers. Public so the engine can call it.
+     */
+    public static final class SocketOutputStream extends ServletOutputStream {
+
+        private final SocketChannel socket;
+
+        SocketOutputStream(SocketChannel socket) {
+            this.socket = socket;
+        }
+
+        public void transferFrom(FileChannel source) throws IOException {
+            long position = source.position();
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, socket);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                socket.write(buffer);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
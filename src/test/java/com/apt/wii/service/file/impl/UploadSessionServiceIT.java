@@ -0,0 +1,87 @@
+package com.apt.wii.service.file.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.apt.wii.WiiApp;
+import com.apt.wii.service.FileMetaDataService;
+import com.apt.wii.service.dto.FileDetailsDTO;
+import com.apt.wii.service.dto.FileMetaDataDTO;
+import com.apt.wii.service.dto.UploadSessionDTO;
+import com.apt.wii.service.file.FileMetaDataKeys;
+import com.apt.wii.service.file.FileService;
+import com.apt.wii.service.file.UploadSessionService;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Integration tests for {@link UploadSessionServiceImpl}.
+ */
+@SpringBootTest(classes = WiiApp.class)
+@WithMockUser("session-uploader")
+class UploadSessionServiceIT {
+
+    private static final byte[] CONTENT = "first chunk|second chunk".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    static Path folder;
+
+    @DynamicPropertySource
+    static void folderPath(DynamicPropertyRegistry registry) {
+        registry.add("wii.folder_path", () -> folder.toString() + File.separator);
+    }
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileMetaDataService fileMetaDataService;
+
+    @Test
+    void completedSessionCanBeDownloaded() throws Exception {
+        UploadSessionDTO session = uploadSessionService.create("notes.txt", CONTENT.length);
+        int split = 12;
+        uploadSessionService.appendChunk(session.getId(), 0, chunk(0, split));
+        uploadSessionService.appendChunk(session.getId(), split, chunk(split, CONTENT.length));
+
+        Optional<FileDetailsDTO> stored = uploadSessionService.complete(session.getId());
+
+        assertThat(stored).isPresent();
+        assertThat(
+            fileMetaDataService.findByFileDetail(stored.get().getId()).stream().map(FileMetaDataDTO::getKey).collect(Collectors.toSet())
+        )
+            .contains(FileMetaDataKeys.FILE_PATH, FileMetaDataKeys.FILE_SIZE, FileMetaDataKeys.CHECKSUM, FileMetaDataKeys.UPLOADED_BY)
+            .doesNotContain(
+                FileMetaDataKeys.UPLOAD_STAGING_PATH,
+                FileMetaDataKeys.UPLOAD_EXPECTED_SIZE,
+                FileMetaDataKeys.UPLOAD_RECEIVED_BYTES,
+                FileMetaDataKeys.UPLOAD_EXPIRES_AT,
+                FileMetaDataKeys.UPLOAD_OWNER
+            );
+        Resource resource = fileService.downloadFile(stored.get().getId(), false);
+        assertThat(resource).isNotNull();
+        try (InputStream in = resource.getInputStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+    }
+
+    private static InputStream chunk(int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, from, to));
+    }
+}
@@ -0,0 +1,101 @@
+package com.apt.wii.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.apt.wii.service.file.DownloadUrlSigner;
+import com.apt.wii.service.file.FileTransferEngine;
+import com.apt.wii.service.file.SignedDownload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * Unit tests for {@link SignedDownloadFilter}.
+ */
+class SignedDownloadFilterTest {
+
+    private static final byte[] CONTENT = "signed content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path folder;
+
+    private Path file;
+
+    private final DownloadUrlSigner signer = new DownloadUrlSigner(new String[] { "k1:first-secret" }, Duration.ofMinutes(10));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SignedDownloadFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.write(folder.resolve("stored.bin"), CONTENT);
+        filter = new SignedDownloadFilter(signer, mock(FileTransferEngine.class), meterRegistry);
+    }
+
+    @Test
+    void attachmentKeepsFilenameWithSemicolon() throws Exception {
+        String filename = "minutes;draft.bin";
+        String url = signer.sign(new SignedDownload(file.toString(), filename, null, null, signer.expiry()));
+
+        MockHttpServletResponse response = serve(request("HEAD", url));
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentLengthLong()).isEqualTo(CONTENT.length);
+        ContentDisposition disposition = ContentDisposition.parse(response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertThat(disposition.isAttachment()).isTrue();
+        assertThat(disposition.getFilename()).isEqualTo(filename);
+    }
+
+    @Test
+    void tamperedPayloadIsForbidden() throws Exception {
+        String url = signer.sign(new SignedDownload(file.toString(), "stored.bin", null, null, signer.expiry()));
+        MockHttpServletRequest request = request("GET", url);
+        request.setParameter("t", "text/html");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertThat(response.getStatus()).isEqualTo(403);
+        assertThat(meterRegistry.get("wii.file.signed_downloads").tag("outcome", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void urlSignedWithUnknownKeyIsForbidden() throws Exception {
+        DownloadUrlSigner other = new DownloadUrlSigner(new String[] { "k2:second-secret" }, Duration.ofMinutes(10));
+        String url = other.sign(new SignedDownload(file.toString(), "stored.bin", null, null, other.expiry()));
+
+        assertThat(serve(request("GET", url)).getStatus()).isEqualTo(403);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    /**
+     * A request for {@code url} as the servlet container hands it over: the raw request URI and decoded parameters.
+     */
+    private static MockHttpServletRequest request(String method, String url) {
+        UriComponents uri = UriComponentsBuilder.fromUriString(url).build();
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri.getPath());
+        uri
+            .getQueryParams()
+            .forEach((name, values) -> values.forEach(value -> request.addParameter(name, UriUtils.decode(value, StandardCharsets.UTF_8))));
+        return request;
+    }
+}